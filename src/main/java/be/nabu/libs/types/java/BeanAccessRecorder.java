@@ -0,0 +1,273 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records which paths of which bean types are accessed through the bean instances and how often.
+ * It is off by default and can be switched on at runtime, once enabled only one in "sampleRate" accesses is actually recorded and the counts are estimates based on that rate.
+ * Indexes are stripped from the paths so "items[0]/name" and "items[1]/name" are both recorded as "items[]/name".
+ */
+public class BeanAccessRecorder {
+
+	public enum AccessType {
+		READ,
+		WRITE,
+		// the time it takes to convert a value before it is set
+		CONVERSION,
+		// a field that does not exist was read and null was returned
+		NON_EXISTENT,
+		// there was no setter so the value was sneakily set
+		SNEAKY_SET,
+		// a collection with a single item was set on a non-list field
+		COLLECTION_UNWRAP,
+		FAILED
+	}
+
+	private static BeanAccessRecorder instance = new BeanAccessRecorder();
+
+	private volatile boolean enabled = Boolean.parseBoolean(System.getProperty("bean.recorder", "false"));
+	private volatile int sampleRate = BeanType.getIntegerProperty("bean.recorder.sampleRate", 100);
+
+	/**
+	 * To keep the memory bounded, new paths are no longer recorded once we reach this amount
+	 */
+	private volatile int maxEntries = BeanType.getIntegerProperty("bean.recorder.maxEntries", 10000);
+
+	private Map<Key, RecordedAccess> accesses = new ConcurrentHashMap<Key, RecordedAccess>();
+	private AtomicLong dropped = new AtomicLong();
+
+	public static BeanAccessRecorder getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Decides whether the current access should be recorded, this is cheap when disabled
+	 */
+	public boolean sample() {
+		if (!enabled) {
+			return false;
+		}
+		int rate = sampleRate;
+		return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+	public void record(BeanType<?> type, String path, AccessType accessType) {
+		record(type, path, accessType, -1);
+	}
+
+	public void record(BeanType<?> type, String path, AccessType accessType, long nanos) {
+		Key key = new Key(type.getId(), stripIndexes(path), accessType);
+		RecordedAccess access = accesses.get(key);
+		if (access == null) {
+			if (accesses.size() >= maxEntries) {
+				dropped.incrementAndGet();
+				return;
+			}
+			access = new RecordedAccess(key);
+			RecordedAccess existing = accesses.putIfAbsent(key, access);
+			if (existing != null) {
+				access = existing;
+			}
+		}
+		access.count.add(Math.max(1, sampleRate));
+		access.samples.increment();
+		if (nanos >= 0) {
+			access.timed.increment();
+			access.nanos.add(nanos);
+			long max = access.maxNanos.get();
+			while (nanos > max && !access.maxNanos.compareAndSet(max, nanos)) {
+				max = access.maxNanos.get();
+			}
+		}
+	}
+
+	private static String stripIndexes(String path) {
+		if (path.indexOf('[') < 0) {
+			return path;
+		}
+		StringBuilder builder = new StringBuilder();
+		boolean inIndex = false;
+		for (int i = 0; i < path.length(); i++) {
+			char character = path.charAt(i);
+			if (character == '[') {
+				inIndex = true;
+				builder.append(character);
+			}
+			else if (character == ']') {
+				inIndex = false;
+				builder.append(character);
+			}
+			else if (!inIndex) {
+				builder.append(character);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * The recorded accesses, most frequent first
+	 */
+	public List<RecordedAccess> getAccesses() {
+		List<RecordedAccess> list = new ArrayList<RecordedAccess>(accesses.values());
+		Collections.sort(list, new Comparator<RecordedAccess>() {
+			@Override
+			public int compare(RecordedAccess o1, RecordedAccess o2) {
+				return Long.compare(o2.getCount(), o1.getCount());
+			}
+		});
+		return list;
+	}
+
+	public void dump(Writer writer) throws IOException {
+		writer.write("type\tpath\taccess\tcount\tsamples\tavgMicros\tmaxMicros\n");
+		for (RecordedAccess access : getAccesses()) {
+			writer.write(access.getTypeId() + "\t" + access.getPath() + "\t" + access.getAccessType() + "\t" + access.getCount() + "\t" + access.getSamples());
+			if (access.getTimedSamples() > 0) {
+				writer.write("\t" + (access.getAverageNanos() / 1000) + "\t" + (access.getMaxNanos() / 1000));
+			}
+			else {
+				writer.write("\t\t");
+			}
+			writer.write("\n");
+		}
+		if (dropped.get() > 0) {
+			writer.write("# dropped " + dropped.get() + " samples for new paths after reaching " + maxEntries + " entries\n");
+		}
+		writer.flush();
+	}
+
+	public String getReport() {
+		StringWriter writer = new StringWriter();
+		try {
+			dump(writer);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return writer.toString();
+	}
+
+	public void reset() {
+		accesses.clear();
+		dropped.set(0);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	private static class Key {
+		private String typeId, path;
+		private AccessType accessType;
+
+		public Key(String typeId, String path, AccessType accessType) {
+			this.typeId = typeId;
+			this.path = path;
+			this.accessType = accessType;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * typeId.hashCode() + path.hashCode()) * 31 + accessType.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) object;
+			return accessType == other.accessType && typeId.equals(other.typeId) && path.equals(other.path);
+		}
+	}
+
+	public static class RecordedAccess {
+		private Key key;
+		private LongAdder count = new LongAdder(), samples = new LongAdder(), timed = new LongAdder(), nanos = new LongAdder();
+		private AtomicLong maxNanos = new AtomicLong();
+
+		RecordedAccess(Key key) {
+			this.key = key;
+		}
+
+		public String getTypeId() {
+			return key.typeId;
+		}
+		public String getPath() {
+			return key.path;
+		}
+		public AccessType getAccessType() {
+			return key.accessType;
+		}
+		/**
+		 * The estimated amount of accesses
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+		public long getSamples() {
+			return samples.sum();
+		}
+		public long getTimedSamples() {
+			return timed.sum();
+		}
+		public long getTotalNanos() {
+			return nanos.sum();
+		}
+		public long getAverageNanos() {
+			long timedSamples = getTimedSamples();
+			return timedSamples == 0 ? 0 : getTotalNanos() / timedSamples;
+		}
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+	}
+}
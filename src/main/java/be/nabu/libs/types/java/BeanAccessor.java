@@ -0,0 +1,290 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes a single property of a bean.
+ * Getters and setters start out on the reflective path, once a property has been accessed often enough it is promoted to a method handle.
+ * This keeps rarely used types cheap while hot properties get fast access.
+ * If a backing field is known (field access mode) it is accessed directly through method handles from the start.
+ */
+class BeanAccessor {
+
+	private BeanType<?> type;
+	private Method getter, setter;
+	private Field field;
+	private volatile MethodHandle getHandle, setHandle;
+	// the type accepted by the set handle
+	private volatile Class<?> setType;
+	
+	/**
+	 * The amount of accesses on the reflective path, this is not exact under contention which is fine as it only needs to cross a threshold
+	 */
+	private int accesses;
+	private volatile boolean promoted;
+	// whether the handles access the field directly (field access mode), this does not make the accessor hot
+	private volatile boolean direct;
+
+	BeanAccessor(BeanType<?> type, Method getter, Method setter, Field field) {
+		this.type = type;
+		this.getter = getter;
+		this.setter = setter;
+		this.field = field;
+		if (field != null) {
+			try {
+				if (!field.isAccessible()) {
+					field.setAccessible(true);
+				}
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				getHandle = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+				if (!Modifier.isFinal(field.getModifiers())) {
+					setType = field.getType();
+					setHandle = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+				}
+				// a final field can still be set through its setter
+				else if (setter != null) {
+					if (!setter.isAccessible()) {
+						setter.setAccessible(true);
+					}
+					setType = setter.getParameterTypes()[0];
+					setHandle = lookup.unreflect(setter).asType(MethodType.methodType(void.class, Object.class, Object.class));
+				}
+				promoted = true;
+				direct = true;
+			}
+			// on java 9+ an InaccessibleObjectException (a runtime exception) is thrown for modules that are not open
+			catch (IllegalAccessException | RuntimeException e) {
+				// without a getter the field is the only way in
+				if (getter == null) {
+					throw new RuntimeException("Can not access field: " + field, e);
+				}
+				// otherwise we fall back to the getter and setter
+				getHandle = null;
+				setHandle = null;
+				setType = null;
+			}
+		}
+	}
+
+	Object get(Object instance) throws IllegalAccessException, InvocationTargetException {
+		MethodHandle handle = getHandle;
+		if (handle == null && count()) {
+			handle = getHandle;
+		}
+		if (handle != null) {
+			checkInstance(instance);
+			try {
+				Object value = handle.invokeExact(instance);
+				return value;
+			}
+			catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+		if (!getter.isAccessible()) {
+			getter.setAccessible(true);
+		}
+		return getter.getParameterTypes().length == 1
+			? getter.invoke(instance, new Object[] { Array.newInstance((Class<?>) getter.getParameterTypes()[0].getComponentType(), 0) })
+			: getter.invoke(instance);
+	}
+
+	boolean isSettable() {
+		return setHandle != null || setter != null;
+	}
+
+	void set(Object instance, Object value) throws IllegalAccessException, InvocationTargetException {
+		MethodHandle handle = setHandle;
+		if (handle == null && count()) {
+			handle = setHandle;
+		}
+		if (handle != null) {
+			checkInstance(instance);
+			checkValue(value);
+			try {
+				handle.invokeExact(instance, value);
+			}
+			catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+		else if (setter == null) {
+			throw new IllegalArgumentException("The property '" + getPropertyName() + "' of " + type.getBeanClass().getName() + " is read-only");
+		}
+		else {
+			setter.invoke(instance, value);
+		}
+	}
+	
+	/**
+	 * Method handles report a wrong target or argument as a ClassCastException or NullPointerException which can not be told apart from one thrown by the accessor itself.
+	 * We validate up front so these end up as an IllegalArgumentException like they do on the reflective path.
+	 */
+	private void checkInstance(Object instance) {
+		if (instance == null) {
+			throw new NullPointerException("Can not access a property on a null instance");
+		}
+		else if (!type.getBeanClass().isInstance(instance)) {
+			throw new IllegalArgumentException("The object is not an instance of " + type.getBeanClass().getName() + ": " + instance.getClass().getName());
+		}
+	}
+	
+	private void checkValue(Object value) {
+		Class<?> setType = this.setType;
+		if (setType == null) {
+			return;
+		}
+		else if (value == null) {
+			if (setType.isPrimitive()) {
+				throw new IllegalArgumentException("Can not set a primitive property of type " + setType.getName() + " to null");
+			}
+		}
+		else if (setType.isPrimitive() ? !isWidenable(value.getClass(), setType) : !setType.isInstance(value)) {
+			throw new IllegalArgumentException("Can not set a value of type " + value.getClass().getName() + ", expecting: " + setType.getName());
+		}
+	}
+	
+	// the primitive widening conversions that reflection allows when unboxing
+	private static final String WIDENING = "BSCIJFD";
+	
+	private static boolean isWidenable(Class<?> boxed, Class<?> primitive) {
+		Class<?> source = MethodType.methodType(boxed).unwrap().returnType();
+		if (source == primitive) {
+			return true;
+		}
+		else if (!source.isPrimitive() || source == boolean.class || primitive == boolean.class || primitive == char.class) {
+			return false;
+		}
+		String from = descriptor(source), to = descriptor(primitive);
+		// char only widens to int and beyond
+		if (from.equals("C")) {
+			return WIDENING.indexOf(to) >= WIDENING.indexOf("I");
+		}
+		// byte does not widen to char
+		return WIDENING.indexOf(to) > WIDENING.indexOf(from) && !to.equals("C");
+	}
+	
+	private static String descriptor(Class<?> primitive) {
+		return MethodType.methodType(primitive).toMethodDescriptorString().substring(2);
+	}
+	
+	/**
+	 * Counts an access on the reflective path, returns true if this access promoted the accessor
+	 */
+	private boolean count() {
+		if (!promoted) {
+			int threshold = type.getPromotionThreshold();
+			if (threshold >= 0 && ++accesses >= threshold) {
+				promote();
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Replaces the reflective calls with method handles, if this fails we simply stay on the reflective path
+	 */
+	synchronized void promote() {
+		if (!promoted) {
+			promoted = true;
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				if (getter != null) {
+					if (!getter.isAccessible()) {
+						getter.setAccessible(true);
+					}
+					MethodHandle handle = lookup.unreflect(getter).asFixedArity();
+					// varargs getters are called without any data
+					if (getter.getParameterTypes().length == 1) {
+						handle = MethodHandles.insertArguments(handle, 1, Array.newInstance(getter.getParameterTypes()[0].getComponentType(), 0));
+					}
+					getHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+				}
+				if (setter != null) {
+					if (!setter.isAccessible()) {
+						setter.setAccessible(true);
+					}
+					setType = setter.getParameterTypes()[0];
+					setHandle = lookup.unreflect(setter).asType(MethodType.methodType(void.class, Object.class, Object.class));
+				}
+			}
+			catch (Exception e) {
+				getHandle = null;
+				setHandle = null;
+			}
+		}
+	}
+	
+	/**
+	 * Whether the accessor was promoted to method handles, the direct field handles of field access mode do not count
+	 */
+	boolean isPromoted() {
+		return !direct && (getHandle != null || setHandle != null);
+	}
+
+	Type getGenericType() {
+		return getter == null ? field.getGenericType() : getter.getGenericReturnType();
+	}
+
+	Class<?> getValueClass() {
+		return getter == null ? field.getType() : getter.getReturnType();
+	}
+
+	/**
+	 * The name of the java property (as derived from the getter or the field name), this can differ from the element name
+	 */
+	String getPropertyName() {
+		if (getter == null) {
+			return field.getName();
+		}
+		String name = getter.getName().startsWith("is") ? getter.getName().substring(2) : getter.getName().substring(3);
+		return name.substring(0, 1).toLowerCase() + name.substring(1);
+	}
+
+	Class<?> getDeclaringClass() {
+		return getter == null ? field.getDeclaringClass() : getter.getDeclaringClass();
+	}
+
+	/**
+	 * The getter is leading for annotations, only field-only properties use the annotations on the field
+	 */
+	AnnotatedElement getAnnotated() {
+		return getter == null ? field : getter;
+	}
+
+	Method getGetter() {
+		return getter;
+	}
+
+	@Override
+	public String toString() {
+		return field == null ? String.valueOf(getter) : field.toString();
+	}
+}
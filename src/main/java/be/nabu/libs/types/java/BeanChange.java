@@ -0,0 +1,85 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.Arrays;
+
+/**
+ * A single change in a patch as calculated by {@link BeanDiff}
+ */
+public class BeanChange {
+	
+	public enum ChangeType {
+		// the value was null and is now set
+		ADDED,
+		// the value was set and is now null, for list items this means the item is no longer in the list
+		REMOVED,
+		// a simple value was changed or a list item was replaced
+		CHANGED,
+		// the items of a list were added, removed or reordered, this is reported before the changes to the items themselves
+		LIST
+	}
+
+	private ChangeType type;
+	private String path;
+	private Object oldValue, newValue;
+	private int[] indexes;
+	
+	public BeanChange(ChangeType type, String path, Object oldValue, Object newValue) {
+		this(type, path, oldValue, newValue, null);
+	}
+	
+	public BeanChange(ChangeType type, String path, Object oldValue, Object newValue, int[] indexes) {
+		this.type = type;
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+		this.indexes = indexes;
+	}
+
+	public ChangeType getType() {
+		return type;
+	}
+
+	/**
+	 * The path of the changed value, list indexes always refer to the position in the new list except for removed items
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public Object getOldValue() {
+		return oldValue;
+	}
+
+	public Object getNewValue() {
+		return newValue;
+	}
+
+	/**
+	 * For list changes: for each index in the new list the index the item had in the old list or -1 if it was added
+	 */
+	public int[] getIndexes() {
+		return indexes;
+	}
+	
+	@Override
+	public String toString() {
+		return type + " " + path + (indexes == null ? ": " + oldValue + " -> " + newValue : ": " + Arrays.toString(indexes));
+	}
+}
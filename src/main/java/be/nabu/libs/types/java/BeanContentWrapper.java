@@ -26,6 +26,19 @@ import be.nabu.libs.types.api.DefinedType;
 
 public class BeanContentWrapper implements ComplexContentWrapper<Object> {
 
+	private BeanResolver resolver;
+	
+	public BeanContentWrapper() {
+		// default
+	}
+	
+	/**
+	 * Wraps instances with the types of this resolver, by default the resolver that owns the class of the instance is used
+	 */
+	public BeanContentWrapper(BeanResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public ComplexContent wrap(Object instance) {
@@ -38,7 +51,7 @@ public class BeanContentWrapper implements ComplexContentWrapper<Object> {
 					return new BeanInstance(((BeanInterfaceInstance) invocationHandler).getOriginalType(), instance);
 				}
 			}
-			DefinedType resolved = BeanResolver.getInstance().resolve(instance.getClass());
+			DefinedType resolved = (resolver == null ? BeanResolver.getFor(instance.getClass()) : resolver).resolve(instance.getClass());
 			if (resolved instanceof BeanType) {
 				return new BeanInstance((BeanType) resolved, instance);
 			}
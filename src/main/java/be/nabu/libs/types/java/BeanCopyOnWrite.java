@@ -0,0 +1,492 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import be.nabu.libs.types.ParsedPath;
+import be.nabu.libs.types.SimpleTypeWrapperFactory;
+import be.nabu.libs.types.TypeUtils;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+import be.nabu.libs.types.api.Type;
+
+/**
+ * Creates modified versions of a bean graph without copying it: only the objects on the updated path are copied, everything else is shared with the original.
+ * Frozen objects stay frozen in the new version (and new complex values are frozen along with them), the copies of mutable objects are mutable.
+ * Because mutable copies share their children with the original, this is mostly useful in combination with frozen graphs.
+ */
+public class BeanCopyOnWrite {
+
+	private BeanCopyOnWrite() {
+		// static access only
+	}
+	
+	/**
+	 * Returns a new version of the bean (or complex content) where the value at the given path is replaced, e.g. with(order, "address/city", "Ghent")
+	 */
+	public static <T> T with(T root, String path, Object value) {
+		return withAll(root, Collections.singletonList(path), Collections.singletonList(value));
+	}
+	
+	/**
+	 * Returns a new version where each path is replaced by its value, the updates are applied in order.
+	 * An object that is on the path of several updates is copied only once.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <T> T withAll(T root, List<String> paths, List<?> values) {
+		if (root == null) {
+			throw new IllegalArgumentException("Can not update a null value");
+		}
+		if (paths.size() != values.size()) {
+			throw new IllegalArgumentException("Expecting a value for every path");
+		}
+		Updates updates = new Updates();
+		for (int i = 0; i < paths.size(); i++) {
+			updates.add(ParsedPath.parse(paths.get(i)), values.get(i));
+		}
+		if (root instanceof BeanInstance) {
+			return (T) new BeanInstance(((BeanInstance<?>) root).getType(), apply(((BeanInstance<?>) root).getUnwrapped(), updates));
+		}
+		return (T) apply(root, updates);
+	}
+	
+	/**
+	 * A value that is calculated from the value at the path at the time the update is applied
+	 */
+	static interface Computed {
+		public Object compute(Object current);
+	}
+	
+	/**
+	 * Copies the node once, applies all its updates to the copy and references the copies of its children, everything else is shared
+	 */
+	private static Object apply(Object node, Updates updates) {
+		Draft draft = new Draft(node);
+		for (int i = 0; i < updates.segments.size(); i++) {
+			ParsedPath segment = updates.segments.get(i);
+			Object value = updates.values.get(i);
+			if (updates.children.get(i) != null) {
+				Object child = draft.get(segment);
+				if (child instanceof BeanInstance) {
+					child = ((BeanInstance<?>) child).getUnwrapped();
+				}
+				// missing objects are created
+				value = apply(child == null ? create(node, segment) : child, updates.children.get(i));
+			}
+			else if (value instanceof Computed) {
+				value = ((Computed) value).compute(draft.get(segment));
+			}
+			draft.set(segment, value);
+		}
+		return draft.build();
+	}
+	
+	/**
+	 * The updates of a single object in the order they were requested, an update either replaces the value at a segment or updates the object at that segment
+	 */
+	private static class Updates {
+		private List<ParsedPath> segments = new ArrayList<ParsedPath>();
+		private List<Object> values = new ArrayList<Object>();
+		private List<Updates> children = new ArrayList<Updates>();
+		
+		void add(ParsedPath path, Object value) {
+			if (path.getChildPath() == null) {
+				segments.add(path);
+				values.add(value);
+				children.add(null);
+				return;
+			}
+			Updates child = null;
+			// updates below the same segment are combined unless the field was updated in between
+			for (int i = segments.size() - 1; i >= 0; i--) {
+				if (getName(segments.get(i)).equals(getName(path))) {
+					if (children.get(i) != null && getLocalPath(segments.get(i)).equals(getLocalPath(path))) {
+						child = children.get(i);
+					}
+					break;
+				}
+			}
+			if (child == null) {
+				child = new Updates();
+				segments.add(path);
+				values.add(null);
+				children.add(child);
+			}
+			child.add(path.getChildPath(), value);
+		}
+	}
+	
+	/**
+	 * A shallow copy of a single object that is updated in place and turned into the new version once all its updates are done.
+	 * Frozen content and frozen interface beans are drafted as mutable copies and frozen again when they are built.
+	 */
+	private static class Draft {
+		private ComplexType type;
+		// the values of frozen complex content
+		private Map<String, Object> values;
+		// interface beans
+		private BeanInterfaceInstance handler, copyHandler;
+		// the mutable copy of anything other than frozen content
+		private Object copy;
+		// the lists that were already copied in the draft and can be updated in place
+		private Set<String> copiedLists = new HashSet<String>();
+		
+		@SuppressWarnings("unchecked")
+		Draft(Object node) {
+			if (node instanceof FrozenComplexContent) {
+				type = ((FrozenComplexContent) node).getType();
+				values = new LinkedHashMap<String, Object>(((FrozenComplexContent) node).getValues());
+				return;
+			}
+			handler = getHandler(node);
+			if (handler != null) {
+				BeanType<?> beanType = handler.getOriginalType();
+				type = beanType;
+				// the copy has the same concurrency as the type, a lazy copy keeps the loader so the fields that were not loaded yet can still be loaded
+				copy = handler.isLazy() ? ((BeanType<Object>) beanType).instantiateLazy(handler.getLoader()) : beanType.instantiate();
+				copyHandler = getHandler(copy);
+				for (Map.Entry<String, Object> entry : handler.getValues().entrySet()) {
+					copyHandler.setValue(entry.getKey(), entry.getValue());
+				}
+				// fields that were loaded as null have no value but must not be loaded again
+				if (handler.isLazy()) {
+					copyHandler.markLoaded(handler.getLoaded());
+				}
+				// only the updates themselves count as changes
+				copyHandler.resetChanges();
+			}
+			else if (node instanceof ComplexContent) {
+				ComplexContent content = (ComplexContent) node;
+				type = content.getType();
+				ComplexContent copy = type.newInstance();
+				for (Element<?> element : TypeUtils.getAllChildren(type)) {
+					Object child = content.get(element.getName());
+					if (child != null) {
+						copy.set(element.getName(), child);
+					}
+				}
+				this.copy = copy;
+			}
+			else {
+				BeanType<?> beanType = BeanInstance.resolveType(node);
+				type = beanType;
+				copy = beanType.instantiate();
+				BeanType.Slots slots = beanType.getSlots();
+				for (int i = 0; i < slots.accessors.length; i++) {
+					BeanAccessor accessor = slots.accessors[i];
+					// a read-only property without a backing field is derived from other state
+					if (accessor != null && (accessor.isSettable() || getField(beanType.getBeanClass(), accessor.getPropertyName(), accessor.getValueClass()) != null)) {
+						write(beanType, accessor, copy, read(beanType, accessor, node));
+					}
+				}
+			}
+		}
+		
+		/**
+		 * The current value at the segment in the draft, the getters of frozen interface beans hand out copies of class beans so we read what is actually stored
+		 */
+		Object get(ParsedPath segment) {
+			String name = getName(segment);
+			Object child;
+			if (values != null) {
+				child = values.get(name);
+			}
+			else if (handler != null && handler.isFrozen()) {
+				child = copyHandler.getValue(getAccessor(name).getPropertyName());
+			}
+			else {
+				return toContent(copy).get(getLocalPath(segment));
+			}
+			if (child != null && segment.getIndex() != null) {
+				int index = Integer.parseInt(segment.getIndex());
+				if (child instanceof List) {
+					child = index >= 0 && index < ((List<?>) child).size() ? ((List<?>) child).get(index) : null;
+				}
+				else if (child.getClass().isArray()) {
+					child = index >= 0 && index < Array.getLength(child) ? Array.get(child, index) : null;
+				}
+				else {
+					throw new IllegalArgumentException("The field " + name + " is not a list");
+				}
+			}
+			return child;
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		void set(ParsedPath segment, Object value) {
+			String name = getName(segment);
+			boolean indexed = segment.getIndex() != null;
+			if (!indexed) {
+				copiedLists.remove(name);
+			}
+			if (values != null) {
+				value = freeze(value);
+				if (indexed) {
+					if (copiedLists.add(name)) {
+						values.put(name, values.get(name) == null ? new ArrayList<Object>() : toItems(values.get(name)));
+					}
+					setItem((List<Object>) values.get(name), segment, value);
+				}
+				else if (value == null) {
+					values.remove(name);
+				}
+				else {
+					values.put(name, value);
+				}
+			}
+			else if (handler != null) {
+				BeanAccessor accessor = getAccessor(name);
+				String property = accessor.getPropertyName();
+				BeanType<?> beanType = (BeanType<?>) type;
+				if (handler.isFrozen()) {
+					value = freeze(value);
+				}
+				// frozen class beans are stored as they are, converting them would turn them back into mutable beans
+				if (handler.isFrozen() && (value instanceof FrozenComplexContent || (value instanceof Collection && BeanFreezer.containsContent((Collection<?>) value)))) {
+					Object current = copyHandler.getValue(property);
+					if (!indexed) {
+						copyHandler.setValue(property, BeanFreezer.toCollection(accessor.getValueClass(), toItems(value), false));
+						copiedLists.add(name);
+					}
+					else if (copiedLists.contains(name) && current instanceof List) {
+						setItem((List<Object>) current, segment, value);
+					}
+					else {
+						List<Object> items = current == null ? new ArrayList<Object>() : toItems(current);
+						setItem(items, segment, value);
+						copyHandler.setValue(property, BeanFreezer.toCollection(accessor.getValueClass(), items, false));
+						copiedLists.add(name);
+					}
+				}
+				else {
+					if (indexed && copiedLists.add(name)) {
+						Object current = read(beanType, accessor, copy);
+						if (current != null) {
+							copyHandler.setValue(property, copyList(current, accessor.getValueClass(), false));
+						}
+					}
+					new BeanInstance(beanType, copy).set(getLocalPath(segment), value);
+				}
+			}
+			else if (copy instanceof ComplexContent) {
+				ComplexContent content = (ComplexContent) copy;
+				if (indexed && copiedLists.add(name)) {
+					Object current = content.get(name);
+					if (current != null) {
+						content.set(name, copyList(current, current.getClass(), false));
+					}
+				}
+				content.set(getLocalPath(segment), value);
+			}
+			else {
+				BeanType<?> beanType = (BeanType<?>) type;
+				if (indexed && copiedLists.add(name)) {
+					BeanAccessor accessor = getAccessor(name);
+					Object current = read(beanType, accessor, copy);
+					if (current != null) {
+						write(beanType, accessor, copy, copyList(current, accessor.getValueClass(), false));
+					}
+				}
+				new BeanInstance(beanType, copy).set(getLocalPath(segment), value);
+			}
+		}
+		
+		Object build() {
+			if (values != null) {
+				for (String name : copiedLists) {
+					values.put(name, Collections.unmodifiableList((List<?>) values.get(name)));
+				}
+				return new FrozenComplexContent(type, values);
+			}
+			else if (handler != null && handler.isFrozen()) {
+				Map<String, Object> frozenValues = copyHandler.getValues();
+				for (String name : copiedLists) {
+					String property = getAccessor(name).getPropertyName();
+					if (frozenValues.get(property) instanceof Collection) {
+						frozenValues.put(property, copyList(frozenValues.get(property), getAccessor(name).getValueClass(), true));
+					}
+				}
+				return ((BeanType<?>) type).instantiateFrozen(frozenValues);
+			}
+			return copy;
+		}
+		
+		private BeanAccessor getAccessor(String name) {
+			BeanAccessor accessor = ((BeanType<?>) type).getAccessor(name);
+			if (accessor == null) {
+				throw new IllegalArgumentException("The field " + name + " does not exist in " + ((BeanType<?>) type).getBeanClass().getName());
+			}
+			return accessor;
+		}
+	}
+	
+	private static void setItem(List<Object> list, ParsedPath segment, Object value) {
+		int index = Integer.parseInt(segment.getIndex());
+		if (index < 0) {
+			throw new IllegalArgumentException("Invalid index '" + segment.getIndex() + "' for the field " + getName(segment));
+		}
+		while (list.size() <= index) {
+			list.add(null);
+		}
+		list.set(index, value);
+	}
+	
+	private static Object read(BeanType<?> type, BeanAccessor accessor, Object instance) {
+		try {
+			return accessor.get(instance);
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Could not copy " + type.getBeanClass().getName(), e);
+		}
+	}
+	
+	/**
+	 * Read-only state is copied straight into the field
+	 */
+	private static void write(BeanType<?> type, BeanAccessor accessor, Object instance, Object value) {
+		try {
+			if (accessor.isSettable()) {
+				accessor.set(instance, value);
+			}
+			else {
+				getField(type.getBeanClass(), accessor.getPropertyName(), accessor.getValueClass()).set(instance, value);
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Could not copy " + type.getBeanClass().getName(), e);
+		}
+	}
+	
+	/**
+	 * Looks up the instance field backing a read-only property, null if there is none of the same type
+	 */
+	private static java.lang.reflect.Field getField(Class<?> clazz, String property, Class<?> valueClass) {
+		for (Class<?> current = clazz; current != null && !Object.class.equals(current); current = current.getSuperclass()) {
+			try {
+				java.lang.reflect.Field field = current.getDeclaredField(property);
+				if (Modifier.isStatic(field.getModifiers()) || !field.getType().isAssignableFrom(valueClass)) {
+					return null;
+				}
+				if (!field.isAccessible()) {
+					field.setAccessible(true);
+				}
+				return field;
+			}
+			catch (NoSuchFieldException e) {
+				// check the parent
+			}
+		}
+		return null;
+	}
+	
+	private static Object create(Object parent, ParsedPath segment) {
+		Element<?> element = toContent(parent).getType().get(getName(segment));
+		if (element == null || !(element.getType() instanceof ComplexType)) {
+			throw new IllegalArgumentException("The field " + getName(segment) + " is not a complex type");
+		}
+		Type type = element.getType();
+		return type instanceof BeanType ? ((BeanType<?>) type).instantiate() : ((ComplexType) type).newInstance();
+	}
+	
+	private static Object copyList(Object list, Class<?> target, boolean readOnly) {
+		return BeanFreezer.toCollection(target, toItems(list), readOnly);
+	}
+	
+	private static List<Object> toItems(Object list) {
+		List<Object> items = new ArrayList<Object>();
+		if (list.getClass().isArray()) {
+			for (int i = 0; i < Array.getLength(list); i++) {
+				items.add(Array.get(list, i));
+			}
+		}
+		else {
+			items.addAll((Collection<?>) list);
+		}
+		return items;
+	}
+	
+	/**
+	 * New values in a frozen graph are frozen as well
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Object freeze(Object value) {
+		if (value instanceof BeanInstance) {
+			value = ((BeanInstance<?>) value).getUnwrapped();
+		}
+		if (value == null || BeanFreezer.isFrozen(value)) {
+			return value;
+		}
+		else if (value instanceof ComplexContent) {
+			return BeanFreezer.freeze((ComplexContent) value);
+		}
+		else if (value instanceof Collection) {
+			List<Object> items = new ArrayList<Object>();
+			for (Object item : (Collection<?>) value) {
+				items.add(freeze(item));
+			}
+			return Collections.unmodifiableList(items);
+		}
+		else if (value.getClass().isArray() || (!Proxy.isProxyClass(value.getClass()) && SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(value.getClass()) != null)) {
+			return BeanFreezer.copy(value);
+		}
+		BeanType<?> type = BeanInstance.resolveType(value);
+		if (type.getBeanClass().isInterface()) {
+			return BeanFreezer.freezeBean(value);
+		}
+		return BeanFreezer.freeze(new BeanInstance(value));
+	}
+	
+	private static BeanInterfaceInstance getHandler(Object object) {
+		if (object != null && Proxy.isProxyClass(object.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(object);
+			if (handler instanceof BeanInterfaceInstance) {
+				return (BeanInterfaceInstance) handler;
+			}
+		}
+		return null;
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ComplexContent toContent(Object object) {
+		return object instanceof ComplexContent ? (ComplexContent) object : new BeanInstance(object);
+	}
+	
+	private static String getName(ParsedPath segment) {
+		return segment.getName().startsWith("@") ? segment.getName().substring(1) : segment.getName();
+	}
+	
+	/**
+	 * The path of the segment without its children
+	 */
+	private static String getLocalPath(ParsedPath segment) {
+		return segment.getIndex() == null ? getName(segment) : getName(segment) + "[" + segment.getIndex() + "]";
+	}
+}
@@ -0,0 +1,121 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * The position of a traversal, a single cursor is reused for all the events of a traversal.
+ * The depth is the depth of the reported value (the root is at 0), the slot is the position of its element in the parent type.
+ */
+public class BeanCursor {
+	
+	private BeanTraverser traverser;
+	private int depth, slot = -1, index = -1, size = -1;
+	private Object value, parent;
+	private ComplexType type;
+	private Element<?> element;
+	
+	BeanCursor(BeanTraverser traverser) {
+		this.traverser = traverser;
+	}
+	
+	void point(int depth, Object parent, Element<?> element, int slot, int index, Object value, ComplexType type, int size) {
+		this.depth = depth;
+		this.parent = parent;
+		this.element = element;
+		this.slot = slot;
+		this.index = index;
+		this.value = value;
+		this.type = type;
+		this.size = size;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * The position of the element in the parent type or -1 for the root
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * The index in the list or -1 if the value is not a list item
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * The amount of items when entering or leaving a list, -1 if the size is not known up front or this is not a list event
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * The unwrapped value: a bean, a simple value or the list itself for list events
+	 */
+	public Object getValue() {
+		return value;
+	}
+
+	/**
+	 * The unwrapped object that holds the value, null for the root
+	 */
+	public Object getParent() {
+		return parent;
+	}
+
+	/**
+	 * The complex type of the value when entering or leaving it, null for the other events
+	 */
+	public ComplexType getType() {
+		return type;
+	}
+
+	/**
+	 * The complex type that holds the value or null for the root
+	 */
+	public ComplexType getParentType() {
+		return traverser.getParentType(this);
+	}
+
+	/**
+	 * The element that holds the value or null for the root
+	 */
+	public Element<?> getElement() {
+		return element;
+	}
+
+	/**
+	 * The path from the root to the current value, e.g. "orders[2]/lines[0]/amount", it is only calculated when requested
+	 */
+	public String getPath() {
+		return traverser.getPath(this);
+	}
+	
+	@Override
+	public String toString() {
+		return getPath() + " = " + value;
+	}
+}
@@ -0,0 +1,294 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+import be.nabu.libs.types.java.BeanChange.ChangeType;
+
+/**
+ * Calculates the differences between two instances of the same type as a list of changes and applies such a patch to another instance.
+ * The comparison is driven by the type: identical references are skipped, simple values are compared with equals.
+ * List items are matched on their primary key (@Field(primary = true)) if they have one, otherwise on their index.
+ * The graph is walked without recursion and objects are only compared once so cycles are no problem.
+ */
+public class BeanDiff {
+
+	private BeanDiff() {
+		// static access only
+	}
+	
+	public static List<BeanChange> diff(Object original, Object updated) {
+		original = BeanUtils.unwrap(original);
+		updated = BeanUtils.unwrap(updated);
+		if (original == null || updated == null) {
+			throw new IllegalArgumentException("Can not compare null values");
+		}
+		ComplexType type = BeanTraverser.getType(updated, null);
+		if (type == null || !type.equals(BeanTraverser.getType(original, null))) {
+			throw new IllegalArgumentException("Can only compare complex values of the same type");
+		}
+		List<BeanChange> changes = new ArrayList<BeanChange>();
+		Deque<Comparison> pending = new ArrayDeque<Comparison>();
+		Map<Object, Object> compared = new IdentityHashMap<Object, Object>();
+		List<Comparison> children = new ArrayList<Comparison>();
+		pending.push(new Comparison(original, updated, type, ""));
+		while (!pending.isEmpty()) {
+			Comparison comparison = pending.pop();
+			if (compared.put(comparison.original, comparison.updated) == comparison.updated) {
+				continue;
+			}
+			children.clear();
+			Element<?>[] elements = BeanUtils.getElements(comparison.type);
+			for (int i = 0; i < elements.length; i++) {
+				Object oldValue = BeanUtils.unwrap(BeanUtils.read(comparison.original, comparison.type, elements, i));
+				Object newValue = BeanUtils.unwrap(BeanUtils.read(comparison.updated, comparison.type, elements, i));
+				if (oldValue != newValue) {
+					String path = comparison.path + elements[i].getName();
+					if (elements[i].getType().isList(elements[i].getProperties())) {
+						compareList(elements[i], path, oldValue, newValue, changes, children);
+					}
+					else {
+						compare(path, oldValue, newValue, false, changes, children);
+					}
+				}
+			}
+			// push in reverse so the children are handled in the order of the type
+			for (int i = children.size() - 1; i >= 0; i--) {
+				pending.push(children.get(i));
+			}
+		}
+		return changes;
+	}
+	
+	private static void compare(String path, Object oldValue, Object newValue, boolean listItem, List<BeanChange> changes, List<Comparison> children) {
+		if (oldValue == null) {
+			changes.add(new BeanChange(ChangeType.ADDED, path, null, newValue));
+		}
+		else if (newValue == null) {
+			changes.add(new BeanChange(listItem ? ChangeType.CHANGED : ChangeType.REMOVED, path, oldValue, null));
+		}
+		else {
+			ComplexType newType = BeanTraverser.getType(newValue, null);
+			if (newType == null) {
+				if (!Objects.deepEquals(oldValue, newValue)) {
+					changes.add(new BeanChange(ChangeType.CHANGED, path, oldValue, newValue));
+				}
+			}
+			else if (newType.equals(BeanTraverser.getType(oldValue, null))) {
+				children.add(new Comparison(oldValue, newValue, newType, path + "/"));
+			}
+			else {
+				changes.add(new BeanChange(ChangeType.CHANGED, path, oldValue, newValue));
+			}
+		}
+	}
+	
+	private static void compareList(Element<?> element, String path, Object oldValue, Object newValue, List<BeanChange> changes, List<Comparison> children) {
+		List<?> oldList = BeanUtils.toList(oldValue);
+		List<?> newList = BeanUtils.toList(newValue);
+		int[] indexes = match(element, oldList, newList);
+		boolean structural = oldList.size() != newList.size();
+		for (int i = 0; i < indexes.length && !structural; i++) {
+			structural = indexes[i] != i;
+		}
+		if (structural) {
+			changes.add(new BeanChange(ChangeType.LIST, path, oldValue, newValue, indexes));
+		}
+		boolean[] matched = new boolean[oldList.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			Object newItem = BeanUtils.unwrap(newList.get(i));
+			if (indexes[i] < 0) {
+				changes.add(new BeanChange(ChangeType.ADDED, path + "[" + i + "]", null, newItem));
+			}
+			else {
+				matched[indexes[i]] = true;
+				Object oldItem = BeanUtils.unwrap(oldList.get(indexes[i]));
+				if (oldItem != newItem) {
+					compare(path + "[" + i + "]", oldItem, newItem, true, changes, children);
+				}
+			}
+		}
+		for (int i = 0; i < matched.length; i++) {
+			if (!matched[i]) {
+				changes.add(new BeanChange(ChangeType.REMOVED, path + "[" + i + "]", BeanUtils.unwrap(oldList.get(i)), null));
+			}
+		}
+	}
+	
+	/**
+	 * For each item in the new list, find the index of the matching item in the old list
+	 */
+	private static int[] match(Element<?> element, List<?> oldList, List<?> newList) {
+		int[] indexes = new int[newList.size()];
+		String primaryKey = element.getType() instanceof ComplexType ? getPrimaryKey((ComplexType) element.getType()) : null;
+		if (primaryKey == null) {
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = i < oldList.size() ? i : -1;
+			}
+		}
+		else {
+			Map<Object, Integer> keys = new HashMap<Object, Integer>();
+			for (int i = 0; i < oldList.size(); i++) {
+				Object key = readKey(oldList.get(i), primaryKey);
+				if (key != null && !keys.containsKey(key)) {
+					keys.put(key, i);
+				}
+			}
+			for (int i = 0; i < indexes.length; i++) {
+				Object key = readKey(newList.get(i), primaryKey);
+				Integer index = key == null ? null : keys.remove(key);
+				indexes[i] = index == null ? -1 : index;
+			}
+		}
+		return indexes;
+	}
+	
+	/**
+	 * Applies the changes to the target, a frozen target is not modified but a new version is returned (see {@link BeanCopyOnWrite})
+	 * New values are not copied, they are shared with the graph the patch was calculated from.
+	 * If the lists in the target do not match the ones the patch was calculated from (different size or primary keys), an exception is thrown.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T apply(T target, List<BeanChange> changes) {
+		// a frozen target is updated in one go so objects that are on the path of several changes are only copied once
+		if (BeanFreezer.isFrozen(target)) {
+			List<String> paths = new ArrayList<String>();
+			List<Object> values = new ArrayList<Object>();
+			for (final BeanChange change : changes) {
+				if (change.getType() == ChangeType.LIST) {
+					paths.add(change.getPath());
+					values.add(new BeanCopyOnWrite.Computed() {
+						@Override
+						public Object compute(Object current) {
+							return rebuild(change, current);
+						}
+					});
+				}
+				// removed list items are already handled by the list change
+				else if (change.getType() != ChangeType.REMOVED || !change.getPath().endsWith("]")) {
+					paths.add(change.getPath());
+					values.add(change.getType() == ChangeType.REMOVED ? null : change.getNewValue());
+				}
+			}
+			return BeanCopyOnWrite.withAll(target, paths, values);
+		}
+		ComplexContent content = toContent(target);
+		for (BeanChange change : changes) {
+			if (change.getType() == ChangeType.LIST) {
+				content.set(change.getPath(), rebuild(change, content.get(change.getPath())));
+			}
+			else if (change.getType() == ChangeType.REMOVED) {
+				if (!change.getPath().endsWith("]")) {
+					content.set(change.getPath(), null);
+				}
+			}
+			else {
+				content.set(change.getPath(), change.getNewValue());
+			}
+		}
+		return (T) target;
+	}
+	
+	/**
+	 * Reorders the current list according to the list change, this verifies that the list is the one the change was calculated from
+	 */
+	private static List<Object> rebuild(BeanChange change, Object current) {
+		List<?> list = BeanUtils.toList(BeanUtils.unwrap(current));
+		List<?> original = BeanUtils.toList(change.getOldValue());
+		if (list.size() != original.size()) {
+			throw new IllegalArgumentException("The patch does not apply to '" + change.getPath() + "', expecting " + original.size() + " items but found " + list.size());
+		}
+		String primaryKey = null;
+		for (Object item : original) {
+			ComplexType type = item == null ? null : BeanTraverser.getType(BeanUtils.unwrap(item), null);
+			if (type != null) {
+				primaryKey = getPrimaryKey(type);
+				break;
+			}
+		}
+		List<Object> rebuilt = new ArrayList<Object>();
+		for (int index : change.getIndexes()) {
+			if (index < 0) {
+				rebuilt.add(null);
+				continue;
+			}
+			Object item = list.get(index);
+			if (primaryKey != null) {
+				Object expected = readKey(original.get(index), primaryKey);
+				Object actual = readKey(item, primaryKey);
+				if (!Objects.equals(expected, actual)) {
+					throw new IllegalArgumentException("The patch does not apply to '" + change.getPath() + "[" + index + "]', expecting primary key " + expected + " but found " + actual);
+				}
+			}
+			rebuilt.add(item);
+		}
+		return rebuilt;
+	}
+	
+	private static String getPrimaryKey(ComplexType type) {
+		Element<?>[] elements = BeanUtils.getElements(type);
+		int slot = type instanceof BeanType ? ((BeanType<?>) type).getSlots().primaryKey : BeanType.Slots.getPrimaryKey(elements);
+		return slot < 0 ? null : elements[slot].getName();
+	}
+	
+	private static Object readKey(Object item, String primaryKey) {
+		item = BeanUtils.unwrap(item);
+		if (item == null) {
+			return null;
+		}
+		ComplexType type = BeanTraverser.getType(item, null);
+		if (type == null) {
+			return null;
+		}
+		Element<?>[] elements = BeanUtils.getElements(type);
+		int slot = type instanceof BeanType ? ((BeanType<?>) type).getSlot(primaryKey) : -1;
+		if (slot < 0) {
+			return item instanceof ComplexContent ? ((ComplexContent) item).get(primaryKey) : null;
+		}
+		return BeanUtils.read(item, type, elements, slot);
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ComplexContent toContent(Object object) {
+		return object instanceof ComplexContent ? (ComplexContent) object : new BeanInstance(object);
+	}
+	
+	private static class Comparison {
+		private Object original, updated;
+		private ComplexType type;
+		private String path;
+		
+		Comparison(Object original, Object updated, ComplexType type, String path) {
+			this.original = original;
+			this.updated = updated;
+			this.type = type;
+			this.path = path;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * Structural equality and hashing for beans and complex content, driven by the slot table of the types.
+ * Complex values are compared by content, simple values with equals. Nested values are compared without recursion and pairs that are already being compared are considered equal, so cycles are no problem.
+ * The primary key variant only compares the primary key of a type (@Field(primary = true)), types without a primary key and instances without a key value are compared deeply.
+ * Hashing follows the same rules so equal instances always have the same hash.
+ * The deep hash of frozen instances is calculated once and cached.
+ */
+public class BeanEquality {
+
+	public static final BeanEquality DEEP = new BeanEquality(false);
+	public static final BeanEquality PRIMARY_KEY = new BeanEquality(true);
+	
+	private boolean primaryKeyOnly;
+	
+	private BeanEquality(boolean primaryKeyOnly) {
+		this.primaryKeyOnly = primaryKeyOnly;
+	}
+	
+	public boolean equals(Object first, Object second) {
+		Deque<Object> pending = new ArrayDeque<Object>();
+		Map<Object, Object> compared = new IdentityHashMap<Object, Object>();
+		push(pending, first, second);
+		while (!pending.isEmpty()) {
+			Object right = pending.pop();
+			Object left = pending.pop();
+			if (left == right) {
+				continue;
+			}
+			else if (left == null || right == null) {
+				return false;
+			}
+			ComplexType type = BeanTraverser.getType(left, null);
+			if (type == null) {
+				if (!Objects.deepEquals(left, right)) {
+					return false;
+				}
+				continue;
+			}
+			else if (!type.equals(BeanTraverser.getType(right, null))) {
+				return false;
+			}
+			else if (compared.get(left) == right) {
+				continue;
+			}
+			compared.put(left, right);
+			// if both have a cached hash we can quickly rule out differences
+			if (!primaryKeyOnly) {
+				Integer leftHash = getCachedHash(left), rightHash = getCachedHash(right);
+				if (leftHash != null && rightHash != null && !leftHash.equals(rightHash)) {
+					return false;
+				}
+			}
+			Element<?>[] elements = BeanUtils.getElements(type);
+			int primaryKey = primaryKeyOnly ? getPrimaryKey(type, elements) : -1;
+			if (primaryKey >= 0) {
+				Object leftKey = BeanUtils.read(left, type, elements, primaryKey), rightKey = BeanUtils.read(right, type, elements, primaryKey);
+				// new instances that don't have a key yet are not all the same
+				if (leftKey != null && rightKey != null) {
+					push(pending, leftKey, rightKey);
+					continue;
+				}
+			}
+			BeanType.Slots slots = type instanceof BeanType ? ((BeanType<?>) type).getSlots() : null;
+			for (int i = 0; i < elements.length; i++) {
+				Object leftValue = BeanUtils.unwrap(BeanUtils.read(left, type, elements, i));
+				Object rightValue = BeanUtils.unwrap(BeanUtils.read(right, type, elements, i));
+				if (leftValue == rightValue) {
+					continue;
+				}
+				else if (slots == null ? elements[i].getType().isList(elements[i].getProperties()) : slots.lists[i]) {
+					List<?> leftList = BeanUtils.toList(leftValue);
+					List<?> rightList = BeanUtils.toList(rightValue);
+					if (leftList.size() != rightList.size()) {
+						return false;
+					}
+					for (int j = 0; j < leftList.size(); j++) {
+						push(pending, leftList.get(j), rightList.get(j));
+					}
+				}
+				else if (!(slots == null ? elements[i].getType() instanceof ComplexType : slots.complex[i])) {
+					if (!Objects.deepEquals(leftValue, rightValue)) {
+						return false;
+					}
+				}
+				else {
+					push(pending, leftValue, rightValue);
+				}
+			}
+		}
+		return true;
+	}
+	
+	public int hashCode(Object object) {
+		object = BeanUtils.unwrap(object);
+		if (object == null) {
+			return 0;
+		}
+		ComplexType type = BeanTraverser.getType(object, null);
+		if (type == null) {
+			return hash(object);
+		}
+		if (primaryKeyOnly) {
+			Object key = getKey(object, type);
+			if (key != null) {
+				return 31 * type.hashCode() + hashCode(key);
+			}
+			// the cached hash is a deep one, nested instances with a key are only hashed by their key here
+			HashVisitor visitor = new HashVisitor(true);
+			new BeanTraverser().traverse(object, visitor);
+			return visitor.hash;
+		}
+		Integer cached = getCachedHash(object);
+		if (cached != null) {
+			return cached;
+		}
+		HashVisitor visitor = new HashVisitor(false);
+		new BeanTraverser().traverse(object, visitor);
+		setCachedHash(object, visitor.hash);
+		return visitor.hash;
+	}
+	
+	/**
+	 * Wraps the bean in a key that uses this equality, e.g. to dedupe beans in a hash set, the hash is calculated once
+	 */
+	public Key key(Object bean) {
+		return new Key(this, bean);
+	}
+	
+	private static void push(Deque<Object> pending, Object left, Object right) {
+		pending.push(BeanUtils.unwrap(left));
+		pending.push(BeanUtils.unwrap(right));
+	}
+	
+	private static int getPrimaryKey(ComplexType type, Element<?>[] elements) {
+		return type instanceof BeanType ? ((BeanType<?>) type).getSlots().primaryKey : BeanType.Slots.getPrimaryKey(elements);
+	}
+	
+	private static Object getKey(Object object, ComplexType type) {
+		Element<?>[] elements = BeanUtils.getElements(type);
+		int primaryKey = getPrimaryKey(type, elements);
+		return primaryKey >= 0 ? BeanUtils.read(object, type, elements, primaryKey) : null;
+	}
+	
+	private static int hash(Object value) {
+		return value.getClass().isArray() ? Arrays.deepHashCode(new Object[] { value }) : value.hashCode();
+	}
+	
+	private Integer getCachedHash(Object object) {
+		if (object instanceof FrozenComplexContent) {
+			return ((FrozenComplexContent) object).getHash();
+		}
+		BeanInterfaceInstance handler = getFrozenHandler(object);
+		return handler == null ? null : handler.getHash();
+	}
+	
+	private void setCachedHash(Object object, int hash) {
+		if (object instanceof FrozenComplexContent) {
+			((FrozenComplexContent) object).setHash(hash);
+		}
+		else {
+			BeanInterfaceInstance handler = getFrozenHandler(object);
+			if (handler != null) {
+				handler.setHash(hash);
+			}
+		}
+	}
+	
+	private static BeanInterfaceInstance getFrozenHandler(Object object) {
+		if (Proxy.isProxyClass(object.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(object);
+			if (handler instanceof BeanInterfaceInstance && ((BeanInterfaceInstance) handler).isFrozen()) {
+				return (BeanInterfaceInstance) handler;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Folds the structure of the graph into a hash, null values don't contribute so they are the same as absent values
+	 */
+	private static class HashVisitor implements BeanVisitor {
+		private boolean primaryKeyOnly;
+		private int hash = 1;
+		
+		HashVisitor(boolean primaryKeyOnly) {
+			this.primaryKeyOnly = primaryKeyOnly;
+		}
+		
+		@Override
+		public boolean enter(BeanCursor cursor) {
+			hash = 31 * hash + cursor.getSlot();
+			hash = 31 * hash + cursor.getIndex();
+			if (primaryKeyOnly) {
+				Object key = getKey(cursor.getValue(), cursor.getType());
+				if (key != null) {
+					hash = 31 * hash + PRIMARY_KEY.hashCode(key);
+					return false;
+				}
+			}
+			return true;
+		}
+		@Override
+		public void leave(BeanCursor cursor) {
+			hash = 31 * hash + 1;
+		}
+		@Override
+		public void value(BeanCursor cursor) {
+			if (cursor.getValue() != null) {
+				hash = 31 * hash + cursor.getSlot();
+				hash = 31 * hash + cursor.getIndex();
+				hash = 31 * hash + hash(cursor.getValue());
+			}
+		}
+		@Override
+		public void cycle(BeanCursor cursor) {
+			hash = 31 * hash + 7;
+		}
+	}
+	
+	public static class Key {
+		private BeanEquality equality;
+		private Object bean;
+		private int hash;
+		
+		Key(BeanEquality equality, Object bean) {
+			this.equality = equality;
+			this.bean = bean;
+			this.hash = equality.hashCode(bean);
+		}
+		
+		public Object getBean() {
+			return bean;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object object) {
+			return object instanceof Key && ((Key) object).hash == hash && ((Key) object).equality == equality && equality.equals(bean, ((Key) object).bean);
+		}
+	}
+}
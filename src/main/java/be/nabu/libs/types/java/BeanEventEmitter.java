@@ -0,0 +1,96 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import be.nabu.libs.types.api.Attribute;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * Emits a bean graph as a stream of events so writers can serialize directly from the beans.
+ * The elements are emitted in the order of the type with the attributes first, no intermediate ComplexContent wrappers are created.
+ * An emitter reuses its traverser and is not thread safe, use one per thread.
+ */
+public class BeanEventEmitter {
+
+	private BeanTraverser traverser = new BeanTraverser();
+	private boolean includeNulls;
+	
+	public BeanEventEmitter() {
+		traverser.setAttributesFirst(true);
+	}
+	
+	public void emit(Object bean, final BeanEventHandler handler) {
+		traverser.traverse(bean, new BeanVisitor() {
+			@Override
+			public boolean enter(BeanCursor cursor) {
+				// list items and the root have no field
+				if (cursor.getElement() != null && cursor.getIndex() < 0) {
+					handler.field(cursor.getElement(), false);
+				}
+				handler.startObject(cursor.getType());
+				return true;
+			}
+			@Override
+			public void leave(BeanCursor cursor) {
+				handler.endObject(cursor.getType());
+			}
+			@Override
+			public boolean enterList(BeanCursor cursor) {
+				handler.field(cursor.getElement(), cursor.getElement() instanceof Attribute);
+				handler.startList(cursor.getElement(), cursor.getSize());
+				return true;
+			}
+			@Override
+			public void leaveList(BeanCursor cursor) {
+				handler.endList(cursor.getElement());
+			}
+			@Override
+			public void value(BeanCursor cursor) {
+				if (cursor.getIndex() >= 0) {
+					handler.value(cursor.getElement(), cursor.getValue());
+				}
+				else if (cursor.getValue() != null || includeNulls) {
+					ComplexType parentType = cursor.getParentType();
+					if (parentType instanceof BeanType && cursor.getElement() == ((BeanType<?>) parentType).getValueElement()) {
+						handler.content(cursor.getElement(), cursor.getValue());
+					}
+					else {
+						handler.field(cursor.getElement(), cursor.getElement() instanceof Attribute);
+						handler.value(cursor.getElement(), cursor.getValue());
+					}
+				}
+			}
+			@Override
+			public void cycle(BeanCursor cursor) {
+				throw new IllegalStateException("Can not emit the cyclic reference at: " + cursor.getPath());
+			}
+		});
+	}
+
+	/**
+	 * Whether null fields are emitted as a field and value event, by default they are skipped
+	 */
+	public boolean isIncludeNulls() {
+		return includeNulls;
+	}
+
+	public void setIncludeNulls(boolean includeNulls) {
+		this.includeNulls = includeNulls;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * Receives the serialization events of a {@link BeanEventEmitter}, comparable to what a SAX or streaming json parser would emit.
+ * A field event announces the element of the next value, object or list. List items are not preceded by a field event.
+ * All the attributes of an object are emitted before its other elements.
+ */
+public interface BeanEventHandler {
+	
+	public void startObject(ComplexType type);
+	
+	public void endObject(ComplexType type);
+	
+	public void field(Element<?> element, boolean attribute);
+	
+	/**
+	 * The size is -1 if it is not known up front
+	 */
+	public void startList(Element<?> element, int size);
+	
+	public void endList(Element<?> element);
+	
+	/**
+	 * A simple value, null values are only emitted for list items unless the emitter is configured to include them
+	 */
+	public void value(Element<?> element, Object value);
+	
+	/**
+	 * The simple content of a complex type with a value element (@XmlValue), it is emitted after the attributes and is not preceded by a field event
+	 */
+	public void content(Element<?> element, Object value);
+}
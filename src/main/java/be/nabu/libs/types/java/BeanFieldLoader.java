@@ -0,0 +1,26 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+/**
+ * Loads the value of a field of a lazy interface bean the first time it is requested, see {@link BeanType#instantiateLazy(BeanFieldLoader)}
+ * The value must be compatible with the return type of the getter, it is cached in the bean (even if it is null) so the loader is called at most once per field.
+ */
+public interface BeanFieldLoader<T> {
+	public Object load(T bean, String property) throws Exception;
+}
@@ -0,0 +1,358 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+
+/**
+ * Creates immutable snapshots of bean graphs that can be cached and shared between threads without copying.
+ * Interface beans are frozen into read-only proxies of the same interface, other complex content is frozen into a {@link FrozenComplexContent}.
+ * Lists become read-only unless the bean requires a concrete collection class, arrays are copied on every read.
+ * Class beans are always frozen as content, when an interface bean returns one from a getter every read gets its own mutable copy so the snapshot itself can not change.
+ * Simple values are shared as they are, except for dates and calendars which are copied when frozen and again on every read.
+ * Parts of the graph that are already frozen are reused.
+ */
+public class BeanFreezer {
+
+	private enum Mode {
+		PROXY,
+		CONTENT
+	}
+	
+	private BeanFreezer() {
+		// static access only
+	}
+	
+	/**
+	 * Freezes an interface bean, the result implements the same interface but throws an exception when a setter is called
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T freezeBean(T bean) {
+		if (bean == null || isFrozen(bean)) {
+			return bean;
+		}
+		BeanType<?> type = BeanInstance.resolveType(bean instanceof BeanInstance ? ((BeanInstance<?>) bean).getUnwrapped() : bean);
+		if (!type.getBeanClass().isInterface()) {
+			throw new IllegalArgumentException("Only interface beans can be frozen as a bean, freeze " + type.getBeanClass().getName() + " as complex content instead");
+		}
+		return (T) new Freezer().freeze(bean);
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static ComplexContent freeze(ComplexContent content) {
+		if (content == null || isFrozen(content)) {
+			return content;
+		}
+		Object frozen = new Freezer().freeze(content);
+		return frozen instanceof ComplexContent ? (ComplexContent) frozen : new BeanInstance(frozen);
+	}
+	
+	public static boolean isFrozen(Object object) {
+		if (object instanceof BeanInstance) {
+			object = ((BeanInstance<?>) object).getUnwrapped();
+		}
+		if (object instanceof FrozenComplexContent) {
+			return true;
+		}
+		else if (object != null && Proxy.isProxyClass(object.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(object);
+			return handler instanceof BeanInterfaceInstance && ((BeanInterfaceInstance) handler).isFrozen();
+		}
+		return false;
+	}
+	
+	/**
+	 * Builds the frozen graph bottom-up while traversing, this does not recurse so deep graphs are no problem
+	 */
+	private static class Freezer implements BeanVisitor {
+		
+		private List<Builder> builders = new ArrayList<Builder>();
+		// a shared object is only frozen once so the sharing is retained in the snapshot
+		private Map<Object, Object> frozen = new IdentityHashMap<Object, Object>();
+		private Object result;
+		
+		Object freeze(Object root) {
+			new BeanTraverser().traverse(root, this);
+			return result;
+		}
+		
+		@Override
+		public boolean enter(BeanCursor cursor) {
+			Object value = cursor.getValue();
+			Builder parent = builders.isEmpty() ? null : builders.get(builders.size() - 1);
+			ComplexType type = cursor.getType();
+			Mode mode = type instanceof BeanType && ((BeanType<?>) type).getBeanClass().isInterface() ? Mode.PROXY : Mode.CONTENT;
+			Object existing = isFrozen(value) ? value : frozen.get(value);
+			if (existing != null) {
+				if (parent == null) {
+					result = existing;
+				}
+				else {
+					assign(cursor, existing);
+				}
+				return false;
+			}
+			builders.add(new Builder(type, mode, value));
+			return true;
+		}
+
+		@Override
+		public void leave(BeanCursor cursor) {
+			Builder builder = builders.remove(builders.size() - 1);
+			Object built = builder.build();
+			frozen.put(builder.source, built);
+			if (builders.isEmpty()) {
+				result = built;
+			}
+			else {
+				assign(cursor, built);
+			}
+		}
+
+		@Override
+		public void value(BeanCursor cursor) {
+			assign(cursor, copy(cursor.getValue()));
+		}
+		
+		@Override
+		public boolean enterList(BeanCursor cursor) {
+			builders.get(builders.size() - 1).list = new Items();
+			return true;
+		}
+		
+		@Override
+		public void leaveList(BeanCursor cursor) {
+			Builder builder = builders.get(builders.size() - 1);
+			builder.values.put(cursor.getElement().getName(), builder.list);
+			builder.list = null;
+		}
+
+		@Override
+		public void cycle(BeanCursor cursor) {
+			throw new IllegalStateException("Can not freeze the cyclic reference at: " + cursor.getPath());
+		}
+		
+		private void assign(BeanCursor cursor, Object value) {
+			Builder builder = builders.get(builders.size() - 1);
+			if (cursor.getIndex() >= 0) {
+				builder.list.add(value);
+			}
+			else if (value != null) {
+				builder.values.put(cursor.getElement().getName(), value);
+			}
+		}
+	}
+	
+	private static class Builder {
+		private ComplexType type;
+		private Mode mode;
+		private Object source;
+		private Map<String, Object> values = new LinkedHashMap<String, Object>();
+		private Items list;
+		
+		Builder(ComplexType type, Mode mode, Object source) {
+			this.type = type;
+			this.mode = mode;
+			this.source = source;
+		}
+		
+		Object build() {
+			if (mode == Mode.CONTENT) {
+				for (Map.Entry<String, Object> entry : values.entrySet()) {
+					if (entry.getValue() instanceof Items) {
+						entry.setValue(Collections.unmodifiableList(new ArrayList<Object>((Items) entry.getValue())));
+					}
+				}
+				return new FrozenComplexContent(type, values);
+			}
+			BeanType<?> beanType = (BeanType<?>) type;
+			Map<String, Object> properties = new LinkedHashMap<String, Object>();
+			for (Map.Entry<String, Object> entry : values.entrySet()) {
+				BeanAccessor accessor = beanType.getAccessor(entry.getKey());
+				Object value = entry.getValue() instanceof Items ? toCollection(accessor.getValueClass(), (Items) entry.getValue(), true) : entry.getValue();
+				properties.put(accessor.getPropertyName(), value);
+			}
+			return beanType.instantiateFrozen(properties);
+		}
+	}
+	
+	/**
+	 * Arrays, class beans and mutable simple values can not be made read-only, a frozen interface bean returns a mutable copy of them on every read.
+	 * Frozen class beans and mutable simple values inside the copy are copied as well.
+	 */
+	@SuppressWarnings("unchecked")
+	static Object thaw(Object value, Class<?> target) {
+		if (value instanceof FrozenComplexContent) {
+			return target.isInstance(value) ? value : thaw((FrozenComplexContent) value);
+		}
+		else if (isMutable(value)) {
+			return copy(value);
+		}
+		else if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+			Class<?> componentType = target.isArray() ? target.getComponentType() : value.getClass().getComponentType();
+			Object copy = Array.newInstance(componentType, length);
+			if (componentType.isPrimitive()) {
+				System.arraycopy(value, 0, copy, 0, length);
+			}
+			else {
+				for (int i = 0; i < length; i++) {
+					Object item = Array.get(value, i);
+					Array.set(copy, i, thawItem(Array.get(value, i)));
+				}
+			}
+			return copy;
+		}
+		else if (value instanceof Collection && (containsContent((Collection<?>) value) || containsMutable((Collection<?>) value))) {
+			return toCollection(target, thaw((Collection<Object>) value), true);
+		}
+		return value;
+	}
+	
+	static boolean containsContent(Collection<?> collection) {
+		for (Object item : collection) {
+			if (item instanceof FrozenComplexContent) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean containsMutable(Collection<?> collection) {
+		for (Object item : collection) {
+			if (isMutable(item)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isMutable(Object value) {
+		return value instanceof Date || value instanceof Calendar;
+	}
+	
+	/**
+	 * Copies the simple values that can be changed in place, a list of them is copied into a new read-only list
+	 */
+	static Object copy(Object value) {
+		if (value instanceof Date) {
+			return ((Date) value).clone();
+		}
+		else if (value instanceof Calendar) {
+			return ((Calendar) value).clone();
+		}
+		else if (value instanceof List && containsMutable((List<?>) value)) {
+			List<Object> items = new ArrayList<Object>(((List<?>) value).size());
+			for (Object item : (List<?>) value) {
+				items.add(copy(item));
+			}
+			return Collections.unmodifiableList(items);
+		}
+		return value;
+	}
+	
+	private static Object thawItem(Object item) {
+		return item instanceof FrozenComplexContent ? thaw((FrozenComplexContent) item) : copy(item);
+	}
+	
+	private static List<Object> thaw(Collection<Object> collection) {
+		List<Object> items = new ArrayList<Object>(collection.size());
+		for (Object item : collection) {
+			items.add(thawItem(item));
+		}
+		return items;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Object thaw(FrozenComplexContent content) {
+		if (!(content.getType() instanceof BeanType)) {
+			return content;
+		}
+		BeanType<?> beanType = (BeanType<?>) content.getType();
+		Object instance = beanType.instantiate();
+		for (Map.Entry<String, Object> entry : content.getValues().entrySet()) {
+			BeanAccessor accessor = beanType.getAccessor(entry.getKey());
+			if (accessor != null && accessor.isSettable()) {
+				Object value = entry.getValue();
+				if (value instanceof FrozenComplexContent) {
+					value = thaw((FrozenComplexContent) value);
+				}
+				else if (value instanceof List) {
+					value = toCollection(accessor.getValueClass(), thaw((List<Object>) value), false);
+				}
+				try {
+					accessor.set(instance, value);
+				}
+				catch (Exception e) {
+					throw new RuntimeException("Could not copy '" + entry.getKey() + "' to " + beanType.getBeanClass().getName(), e);
+				}
+			}
+		}
+		return instance;
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static Object toCollection(Class<?> target, List<Object> items, boolean readOnly) {
+		if (target.isArray()) {
+			// frozen class beans can not be stored in an array of their class, they are converted back when the array is read
+			Object array = Array.newInstance(containsContent(items) ? Object.class : target.getComponentType(), items.size());
+			for (int i = 0; i < items.size(); i++) {
+				Array.set(array, i, items.get(i));
+			}
+			return array;
+		}
+		else if (target.isAssignableFrom(ArrayList.class)) {
+			List<Object> list = new ArrayList<Object>(items);
+			return readOnly ? Collections.unmodifiableList(list) : list;
+		}
+		else if (target.isAssignableFrom(LinkedHashSet.class)) {
+			LinkedHashSet<Object> set = new LinkedHashSet<Object>(items);
+			return readOnly ? Collections.unmodifiableSet(set) : set;
+		}
+		try {
+			Collection collection = (Collection) target.newInstance();
+			collection.addAll(items);
+			return collection;
+		}
+		catch (Exception e) {
+			throw new IllegalArgumentException("Can not create a collection of type " + target.getName(), e);
+		}
+	}
+	
+	/**
+	 * The list items that are collected while traversing
+	 */
+	private static class Items extends ArrayList<Object> {
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,251 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps entities to a canonical instance based on their type and primary key (@Field(primary = true)).
+ * Beans that are loaded repeatedly (e.g. reference data) can be canonicalized so only one instance of each entity is retained.
+ * The map is thread-safe. It does not track changes: if you update a canonical instance, everyone that shares it sees the update, so this combines well with frozen beans.
+ */
+public class BeanIdentityMap {
+
+	public enum Eviction {
+		/**
+		 * Entries are removed once the canonical instance is no longer strongly referenced elsewhere
+		 */
+		WEAK,
+		/**
+		 * Entries are removed when the garbage collector needs the memory
+		 */
+		SOFT,
+		/**
+		 * Instances are strongly referenced but only the most recently used entries are kept
+		 */
+		BOUNDED
+	}
+	
+	private Eviction eviction;
+	private int maxSize;
+	private Map<Key, Object> entries;
+	private ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+	private long hits, misses, evictions;
+	
+	public BeanIdentityMap() {
+		this(Eviction.WEAK, 0);
+	}
+	
+	public BeanIdentityMap(Eviction eviction) {
+		this(eviction, 0);
+	}
+	
+	@SuppressWarnings("serial")
+	public BeanIdentityMap(Eviction eviction, int maxSize) {
+		if (eviction == Eviction.BOUNDED && maxSize <= 0) {
+			throw new IllegalArgumentException("A bounded identity map needs a maximum size");
+		}
+		this.eviction = eviction;
+		this.maxSize = maxSize;
+		if (eviction == Eviction.BOUNDED) {
+			this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+					if (size() > BeanIdentityMap.this.maxSize) {
+						evictions++;
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+		else {
+			this.entries = new HashMap<Key, Object>();
+		}
+	}
+	
+	/**
+	 * Returns the canonical instance of the entity, if there is none yet, the given bean becomes the canonical instance
+	 * Beans without a primary key value are returned as they are
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> T canonicalize(T bean) {
+		if (bean == null) {
+			return null;
+		}
+		Object unwrapped = BeanUtils.unwrap(bean);
+		BeanType<?> type = BeanInstance.resolveType(unwrapped);
+		Object id = getPrimaryKey(type, unwrapped);
+		if (id == null) {
+			return bean;
+		}
+		expunge();
+		Key key = new Key(type, id);
+		Object existing = dereference(entries.get(key));
+		if (existing != null) {
+			hits++;
+			return bean instanceof BeanInstance ? (T) new BeanInstance<Object>((BeanType<Object>) type, existing) : (T) existing;
+		}
+		misses++;
+		entries.put(key, reference(key, unwrapped));
+		return bean;
+	}
+	
+	/**
+	 * Looks up the canonical instance for the primary key, this does not count towards the statistics
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> T get(BeanType<T> type, Object id) {
+		if (id == null) {
+			return null;
+		}
+		expunge();
+		return (T) dereference(entries.get(new Key(type, id)));
+	}
+	
+	public synchronized void remove(BeanType<?> type, Object id) {
+		if (id != null) {
+			entries.remove(new Key(type, id));
+		}
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+		expunge();
+	}
+	
+	/**
+	 * The amount of entries, for weak and soft maps this can include entries that were collected but not yet expunged
+	 */
+	public synchronized int size() {
+		expunge();
+		return entries.size();
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * The amount of entries that were removed because of the eviction policy
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	public synchronized double getHitRatio() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+	
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+	
+	public Eviction getEviction() {
+		return eviction;
+	}
+	
+	private static Object getPrimaryKey(BeanType<?> type, Object bean) {
+		BeanType.Slots slots = type.getSlots();
+		if (slots.primaryKey < 0) {
+			throw new IllegalArgumentException("The type " + type.getBeanClass().getName() + " does not have a primary key");
+		}
+		return BeanUtils.read(bean, type, slots.elements, slots.primaryKey);
+	}
+	
+	private Object reference(Key key, Object bean) {
+		switch (eviction) {
+			case WEAK: return new WeakEntry(key, bean, queue);
+			case SOFT: return new SoftEntry(key, bean, queue);
+			default: return bean;
+		}
+	}
+	
+	private static Object dereference(Object value) {
+		return value instanceof Reference ? ((Reference<?>) value).get() : value;
+	}
+	
+	/**
+	 * Removes the entries whose instance was collected, we only remove the entry if it was not replaced in the meantime
+	 */
+	private void expunge() {
+		Reference<?> reference;
+		while ((reference = queue.poll()) != null) {
+			Key key = reference instanceof WeakEntry ? ((WeakEntry) reference).key : ((SoftEntry) reference).key;
+			if (entries.get(key) == reference) {
+				entries.remove(key);
+				evictions++;
+			}
+		}
+	}
+	
+	private static class WeakEntry extends WeakReference<Object> {
+		private Key key;
+		
+		WeakEntry(Key key, Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+	
+	private static class SoftEntry extends SoftReference<Object> {
+		private Key key;
+		
+		SoftEntry(Key key, Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.key = key;
+		}
+	}
+	
+	private static final class Key {
+		private BeanType<?> type;
+		private Object id;
+		
+		Key(BeanType<?> type, Object id) {
+			this.type = type;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(type) + id.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) object;
+			// types are resolved once so we can compare them by identity
+			return type == other.type && id.equals(other.id);
+		}
+	}
+}
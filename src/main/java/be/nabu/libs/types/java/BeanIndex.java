@@ -0,0 +1,226 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import be.nabu.libs.converter.ConverterFactory;
+import be.nabu.libs.types.api.SimpleType;
+import be.nabu.libs.types.java.BeanInstance.ComplexContentList;
+
+/**
+ * An in-memory index over a collection of beans on a (compiled) path, e.g. all the orders by "customer/id".
+ * A hash index supports lookups by key, a sorted index also supports ranges, the keys of a sorted index must be comparable.
+ * The index can be attached to a ComplexContentList in which case it is updated whenever the list is modified through its api.
+ * Changes to the beans themselves or to the list underneath the wrapper are not seen, in that case you need to rebuild the index.
+ * The index is thread-safe but the list it is attached to is not.
+ */
+public class BeanIndex<T> implements ComplexContentList.MutationListener<T> {
+
+	public enum Kind {
+		HASH,
+		SORTED
+	}
+	
+	private BeanPath path;
+	private Kind kind;
+	private Class<?> keyClass;
+	private Map<Object, List<T>> entries;
+	// beans that have no value for the path
+	private List<T> empty = new ArrayList<T>();
+	private int size;
+	
+	public BeanIndex(BeanType<T> type, String path, Kind kind) {
+		this(BeanPath.compile(type, path), kind);
+	}
+	
+	public BeanIndex(BeanPath path, Kind kind) {
+		this.path = path;
+		this.kind = kind;
+		this.entries = kind == Kind.SORTED ? new TreeMap<Object, List<T>>() : new HashMap<Object, List<T>>();
+		this.keyClass = path.getElement().getType() instanceof SimpleType ? ((SimpleType<?>) path.getElement().getType()).getInstanceClass() : null;
+	}
+	
+	public static <T> BeanIndex<T> hash(BeanType<T> type, String path, Collection<? extends T> beans) {
+		return new BeanIndex<T>(type, path, Kind.HASH).addAll(beans);
+	}
+	
+	public static <T> BeanIndex<T> sorted(BeanType<T> type, String path, Collection<? extends T> beans) {
+		return new BeanIndex<T>(type, path, Kind.SORTED).addAll(beans);
+	}
+	
+	public synchronized BeanIndex<T> addAll(Collection<? extends T> beans) {
+		for (T bean : beans) {
+			added(bean);
+		}
+		return this;
+	}
+	
+	/**
+	 * Indexes the current content of the list and keeps the index up to date with the changes made through the list
+	 */
+	public synchronized BeanIndex<T> attach(ComplexContentList<T> list) {
+		addAll(list.getList());
+		list.addListener(this);
+		return this;
+	}
+	
+	public synchronized void detach(ComplexContentList<T> list) {
+		list.removeListener(this);
+	}
+	
+	@Override
+	public synchronized void added(T item) {
+		Object key = path.get(item);
+		List<T> list = key == null ? empty : entries.get(key);
+		if (list == null) {
+			list = new ArrayList<T>(1);
+			entries.put(key, list);
+		}
+		list.add(item);
+		size++;
+	}
+	
+	@Override
+	public synchronized void removed(T item) {
+		// the key may have changed since the bean was indexed so if it is not found under its current key, we search the whole index
+		Object key = path.get(item);
+		List<T> list = key == null ? empty : entries.get(key);
+		if (list == null || !removeInstance(list, item)) {
+			list = null;
+			if (removeInstance(empty, item)) {
+				list = empty;
+			}
+			else {
+				for (Map.Entry<Object, List<T>> entry : entries.entrySet()) {
+					if (removeInstance(entry.getValue(), item)) {
+						key = entry.getKey();
+						list = entry.getValue();
+						break;
+					}
+				}
+			}
+			if (list == null) {
+				return;
+			}
+		}
+		if (list.isEmpty() && list != empty) {
+			entries.remove(key);
+		}
+		size--;
+	}
+	
+	private static boolean removeInstance(List<?> list, Object item) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == item) {
+				list.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The beans that have the given value for the path, the key is converted to the type of the path if necessary
+	 */
+	public synchronized List<T> get(Object key) {
+		List<T> list = key == null ? empty : entries.get(toKey(key));
+		return list == null ? Collections.<T>emptyList() : new ArrayList<T>(list);
+	}
+	
+	public synchronized T getFirst(Object key) {
+		List<T> list = key == null ? empty : entries.get(toKey(key));
+		return list == null || list.isEmpty() ? null : list.get(0);
+	}
+	
+	/**
+	 * The beans with a key between from (inclusive) and to (exclusive) in key order, a null boundary is unbounded
+	 */
+	public synchronized List<T> range(Object from, Object to) {
+		return range(from, true, to, false);
+	}
+	
+	public synchronized List<T> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+		if (kind != Kind.SORTED) {
+			throw new UnsupportedOperationException("Range queries require a sorted index on: " + path);
+		}
+		NavigableMap<Object, List<T>> map = (NavigableMap<Object, List<T>>) entries;
+		if (from != null && to != null) {
+			map = map.subMap(toKey(from), fromInclusive, toKey(to), toInclusive);
+		}
+		else if (from != null) {
+			map = map.tailMap(toKey(from), fromInclusive);
+		}
+		else if (to != null) {
+			map = map.headMap(toKey(to), toInclusive);
+		}
+		List<T> result = new ArrayList<T>();
+		for (List<T> list : map.values()) {
+			result.addAll(list);
+		}
+		return result;
+	}
+	
+	/**
+	 * The distinct keys in the index, for a sorted index they are in order
+	 */
+	public synchronized List<Object> getKeys() {
+		return new ArrayList<Object>(entries.keySet());
+	}
+	
+	public synchronized boolean containsKey(Object key) {
+		return key == null ? !empty.isEmpty() : entries.containsKey(toKey(key));
+	}
+	
+	public synchronized int size() {
+		return size;
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+		empty.clear();
+		size = 0;
+	}
+	
+	public BeanPath getPath() {
+		return path;
+	}
+	
+	public Kind getKind() {
+		return kind;
+	}
+	
+	private Object toKey(Object key) {
+		key = BeanUtils.unwrap(key);
+		if (keyClass != null && !keyClass.isInstance(key)) {
+			Object converted = ConverterFactory.getInstance().getConverter().convert(key, keyClass);
+			if (converted == null) {
+				throw new IllegalArgumentException("Can not convert the key " + key + " to " + keyClass.getName() + " for the index on: " + path);
+			}
+			return converted;
+		}
+		return key;
+	}
+}
@@ -22,14 +22,30 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import be.nabu.libs.converter.ConverterFactory;
 import be.nabu.libs.converter.api.Converter;
+import be.nabu.libs.types.java.BeanAccessRecorder.AccessType;
 import be.nabu.libs.types.BaseTypeInstance;
 import be.nabu.libs.types.CollectionHandlerFactory;
 import be.nabu.libs.types.ComplexContentWrapperFactory;
@@ -75,16 +91,28 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		if (instance instanceof Class) {
 			throw new IllegalArgumentException("Can not wrap around java.lang.Class");
 		}
+		this.definition = (BeanType<T>) resolveType(instance);
+		this.instance = instance;
+	}
+	
+	/**
+	 * Determines the bean type of an unwrapped instance, for generated interface beans this is the original interface type
+	 */
+	static BeanType<?> resolveType(Object instance) {
+		return resolveType(instance, null);
+	}
+	
+	/**
+	 * If no resolver is given, the resolver that owns the class is used (see {@link BeanResolver#getFor(Class)})
+	 */
+	static BeanType<?> resolveType(Object instance, BeanResolver resolver) {
 		if (Proxy.isProxyClass(instance.getClass())) {
 			InvocationHandler invocationHandler = Proxy.getInvocationHandler(instance);
 			if (invocationHandler instanceof BeanInterfaceInstance) {
-				this.definition = (BeanType<T>) ((BeanInterfaceInstance) invocationHandler).getOriginalType();
+				return ((BeanInterfaceInstance) invocationHandler).getOriginalType();
 			}
 		}
-		if (this.definition == null) {
-			this.definition = (BeanType<T>) BeanResolver.getInstance().resolve((Class<T>) instance.getClass());
-		}
-		this.instance = instance;
+		return (BeanType<?>) (resolver == null ? BeanResolver.getFor(instance.getClass()) : resolver).resolve(instance.getClass());
 	}
 	
 	public BeanInstance(BeanType<T> definition, Object instance) {
@@ -102,9 +130,54 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 
 	@Override
 	public void set(String path, Object value) {
+		record(path, AccessType.WRITE);
+		checkWritable(path);
 		set(ParsedPath.parse(path), value);
 	}
 	
+	// fail before anything is converted or instantiated
+	private void checkWritable(String path) {
+		if (definition.getBeanClass().isInterface() && BeanFreezer.isFrozen(instance)) {
+			throw new UnsupportedOperationException("Can not update '" + path + "', the instance of " + definition.getBeanClass().getName() + " is frozen");
+		}
+	}
+	
+	/**
+	 * The write was already recorded for the full path so a nested bean instance should not record it again
+	 */
+	private static void setNested(Object singleObject, ParsedPath childPath, Object value) {
+		if (!(singleObject instanceof ComplexContent))
+			singleObject = ComplexContentWrapperFactory.getInstance().getWrapper().wrap(singleObject);
+		if (singleObject instanceof BeanInstance) {
+			((BeanInstance<?>) singleObject).checkWritable(childPath.toString());
+			((BeanInstance<?>) singleObject).set(childPath, value);
+		}
+		else {
+			((ComplexContent) singleObject).set(childPath.toString(), value);
+		}
+	}
+	
+	/**
+	 * Creates an immutable snapshot of this instance and everything it references, see {@link BeanFreezer}
+	 */
+	public ComplexContent freeze() {
+		return BeanFreezer.freeze(this);
+	}
+	
+	/**
+	 * Returns a new version of this instance where the value at the path is replaced, only the objects on the path are copied, see {@link BeanCopyOnWrite}
+	 */
+	public BeanInstance<T> with(String path, Object value) {
+		return BeanCopyOnWrite.with(this, path, value);
+	}
+	
+	private void record(String path, AccessType accessType) {
+		BeanAccessRecorder recorder = BeanAccessRecorder.getInstance();
+		if (recorder.sample()) {
+			recorder.record(getType(), path, accessType);
+		}
+	}
+	
 	public void setConverter(Converter converter) {
 		this.converter = converter;
 	}
@@ -141,14 +214,15 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 	}
 	
 	private void setValue(Object instance, String field, Object value) throws IllegalAccessException, InvocationTargetException {
-		Method setter = getType().getSetter(field);
-		if (setter == null) {
+		BeanAccessor accessor = getType().getAccessor(field);
+		if (accessor == null || !accessor.isSettable()) {
 			if (instance instanceof SneakyEditableBeanInstance) {
 				// we need to know the name of the getter to do a sneaky set
 				Method getter = getType().getGetter(field);
 				if (getter != null) {
 					String name = getter.getName().startsWith("is") ? getter.getName().substring(2) : getter.getName().substring(3);
 					name = name.substring(0, 1).toLowerCase() + name.substring(1);
+					record(field, AccessType.SNEAKY_SET);
 					((SneakyEditableBeanInstance) instance).__set(name, value);
 				}
 				else {
@@ -160,7 +234,7 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 			}
 		}
 		else {
-			setter.invoke(instance, value);
+			accessor.set(instance, value);
 		}
 	}
 	
@@ -170,8 +244,10 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		String pathName = isAttribute ? path.getName().substring(1) : path.getName();
 		Element<?> definition = getType().get(pathName);
 		
-		if (definition == null)
+		if (definition == null) {
+			record(pathName, AccessType.FAILED);
 			throw new IllegalArgumentException("The field " + pathName + " does not exist in " + getType().getName());
+		}
 		if (path.getIndex() != null && !definition.getType().isList(definition.getProperties()))
 			throw new IllegalArgumentException("The field " + pathName + " is not a list");
 		if (path.getChildPath() != null && !(definition.getType() instanceof ComplexType))
@@ -181,11 +257,11 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 			// we are working with a specific field in a list
 			if (path.getIndex() != null) {
 				Class<?> actualType = getType().getActualType(pathName);
-				CollectionHandlerProvider collectionHandler = getCollectionHandler().getHandler(actualType);
+				CollectionHandlerProvider collectionHandler = StreamingCollectionHandlerProvider.getHandler(getCollectionHandler(), actualType);
 				if (collectionHandler == null)
 					throw new IllegalArgumentException("Can not access the object " + pathName);
 				// get the current value
-				Object listObject = getType().getGetter(pathName).invoke(instance);
+				Object listObject = getType().getAccessor(pathName).get(instance);
 				Object parsedIndex = collectionHandler.unmarshalIndex(path.getIndex(), listObject);
 				// does not yet exist, we need to initialize it
 				if (listObject == null && (CREATE_PARENT_FOR_NULL_VALUE || value != null)) {
@@ -197,7 +273,7 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 				if (listObject != null) {
 					// we need to update locally
 					if (path.getChildPath() == null) {
-						value = convert(value, collectionHandler.getComponentType(getType().getGenericType(pathName)), definition);
+						value = convertAndRecord(value, collectionHandler.getComponentType(getType().getGenericType(pathName)), definition);
 						setValue(instance, pathName, collectionHandler.set(listObject, parsedIndex, value));
 					}
 					// otherwise we need to recurse
@@ -206,35 +282,31 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 						if (singleObject == null && (CREATE_PARENT_FOR_NULL_VALUE || value != null)) {
 //							singleObject = getType().getActualType(pathName).newInstance();
 							// this makes sure we can dynamically generate proxies etc
-							singleObject = new BeanType(collectionHandler.getComponentType(getType().getGenericType(pathName))).newInstance().getUnwrapped();
+							singleObject = instantiate(collectionHandler.getComponentType(getType().getGenericType(pathName)));
 							collectionHandler.set(listObject, parsedIndex, singleObject);
 						}
 						if (singleObject != null) {
-							if (!(singleObject instanceof ComplexContent))
-								singleObject = ComplexContentWrapperFactory.getInstance().getWrapper().wrap(singleObject);
-							((ComplexContent) singleObject).set(path.getChildPath().toString(), value);
+							setNested(singleObject, path.getChildPath(), value);
 						}
 					}
 				}
 			}
 			// just update the field
 			else if (path.getChildPath() == null) {
-				value = convert(value, getType().getActualType(pathName), definition);
+				value = convertAndRecord(value, getType().getActualType(pathName), definition);
 				setValue(instance, pathName, value);
 			}
 			else {
 				// we need to recurse
-				Object singleObject = getType().getGetter(pathName).invoke(instance);
+				Object singleObject = getType().getAccessor(pathName).get(instance);
 				if (singleObject == null && (CREATE_PARENT_FOR_NULL_VALUE || value != null)) {
 					// this supports interfaces!
-					singleObject = new BeanType(getType().getActualType(pathName)).newInstance().getUnwrapped();
+					singleObject = instantiate(getType().getActualType(pathName));
 //					singleObject = getType().getActualType(pathName).newInstance();
 					setValue(instance, pathName, singleObject);
 				}
 				if (singleObject != null) {
-					if (!(singleObject instanceof ComplexContent))
-						singleObject = ComplexContentWrapperFactory.getInstance().getWrapper().wrap(singleObject);
-					((ComplexContent) singleObject).set(path.getChildPath().toString(), value);
+					setNested(singleObject, path.getChildPath(), value);
 				}
 			}
 		}
@@ -246,6 +318,27 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		}
 	}
 
+	/**
+	 * Reuse the resolved type so the way to instantiate it is only looked up once
+	 */
+	private Object instantiate(Class<?> clazz) {
+		return ((BeanType<?>) getType().getResolver().resolve(clazz)).instantiate();
+	}
+
+	private Object convertAndRecord(Object value, Class<?> targetClass, Element<?> definition) {
+		BeanAccessRecorder recorder = BeanAccessRecorder.getInstance();
+		if (!recorder.sample()) {
+			return convert(value, targetClass, definition);
+		}
+		long started = System.nanoTime();
+		try {
+			return convert(value, targetClass, definition);
+		}
+		finally {
+			recorder.record(getType(), definition.getName(), AccessType.CONVERSION, System.nanoTime() - started);
+		}
+	}
+	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private Object convert(Object value, Class<?> targetClass, Element<?> definition) {
 		if (value == null)
@@ -265,14 +358,20 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		}
 		// this logic is slightly out of sync with structure instance logic
 		else {
-			// need to wrap class
-			DefinedSimpleType<? extends Object> wrap = SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(value.getClass());
-			if (wrap == null) {
-				converted = ConverterFactory.getInstance().getConverter().convert(value, targetClass);
+			// enums are on nearly every type, try the lookup table before the generic conversion
+			if (value instanceof String && targetClass.isEnum()) {
+				converted = ((BeanType<?>) getType().getResolver().resolve(targetClass)).getEnumConstant((String) value);
 			}
-			else {
-				TypeInstance targetType = new BaseTypeInstance(wrap);
-				converted = TypeConverterFactory.getInstance().getConverter().convert(value, targetType, definition);
+			if (converted == null) {
+				// need to wrap class
+				DefinedSimpleType<? extends Object> wrap = SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(value.getClass());
+				if (wrap == null) {
+					converted = ConverterFactory.getInstance().getConverter().convert(value, targetClass);
+				}
+				else {
+					TypeInstance targetType = new BaseTypeInstance(wrap);
+					converted = TypeConverterFactory.getInstance().getConverter().convert(value, targetType, definition);
+				}
 			}
 		}
 		if (converted == null && !definition.getType().isList(definition.getProperties())) {
@@ -280,6 +379,7 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 			if (handler != null) {
 				Collection collection = handler.getAsCollection(value);
 				if (collection.size() == 1) {
+					record(definition.getName(), AccessType.COLLECTION_UNWRAP);
 					Object next = collection.iterator().next();
 					return convert(next, targetClass, definition);
 				}
@@ -302,13 +402,16 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 			}
 			converted = result.toArray((Object[]) java.lang.reflect.Array.newInstance(componentType, result.size()));
 		}
-		if (converted == null)
+		if (converted == null) {
+			record(definition.getName(), AccessType.FAILED);
 			throw new IllegalArgumentException("The value can not be converted from " + originalClass + " to " + targetClass);
+		}
 		return converted;
 	}
 	
 	@Override
 	public Object get(String path) {
+		record(path, AccessType.READ);
 		return get(ParsedPath.parse(path));
 	}
 	
@@ -320,6 +423,7 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 
 		if (definition == null) {
 			if (ignoreNonExistent) {
+				record(pathName, AccessType.NON_EXISTENT);
 				return null;
 			}
 			else {
@@ -331,16 +435,11 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		if (path.getChildPath() != null && !(definition.getType() instanceof ComplexType))
 			throw new IllegalArgumentException("The field " + pathName + " is not a complex type");
 		
-		Method getter = getType().getGetter(pathName);
+		BeanAccessor accessor = getType().getAccessor(pathName);
 		try {
-			if (!getter.isAccessible()) {
-				getter.setAccessible(true);
-			}
-			Object object = getter.getParameterTypes().length == 1
-				? getter.invoke(instance, new Object[] { Array.newInstance((Class<?>) getter.getParameterTypes()[0].getComponentType(), 0) }) 
-				: getter.invoke(instance);
+			Object object = accessor.get(instance);
 			if (path.getIndex() != null) {
-				CollectionHandlerProvider collectionHandler = getCollectionHandler().getHandler(object.getClass());
+				CollectionHandlerProvider collectionHandler = StreamingCollectionHandlerProvider.getValueHandler(getCollectionHandler(), object);
 				if (collectionHandler == null)
 					throw new IllegalArgumentException("Can not access the object " + pathName);
 				Object parsedIndex = collectionHandler.unmarshalIndex(path.getIndex(), object);
@@ -355,14 +454,451 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 				return new BeanInstance((BeanType<?>) definition.getType(), object).get(path.getChildPath());
 		}
 		catch (InvocationTargetException e) {
-			throw new RuntimeException("Can not access path '" + path + "' in " + getUnwrapped().getClass() + " => " + getter, e);
+			record(pathName, AccessType.FAILED);
+			throw new RuntimeException("Can not access path '" + path + "' in " + getUnwrapped().getClass() + " => " + accessor, e);
 		} 
 		catch (IllegalAccessException e) {
-			throw new RuntimeException("Can not access path '" + path + "' in " + getUnwrapped().getClass() + " => " + getter, e);
+			record(pathName, AccessType.FAILED);
+			throw new RuntimeException("Can not access path '" + path + "' in " + getUnwrapped().getClass() + " => " + accessor, e);
 		}
 		catch (RuntimeException e) {
-			throw new RuntimeException("Can not access path '" + path + "' in " + getUnwrapped().getClass() + " using " + getter.getDeclaringClass().getClassLoader() + " on " + instance.getClass().getClassLoader(), e);
+			record(pathName, AccessType.FAILED);
+			throw new RuntimeException("Can not access path '" + path + "' in " + getUnwrapped().getClass() + " using " + accessor.getDeclaringClass().getClassLoader() + " on " + instance.getClass().getClassLoader(), e);
+		}
+	}
+
+	/**
+	 * A live map view on the bean, see {@link BeanMap}
+	 */
+	public Map<String, Object> asMap() {
+		return new BeanMap(this);
+	}
+	
+	/**
+	 * Sets all the fields that are in the map (by element name) in one pass over the fields of the type
+	 * Values that are already of the correct type are set as they are, nested maps (also in lists) are merged into the current value of complex fields or populate new instances
+	 * Unless non existent fields are ignored, all the keys are validated before anything is set
+	 */
+	public BeanInstance<T> populate(final Map<String, ?> values) {
+		if (!ignoreNonExistent) {
+			for (String name : values.keySet()) {
+				if (getType().getSlot(name) < 0) {
+					throw new IllegalArgumentException("The field " + name + " does not exist in " + getType().getBeanClass().getName());
+				}
+			}
+		}
+		return populate(name -> values.containsKey(name), name -> values.get(name));
+	}
+	
+	/**
+	 * Sets all the fields that exist in the content (by element name) in one pass over the fields of the type
+	 */
+	public BeanInstance<T> populate(final ComplexContent content) {
+		return populate(name -> content.getType().get(name) != null, name -> content.get(name));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private BeanInstance<T> populate(Predicate<String> has, Function<String, Object> values) {
+		if (definition.getBeanClass().isInterface() && BeanFreezer.isFrozen(instance)) {
+			throw new UnsupportedOperationException("Can not populate the instance of " + definition.getBeanClass().getName() + ", it is frozen");
+		}
+		BeanType.Slots slots = getType().getSlots();
+		for (int i = 0; i < slots.elements.length; i++) {
+			String name = slots.elements[i].getName();
+			if (!has.test(name)) {
+				continue;
+			}
+			record(name, AccessType.WRITE);
+			Object value = values.apply(name);
+			try {
+				if (value instanceof Map && slots.complex[i] && !slots.lists[i]) {
+					Object current = slots.accessors[i] == null ? null : slots.accessors[i].get(instance);
+					value = populateChild(current, slots.actualTypes[i], (Map<String, ?>) value);
+				}
+				else if (slots.complex[i] && slots.lists[i] && containsMaps(value)) {
+					value = populateList(slots, i, value);
+				}
+				// most values are already of the correct type
+				else if (value != null && (value instanceof ComplexContent || !slots.actualTypes[i].isInstance(value))) {
+					value = convertAndRecord(value, slots.actualTypes[i], slots.elements[i]);
+				}
+				if (slots.accessors[i] != null && slots.accessors[i].isSettable()) {
+					slots.accessors[i].set(instance, value);
+				}
+				else {
+					setValue(instance, name, value);
+				}
+			}
+			catch (InvocationTargetException e) {
+				throw new RuntimeException("Can not set '" + name + "' in " + getType().getBeanClass().getName(), e);
+			}
+			catch (IllegalAccessException e) {
+				throw new RuntimeException("Can not set '" + name + "' in " + getType().getBeanClass().getName(), e);
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * The map is merged into the current value, a frozen current value is copied first
+	 */
+	private Object populateChild(Object current, Class<?> clazz, Map<String, ?> values) {
+		current = BeanUtils.unwrap(current);
+		Object child = current;
+		if (current == null || BeanFreezer.isFrozen(current)) {
+			child = instantiate(clazz);
+			if (current != null) {
+				wrapNested(child).populate(wrapNested(current).extract());
+			}
+		}
+		wrapNested(child).populate(values);
+		return child;
+	}
+	
+	// nested values are resolved with the resolver of this type
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private BeanInstance<Object> wrapNested(Object value) {
+		return new BeanInstance(resolveType(value, getType().getResolver()), value);
+	}
+	
+	/**
+	 * Each map in the list populates a new item
+	 */
+	@SuppressWarnings("unchecked")
+	private Object populateList(BeanType.Slots slots, int slot, Object value) {
+		String name = slots.elements[slot].getName();
+		CollectionHandlerProvider collectionHandler = StreamingCollectionHandlerProvider.getHandler(getCollectionHandler(), slots.actualTypes[slot]);
+		if (collectionHandler == null) {
+			throw new IllegalArgumentException("Can not access the object " + name);
+		}
+		Class<?> componentType = collectionHandler.getComponentType(getType().getGenericType(name));
+		List<Object> items = new ArrayList<Object>();
+		for (Object item : BeanUtils.toList(value)) {
+			item = BeanUtils.unwrap(item);
+			if (item instanceof Map) {
+				item = populateChild(null, componentType, (Map<String, ?>) item);
+			}
+			else if (item != null && !componentType.isInstance(item)) {
+				item = convertAndRecord(item, componentType, slots.elements[slot]);
+			}
+			items.add(item);
+		}
+		if (slots.actualTypes[slot].isInstance(items)) {
+			return items;
+		}
+		Object list = collectionHandler.create(slots.actualTypes[slot], items.size());
+		for (int i = 0; i < items.size(); i++) {
+			list = collectionHandler.set(list, i, items.get(i));
+		}
+		return list;
+	}
+	
+	private static boolean containsMaps(Object value) {
+		if (value instanceof Collection || value instanceof Object[]) {
+			for (Object item : BeanUtils.toList(value)) {
+				if (item instanceof Map) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * The values of all the fields that are not null by element name
+	 */
+	public Map<String, Object> extract() {
+		return extract(false);
+	}
+	
+	/**
+	 * If deep, complex values (also in lists) are extracted as maps as well
+	 */
+	public Map<String, Object> extract(boolean deep) {
+		return extract(getType(), instance, deep, new IdentityHashMap<Object, Object>());
+	}
+	
+	private static Map<String, Object> extract(BeanType<?> type, Object instance, boolean deep, Map<Object, Object> ancestors) {
+		if (ancestors.put(instance, instance) != null) {
+			throw new IllegalStateException("Can not extract the recursive structure of " + type.getBeanClass().getName());
+		}
+		BeanType.Slots slots = type.getSlots();
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < slots.elements.length; i++) {
+			Object value = BeanUtils.read(instance, type, slots.elements, i);
+			if (value == null) {
+				continue;
+			}
+			if (deep && slots.complex[i]) {
+				if (slots.lists[i]) {
+					List<Object> list = new ArrayList<Object>();
+					for (Object item : BeanUtils.toList(value)) {
+						list.add(extractComplex(type, item, ancestors));
+					}
+					value = list;
+				}
+				else {
+					value = extractComplex(type, value, ancestors);
+				}
+			}
+			result.put(slots.elements[i].getName(), value);
+		}
+		ancestors.remove(instance);
+		return result;
+	}
+	
+	private static Object extractComplex(BeanType<?> type, Object value, Map<Object, Object> ancestors) {
+		value = BeanUtils.unwrap(value);
+		if (value == null || value instanceof ComplexContent) {
+			return value;
+		}
+		return extract(resolveType(value, type.getResolver()), value, true, ancestors);
+	}
+
+	/**
+	 * Streams the items of the list at the given path without materializing it, this is mostly useful for streaming properties (Iterable, Iterator or Stream)
+	 * Complex items are not wrapped
+	 */
+	@SuppressWarnings("unchecked")
+	public Stream<Object> stream(String path) {
+		Object value = get(path);
+		if (value == null) {
+			return Stream.empty();
+		}
+		else if (value instanceof Stream) {
+			return (Stream<Object>) value;
+		}
+		else if (value instanceof Collection) {
+			return ((Collection<Object>) value).stream();
+		}
+		else if (StreamingCollectionHandlerProvider.isStreamingValue(value)) {
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize((Iterator<Object>) StreamingCollectionHandlerProvider.iterator(value), Spliterator.ORDERED), false);
+		}
+		return ((List<Object>) BeanUtils.toList(value)).stream();
+	}
+
+	/**
+	 * The paths in this graph that were changed since the last reset, changes are only tracked for interface beans of a type that tracks changes (see {@link BeanType#setTrackChanges(boolean)})
+	 */
+	public List<String> getChangedPaths() {
+		final List<String> paths = new ArrayList<String>();
+		new BeanTraverser().traverse(this, new ChangeVisitor() {
+			@Override
+			void visit(String prefix, BeanInterfaceInstance handler) {
+				for (String name : handler.getChanged()) {
+					paths.add(prefix + name);
+				}
+			}
+		});
+		return paths;
+	}
+	
+	/**
+	 * The original values of the changed paths in this graph, this is only filled in for types that journal their changes
+	 */
+	public Map<String, Object> getOriginalValues() {
+		final Map<String, Object> values = new LinkedHashMap<String, Object>();
+		new BeanTraverser().traverse(this, new ChangeVisitor() {
+			@Override
+			void visit(String prefix, BeanInterfaceInstance handler) {
+				for (Map.Entry<String, Object> entry : handler.getOriginalValues().entrySet()) {
+					values.put(prefix + entry.getKey(), entry.getValue());
+				}
+			}
+		});
+		return values;
+	}
+	
+	/**
+	 * Marks everything in this graph as unchanged
+	 */
+	public void resetChanges() {
+		new BeanTraverser().traverse(this, new ChangeVisitor() {
+			@Override
+			void visit(String prefix, BeanInterfaceInstance handler) {
+				handler.resetChanges();
+			}
+		});
+	}
+	
+	/**
+	 * Visits all the interface beans in the graph that track their changes
+	 */
+	private static abstract class ChangeVisitor implements BeanVisitor {
+		@Override
+		public boolean enter(BeanCursor cursor) {
+			Object value = cursor.getValue();
+			if (Proxy.isProxyClass(value.getClass())) {
+				InvocationHandler handler = Proxy.getInvocationHandler(value);
+				if (handler instanceof BeanInterfaceInstance && ((BeanInterfaceInstance) handler).isTracking()) {
+					String path = cursor.getPath();
+					visit(path.isEmpty() ? path : path + "/", (BeanInterfaceInstance) handler);
+				}
+			}
+			return true;
+		}
+		@Override
+		public void leave(BeanCursor cursor) {
+			// do nothing
+		}
+		@Override
+		public void value(BeanCursor cursor) {
+			// do nothing
+		}
+		abstract void visit(String prefix, BeanInterfaceInstance handler);
+	}
+	
+	/**
+	 * Sets the field to the new value if its current value equals the expected value, numbers are compared by value.
+	 * This is lock-free for concurrent interface beans (see {@link BeanType#setConcurrent(boolean)}), for other beans it synchronizes on the bean which is only atomic with respect to the other atomic operations.
+	 */
+	public boolean compareAndSet(String path, Object expected, Object value) {
+		return getParent(path).compareAndSetField(getFieldName(path), expected, value);
+	}
+	
+	/**
+	 * Updates the field and returns the previous value, for concurrent interface beans the function may be called more than once
+	 */
+	public Object getAndUpdate(String path, UnaryOperator<Object> function) {
+		return getParent(path).getAndUpdateField(getFieldName(path), function);
+	}
+	
+	/**
+	 * Adds the delta to a numeric field (null counts as 0) and returns the previous value
+	 */
+	public Number getAndAdd(String path, final Number delta) {
+		BeanInstance<?> parent = getParent(path);
+		final Class<?> valueClass = parent.getAtomicAccessor(getFieldName(path)).getValueClass();
+		return (Number) parent.getAndUpdateField(getFieldName(path), new UnaryOperator<Object>() {
+			@Override
+			public Object apply(Object current) {
+				return add((Number) current, delta, valueClass);
+			}
+		});
+	}
+	
+	private boolean compareAndSetField(String field, Object expected, Object value) {
+		BeanAccessor accessor = getAtomicAccessor(field);
+		Element<?> definition = getType().get(field);
+		expected = convert(expected, getType().getActualType(field), definition);
+		value = convertAndRecord(value, getType().getActualType(field), definition);
+		BeanInterfaceInstance handler = getInterfaceHandler();
+		if (handler != null) {
+			return handler.compareAndSet(accessor.getPropertyName(), expected, value);
+		}
+		synchronized(instance) {
+			try {
+				Object current = accessor.get(instance);
+				if (current == null ? expected != null : !current.equals(expected)) {
+					return false;
+				}
+				setValue(instance, field, value);
+				return true;
+			}
+			catch (InvocationTargetException e) {
+				throw new RuntimeException(e);
+			}
+			catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	private Object getAndUpdateField(String field, final UnaryOperator<Object> function) {
+		BeanAccessor accessor = getAtomicAccessor(field);
+		final Element<?> definition = getType().get(field);
+		final Class<?> actualType = getType().getActualType(field);
+		UnaryOperator<Object> converting = new UnaryOperator<Object>() {
+			@Override
+			public Object apply(Object current) {
+				return convert(function.apply(current), actualType, definition);
+			}
+		};
+		record(field, AccessType.WRITE);
+		BeanInterfaceInstance handler = getInterfaceHandler();
+		if (handler != null) {
+			return handler.getAndUpdate(accessor.getPropertyName(), converting);
+		}
+		synchronized(instance) {
+			try {
+				Object current = accessor.get(instance);
+				setValue(instance, field, converting.apply(current));
+				return current;
+			}
+			catch (InvocationTargetException e) {
+				throw new RuntimeException(e);
+			}
+			catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	private BeanAccessor getAtomicAccessor(String field) {
+		BeanAccessor accessor = getType().getAccessor(field);
+		if (accessor == null) {
+			throw new IllegalArgumentException("The field " + field + " does not exist in " + getType().getBeanClass().getName());
+		}
+		else if (getType().get(field).getType().isList(getType().get(field).getProperties())) {
+			throw new IllegalArgumentException("The field " + field + " is a list and can not be updated atomically");
+		}
+		return accessor;
+	}
+	
+	private BeanInterfaceInstance getInterfaceHandler() {
+		if (definition.getBeanClass().isInterface() && Proxy.isProxyClass(instance.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(instance);
+			return handler instanceof BeanInterfaceInstance ? (BeanInterfaceInstance) handler : null;
 		}
+		return null;
+	}
+	
+	private BeanInstance<?> getParent(String path) {
+		int index = path.lastIndexOf('/');
+		if (index < 0) {
+			return this;
+		}
+		Object parent = get(path.substring(0, index));
+		if (parent == null) {
+			throw new IllegalArgumentException("The parent of '" + path + "' does not exist");
+		}
+		return parent instanceof BeanInstance ? (BeanInstance<?>) parent : new BeanInstance<Object>(parent);
+	}
+	
+	private static String getFieldName(String path) {
+		String name = path.substring(path.lastIndexOf('/') + 1);
+		return name.startsWith("@") ? name.substring(1) : name;
+	}
+	
+	static Number add(Number current, Number delta, Class<?> type) {
+		if (current == null) {
+			current = 0;
+		}
+		if (BigDecimal.class.equals(type)) {
+			return new BigDecimal(current.toString()).add(new BigDecimal(delta.toString()));
+		}
+		else if (BigInteger.class.equals(type)) {
+			return new BigInteger(current.toString()).add(new BigInteger(delta.toString()));
+		}
+		else if (Double.class.equals(type) || double.class.equals(type)) {
+			return current.doubleValue() + delta.doubleValue();
+		}
+		else if (Float.class.equals(type) || float.class.equals(type)) {
+			return current.floatValue() + delta.floatValue();
+		}
+		else if (Integer.class.equals(type) || int.class.equals(type)) {
+			return current.intValue() + delta.intValue();
+		}
+		else if (Short.class.equals(type) || short.class.equals(type)) {
+			return (short) (current.shortValue() + delta.shortValue());
+		}
+		else if (Byte.class.equals(type) || byte.class.equals(type)) {
+			return (byte) (current.byteValue() + delta.byteValue());
+		}
+		else if (Long.class.equals(type) || long.class.equals(type)) {
+			return current.longValue() + delta.longValue();
+		}
+		throw new IllegalArgumentException("Can not add to a field of type " + type.getName());
 	}
 
 	@SuppressWarnings("unchecked")
@@ -396,15 +932,67 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		private Class<T> classType;
 		private List<T> list;
 		
+		/**
+		 * Listeners that are notified of items that are added to or removed from the list through this wrapper.
+		 * Sublists share the listeners of their parent, including the ones that are added after the sublist was created.
+		 */
+		private final List<MutationListener<? super T>> listeners;
+		
 		public ComplexContentList(Class<T> classType, List<T> list) {
+			this(classType, list, new CopyOnWriteArrayList<MutationListener<? super T>>());
+		}
+		
+		private ComplexContentList(Class<T> classType, List<T> list, List<MutationListener<? super T>> listeners) {
 			this.classType = classType;
 			this.list = list == null ? new ArrayList<T>() : list;
+			this.listeners = listeners;
+		}
+		
+		public void addListener(MutationListener<? super T> listener) {
+			listeners.add(listener);
+		}
+		
+		public void removeListener(MutationListener<? super T> listener) {
+			listeners.remove(listener);
+		}
+		
+		private boolean isObserved() {
+			return !listeners.isEmpty();
+		}
+		
+		private void added(T item) {
+			for (MutationListener<? super T> listener : listeners) {
+				listener.added(item);
+			}
+		}
+		
+		private void removed(T item) {
+			for (MutationListener<? super T> listener : listeners) {
+				listener.removed(item);
+			}
+		}
+		
+		/**
+		 * The unwrapped list
+		 */
+		public List<T> getList() {
+			return list;
 		}
 
 		private T unwrap(Object e) {
 			return BeanInstance.unwrap(e, classType);
 		}
 		
+		/**
+		 * Returns a new list where the item at the index is replaced by a new version with the value at the path replaced, all the other items are shared
+		 * If the path is null, the item itself is replaced
+		 */
+		public ComplexContentList<T> with(int index, String path, Object value) {
+			List<T> copy = new ArrayList<T>(list);
+			copy.set(index, path == null ? unwrap(value) : BeanCopyOnWrite.with(list.get(index), path, value));
+			return new ComplexContentList<T>(classType, copy);
+		}
+		
 		private ComplexContent wrap(Object e) {
 			return BeanInstance.wrap(e);
 		}
@@ -418,28 +1006,60 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		
 		@Override
 		public boolean add(Object e) {
-			return list.add(unwrap(e));
+			T item = unwrap(e);
+			boolean result = list.add(item);
+			if (result && isObserved()) {
+				added(item);
+			}
+			return result;
 		}
 
 		@Override
 		public void add(int index, Object element) {
-			list.add(index, unwrap(element));
+			T item = unwrap(element);
+			list.add(index, item);
+			if (isObserved()) {
+				added(item);
+			}
 		}
 
 
 		@Override
 		public boolean addAll(Collection<? extends Object> c) {
-			return list.addAll(unwrap(c));
+			Collection<T> items = unwrap(c);
+			boolean result = list.addAll(items);
+			if (result && isObserved()) {
+				for (T item : items) {
+					added(item);
+				}
+			}
+			return result;
 		}
 
 		@Override
 		public boolean addAll(int index, Collection<? extends Object> c) {
-			return list.addAll(index, unwrap(c));
+			Collection<T> items = unwrap(c);
+			boolean result = list.addAll(index, items);
+			if (result && isObserved()) {
+				for (T item : items) {
+					added(item);
+				}
+			}
+			return result;
 		}
 
 		@Override
 		public void clear() {
-			list.clear();
+			if (isObserved()) {
+				List<T> items = new ArrayList<T>(list);
+				list.clear();
+				for (T item : items) {
+					removed(item);
+				}
+			}
+			else {
+				list.clear();
+			}
 		}
 
 		@Override
@@ -470,7 +1090,7 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		@SuppressWarnings({ "unchecked", "rawtypes" })
 		@Override
 		public Iterator<Object> iterator() {
-			return new ComplexContentIterator(list.iterator());
+			return new ComplexContentIterator(isObserved() ? new ObservedIterator(list.iterator()) : list.iterator());
 		}
 
 		@Override
@@ -480,37 +1100,100 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 
 		@Override
 		public ListIterator<Object> listIterator() {
-			throw new UnsupportedOperationException ();
+			return listIterator(0);
 		}
 
 		@Override
 		public ListIterator<Object> listIterator(int index) {
-			throw new UnsupportedOperationException ();
+			return new ComplexContentListIterator(list.listIterator(index));
+		}
+		
+		/**
+		 * Random access lists are split by index so parallel streams divide the work evenly
+		 */
+		@Override
+		public Spliterator<Object> spliterator() {
+			if (list instanceof RandomAccess) {
+				return new ComplexContentSpliterator(0, list.size(), false);
+			}
+			return Spliterators.spliterator(this, Spliterator.ORDERED);
+		}
+		
+		/**
+		 * A stream of the original beans, this avoids wrapping them
+		 */
+		public Stream<T> unwrapped(boolean parallel) {
+			return StreamSupport.stream(list.spliterator(), parallel);
+		}
+		
+		/**
+		 * A stream of the wrapped beans where the wrappers are reused: each part of the stream updates the same wrapper for each bean
+		 * This avoids creating a wrapper per bean but the wrapper is only valid until the next bean is processed so it must not be retained (e.g. collected) 
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public Stream<ComplexContent> cursors(boolean parallel) {
+			Spliterator spliterator = list instanceof RandomAccess
+				? new ComplexContentSpliterator(0, list.size(), true)
+				: new ComplexContentSpliterator(list.spliterator());
+			return StreamSupport.stream(spliterator, parallel);
 		}
 
 		@Override
 		public boolean remove(Object o) {
+			if (isObserved()) {
+				// we want to notify the actual item that was removed, not the (equal) one that was passed in
+				int index = list.indexOf(unwrap(o));
+				if (index >= 0) {
+					removed(list.remove(index));
+					return true;
+				}
+				return false;
+			}
 			return list.remove(unwrap(o));
 		}
 
 		@Override
 		public Object remove(int index) {
-			return wrap(list.remove(index));
+			T item = list.remove(index);
+			if (isObserved()) {
+				removed(item);
+			}
+			return wrap(item);
 		}
 
 		@Override
 		public boolean removeAll(Collection<?> c) {
-			return list.removeAll(unwrap(c));
+			return isObserved() ? removeIf(unwrap(c), true) : list.removeAll(unwrap(c));
 		}
 
 		@Override
 		public boolean retainAll(Collection<?> c) {
-			return list.retainAll(unwrap(c));
+			return isObserved() ? removeIf(unwrap(c), false) : list.retainAll(unwrap(c));
+		}
+		
+		private boolean removeIf(Collection<T> items, boolean contained) {
+			boolean modified = false;
+			Iterator<T> iterator = list.iterator();
+			while (iterator.hasNext()) {
+				T item = iterator.next();
+				if (items.contains(item) == contained) {
+					iterator.remove();
+					removed(item);
+					modified = true;
+				}
+			}
+			return modified;
 		}
 
 		@Override
 		public Object set(int index, Object element) {
-			return wrap(list.set(index, unwrap(element)));
+			T item = unwrap(element);
+			T previous = list.set(index, item);
+			if (isObserved()) {
+				removed(previous);
+				added(item);
+			}
+			return wrap(previous);
 		}
 
 		@Override
@@ -521,7 +1204,7 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 		@SuppressWarnings({ "unchecked", "rawtypes" })
 		@Override
 		public List<Object> subList(int fromIndex, int toIndex) {
-			return new ComplexContentList(classType, list.subList(fromIndex, toIndex));
+			return new ComplexContentList(classType, list.subList(fromIndex, toIndex), listeners);
 		}
 
 		@Override
@@ -543,6 +1226,191 @@ public class BeanInstance<T> implements BeanConvertible, WrappedComplexContent<T
 			return array;
 		}
 		
+		private class ComplexContentListIterator implements ListIterator<Object> {
+			private ListIterator<T> original;
+			private T last;
+			
+			ComplexContentListIterator(ListIterator<T> original) {
+				this.original = original;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return original.hasNext();
+			}
+
+			@Override
+			public Object next() {
+				return wrap(last = original.next());
+			}
+
+			@Override
+			public boolean hasPrevious() {
+				return original.hasPrevious();
+			}
+
+			@Override
+			public Object previous() {
+				return wrap(last = original.previous());
+			}
+
+			@Override
+			public int nextIndex() {
+				return original.nextIndex();
+			}
+
+			@Override
+			public int previousIndex() {
+				return original.previousIndex();
+			}
+
+			@Override
+			public void remove() {
+				original.remove();
+				if (isObserved()) {
+					removed(last);
+				}
+			}
+
+			@Override
+			public void set(Object e) {
+				T item = unwrap(e);
+				original.set(item);
+				if (isObserved()) {
+					removed(last);
+					added(item);
+				}
+				last = item;
+			}
+
+			@Override
+			public void add(Object e) {
+				T item = unwrap(e);
+				original.add(item);
+				if (isObserved()) {
+					added(item);
+				}
+			}
+		}
+		
+		/**
+		 * Splits by index for random access lists, other lists are split by their own spliterator
+		 */
+		private class ComplexContentSpliterator implements Spliterator<Object> {
+			private int index, fence;
+			private Spliterator<T> original;
+			private boolean pooled;
+			private BeanInstance<Object> cursor;
+			private Class<?> cursorClass;
+			
+			ComplexContentSpliterator(int index, int fence, boolean pooled) {
+				this.index = index;
+				this.fence = fence;
+				this.pooled = pooled;
+			}
+			
+			ComplexContentSpliterator(Spliterator<T> original) {
+				this.original = original;
+				this.pooled = true;
+			}
+			
+			@Override
+			public boolean tryAdvance(Consumer<? super Object> action) {
+				if (original != null) {
+					return original.tryAdvance(item -> action.accept(toContent(item)));
+				}
+				else if (index < fence) {
+					action.accept(toContent(list.get(index++)));
+					return true;
+				}
+				return false;
+			}
+			
+			@Override
+			public void forEachRemaining(Consumer<? super Object> action) {
+				if (original != null) {
+					original.forEachRemaining(item -> action.accept(toContent(item)));
+				}
+				else {
+					for (; index < fence; index++) {
+						action.accept(toContent(list.get(index)));
+					}
+				}
+			}
+
+			@Override
+			public Spliterator<Object> trySplit() {
+				if (original != null) {
+					Spliterator<T> split = original.trySplit();
+					return split == null ? null : new ComplexContentSpliterator(split);
+				}
+				int middle = (index + fence) >>> 1;
+				if (index >= middle) {
+					return null;
+				}
+				ComplexContentSpliterator split = new ComplexContentSpliterator(index, middle, pooled);
+				index = middle;
+				return split;
+			}
+
+			@Override
+			public long estimateSize() {
+				return original != null ? original.estimateSize() : fence - index;
+			}
+
+			@Override
+			public int characteristics() {
+				return original != null ? original.characteristics() & (ORDERED | SIZED | SUBSIZED) : ORDERED | SIZED | SUBSIZED;
+			}
+			
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			private Object toContent(T item) {
+				if (!pooled || item == null || item instanceof ComplexContent) {
+					return wrap(item);
+				}
+				else if (item.getClass() != cursorClass) {
+					cursor = new BeanInstance(item);
+					cursorClass = item.getClass();
+				}
+				else {
+					cursor.instance = item;
+				}
+				return cursor;
+			}
+		}
+		
+		private class ObservedIterator implements Iterator<T> {
+			private Iterator<T> original;
+			private T last;
+			
+			ObservedIterator(Iterator<T> original) {
+				this.original = original;
+			}
+			
+			@Override
+			public boolean hasNext() {
+				return original.hasNext();
+			}
+
+			@Override
+			public T next() {
+				return last = original.next();
+			}
+
+			@Override
+			public void remove() {
+				original.remove();
+				removed(last);
+			}
+		}
+		
+		/**
+		 * Is notified of the (unwrapped) items that are added to or removed from a list, replacing an item is a removal followed by an addition
+		 */
+		public interface MutationListener<T> {
+			public void added(T item);
+			public void removed(T item);
+		}
 	}
 	
 	public static class ComplexContentIterator<T> implements Iterator<ComplexContent> {
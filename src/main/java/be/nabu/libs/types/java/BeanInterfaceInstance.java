@@ -20,19 +20,110 @@ package be.nabu.libs.types.java;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+import be.nabu.libs.types.api.Element;
 
 public class BeanInterfaceInstance implements InvocationHandler, Serializable {
 
 	private static final long serialVersionUID = 1L;
 	
-	private Map<String, Object> values = new HashMap<String, Object>();
+	private final Map<String, Object> values;
 
-	private BeanType<?> originalType;
+	private final BeanType<?> originalType;
+	
+	/**
+	 * A frozen instance can not be modified, all its fields are final so it can be safely shared between threads without synchronization
+	 */
+	private final boolean frozen;
+	
+	/**
+	 * A concurrent instance stores the known properties in a slot of an atomic array, only unknown (sneakily set) properties end up in the values map
+	 */
+	private final AtomicReferenceArray<Object> slots;
+	private final Map<String, Integer> slotIndexes;
+	
+	/**
+	 * When tracking, the slots that were changed since the last reset are marked in a bitset, changed properties that don't have a slot are kept by name
+	 * The journal keeps the value a changed property had at the time of the last reset
+	 */
+	private final boolean tracking, journaling;
+	private final BitSet dirty;
+	private final Set<String> dirtyNames;
+	private final Map<String, Object> journal;
+	
+	/**
+	 * The cached structural hash of a frozen instance, 0 if it has not been calculated yet
+	 */
+	private volatile int hash;
+	
+	/**
+	 * A lazy instance loads the fields that have not been loaded (or set) yet when they are first requested
+	 */
+	private final BeanFieldLoader<Object> loader;
+	private final Set<String> loaded;
+	// the loads that are running, readers of the same property wait for the same load
+	private final Map<String, FutureTask<Object>> loading;
 
 	public BeanInterfaceInstance(BeanType<?> originalType) {
+		this(originalType, false);
+	}
+	
+	public BeanInterfaceInstance(BeanType<?> originalType, boolean concurrent) {
+		this(originalType, concurrent, null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	BeanInterfaceInstance(BeanType<?> originalType, boolean concurrent, BeanFieldLoader<?> loader) {
+		this.originalType = originalType;
+		this.frozen = false;
+		this.loader = (BeanFieldLoader<Object>) loader;
+		this.loaded = loader == null ? null : (concurrent ? ConcurrentHashMap.<String>newKeySet() : new HashSet<String>());
+		this.loading = loader == null ? null : new ConcurrentHashMap<String, FutureTask<Object>>();
+		this.journaling = originalType.isJournalChanges();
+		this.tracking = journaling || originalType.isTrackChanges();
+		this.slotIndexes = concurrent || tracking ? originalType.getSlots().properties : null;
+		if (concurrent) {
+			this.slots = new AtomicReferenceArray<Object>(originalType.getSlots().elements.length);
+			this.values = new ConcurrentHashMap<String, Object>();
+		}
+		else {
+			this.slots = null;
+			this.values = new HashMap<String, Object>();
+		}
+		this.dirty = tracking ? new BitSet() : null;
+		this.dirtyNames = tracking ? new HashSet<String>() : null;
+		this.journal = journaling ? new LinkedHashMap<String, Object>() : null;
+	}
+	
+	BeanInterfaceInstance(BeanType<?> originalType, Map<String, Object> frozenValues) {
 		this.originalType = originalType;
+		this.values = Collections.unmodifiableMap(new HashMap<String, Object>(frozenValues));
+		this.frozen = true;
+		this.loader = null;
+		this.loaded = null;
+		this.loading = null;
+		this.slotIndexes = null;
+		this.slots = null;
+		this.tracking = false;
+		this.journaling = false;
+		this.dirty = null;
+		this.dirtyNames = null;
+		this.journal = null;
 	}
 	
 	@Override
@@ -40,16 +131,23 @@ public class BeanInterfaceInstance implements InvocationHandler, Serializable {
 		String name = method.getName();
 		if ((name.startsWith("get") || name.startsWith("is")) && (args == null || args.length == 0 || (args.length == 1 && method.isVarArgs()))) {
 			name = getVariableName(name);
-			return values.get(name);
+			Object value = loader == null || name == null ? getValue(name) : getOrLoad(instance, name);
+			// arrays and class beans can't be made read-only so every read gets its own copy
+			if (frozen && value != null) {
+				value = BeanFreezer.thaw(value, method.getReturnType());
+			}
+			return value;
 		}
 		else if (name.startsWith("set") && args != null && args.length == 1) {
+			checkFrozen(name);
 			name = getVariableName(name);
-			values.put(name, args[0]);
+			setValue(name, args[0]);
 			return null;
 		}
 		// sneaky set!
 		else if (name.equals("__set") && args.length == 2) {
-			values.put((String) args[0], args[1]);
+			checkFrozen((String) args[0]);
+			setValue((String) args[0], args[1]);
 			return null;
 		}
 		// support for equals...
@@ -61,8 +159,15 @@ public class BeanInterfaceInstance implements InvocationHandler, Serializable {
 			// that could (in some cases) however end up in a recursive stackoverflowerror, presumably because you are equalling the item to itself?
 			// so for now, we'll do an identity check, in the future we might add a bean-aware depth check of all the values
 //			return instance.equals(args[0]);
+			// @2026-10-19: types can opt in to a structural comparison which is cycle-safe
+			if (originalType.isStructuralEquality()) {
+				return BeanEquality.DEEP.equals(instance, args[0]);
+			}
 			return instance == args[0];
 		}
+		else if (name.equals("hashCode") && (args == null || args.length == 0) && originalType.isStructuralEquality()) {
+			return BeanEquality.DEEP.hashCode(instance);
+		}
 		// allow for default methods like 'toString()'
 		else {
 			// not sure why it is "this" instead of "instance", but changing it now results in horrible recursion
@@ -71,6 +176,12 @@ public class BeanInterfaceInstance implements InvocationHandler, Serializable {
 		}
 	}
 
+	private void checkFrozen(String name) {
+		if (frozen) {
+			throw new UnsupportedOperationException("Can not update '" + name + "', the instance of " + originalType.getBeanClass().getName() + " is frozen");
+		}
+	}
+
 	private String getVariableName(String name) {
 		name = name.startsWith("get") ? name.substring(3) : name.substring(2);
 		if (name.isEmpty())
@@ -83,4 +194,308 @@ public class BeanInterfaceInstance implements InvocationHandler, Serializable {
 		return originalType;
 	}
 	
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	Integer getHash() {
+		return hash == 0 ? null : hash;
+	}
+	
+	void setHash(int hash) {
+		if (frozen) {
+			this.hash = hash;
+		}
+	}
+	
+	public boolean isConcurrent() {
+		return slots != null;
+	}
+	
+	Object getValue(String property) {
+		Integer slot = slots == null ? null : slotIndexes.get(property);
+		return slot == null ? values.get(property) : slots.get(slot);
+	}
+	
+	private Object getOrLoad(Object instance, String property) {
+		if (!loaded.contains(property)) {
+			FutureTask<Object> task = new FutureTask<Object>(() -> originalType.load(loader, instance, property));
+			FutureTask<Object> running = loading.putIfAbsent(property, task);
+			if (running == null) {
+				running = task;
+				// a previous load may have finished in the meantime, it is only removed after it is stored
+				if (loaded.contains(property)) {
+					loading.remove(property, task);
+					return getValue(property);
+				}
+				// the loader runs without holding a lock, it only blocks readers of this property
+				task.run();
+			}
+			Object value;
+			try {
+				value = running.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while loading '" + property + "'", e);
+			}
+			catch (ExecutionException e) {
+				// a failed load is retried by the next read
+				loading.remove(property, running);
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+			}
+			synchronized(loaded) {
+				// a value that was set while loading is not overwritten, a loaded value is not a change
+				if (!loaded.contains(property)) {
+					store(property, value);
+					loaded.add(property);
+				}
+			}
+			loading.remove(property, running);
+		}
+		return getValue(property);
+	}
+	
+	public boolean isLazy() {
+		return loader != null;
+	}
+	
+	/**
+	 * Whether the property has been loaded or set, this is always true for instances that are not lazy
+	 */
+	public boolean isLoaded(String property) {
+		return loader == null || loaded.contains(property);
+	}
+	
+	BeanFieldLoader<Object> getLoader() {
+		return loader;
+	}
+	
+	/**
+	 * The properties that were loaded or set, null for instances that are not lazy
+	 */
+	Set<String> getLoaded() {
+		return loaded;
+	}
+	
+	/**
+	 * Marks properties as loaded without loading them, for example because a copy already has their values
+	 */
+	void markLoaded(Collection<String> properties) {
+		if (loaded != null) {
+			loaded.addAll(properties);
+		}
+	}
+	
+	void setValue(String property, Object value) {
+		Object old;
+		if (loaded == null) {
+			old = store(property, value);
+		}
+		// an explicitly set value should not be overwritten by the loader
+		else {
+			synchronized(loaded) {
+				old = store(property, value);
+				loaded.add(property);
+			}
+		}
+		if (tracking) {
+			changed(property, old, value);
+		}
+	}
+	
+	private Object store(String property, Object value) {
+		Integer slot = slots == null ? null : slotIndexes.get(property);
+		Object old;
+		if (slot != null) {
+			old = slots.getAndSet(slot, value);
+		}
+		// concurrent maps don't allow null values
+		else if (value == null && slots != null) {
+			old = values.remove(property);
+		}
+		else {
+			old = values.put(property, value);
+		}
+		return old;
+	}
+	
+	private void changed(String property, Object old, Object value) {
+		if (!equals(old, value)) {
+			if (slots == null) {
+				markChanged(property, old);
+			}
+			else {
+				synchronized(dirty) {
+					markChanged(property, old);
+				}
+			}
+		}
+	}
+	
+	private void markChanged(String property, Object old) {
+		Integer slot = slotIndexes.get(property);
+		String name = property;
+		if (slot == null) {
+			dirtyNames.add(property);
+		}
+		else {
+			dirty.set(slot);
+			name = originalType.getSlots().elements[slot].getName();
+		}
+		if (journaling && !journal.containsKey(name)) {
+			journal.put(name, old);
+		}
+	}
+	
+	public boolean isTracking() {
+		return tracking;
+	}
+	
+	/**
+	 * The names of the elements that were changed since the last reset, the order is the order of the type
+	 */
+	public List<String> getChanged() {
+		List<String> changed = new ArrayList<String>();
+		if (tracking) {
+			Element<?>[] elements = originalType.getSlots().elements;
+			if (slots == null) {
+				addChanged(changed, elements);
+			}
+			else {
+				synchronized(dirty) {
+					addChanged(changed, elements);
+				}
+			}
+		}
+		return changed;
+	}
+	
+	private void addChanged(List<String> changed, Element<?>[] elements) {
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+			changed.add(elements[i].getName());
+		}
+		changed.addAll(dirtyNames);
+	}
+	
+	/**
+	 * The values the changed elements had at the time of the last reset, this is empty unless the type journals its changes
+	 */
+	public Map<String, Object> getOriginalValues() {
+		if (!journaling) {
+			return Collections.emptyMap();
+		}
+		if (slots == null) {
+			return new LinkedHashMap<String, Object>(journal);
+		}
+		synchronized(dirty) {
+			return new LinkedHashMap<String, Object>(journal);
+		}
+	}
+	
+	public void resetChanges() {
+		if (tracking) {
+			if (slots == null) {
+				clearChanges();
+			}
+			else {
+				synchronized(dirty) {
+					clearChanges();
+				}
+			}
+		}
+	}
+	
+	private void clearChanges() {
+		dirty.clear();
+		dirtyNames.clear();
+		if (journaling) {
+			journal.clear();
+		}
+	}
+	
+	/**
+	 * Sets the value if the current value equals the expected value, for concurrent instances this is lock-free
+	 */
+	boolean compareAndSet(String property, Object expected, Object value) {
+		checkFrozen(property);
+		if (slots == null) {
+			synchronized(this) {
+				if (!equals(values.get(property), expected)) {
+					return false;
+				}
+				setValue(property, value);
+				return true;
+			}
+		}
+		int slot = getSlot(property);
+		while (true) {
+			Object current = slots.get(slot);
+			// boxed numbers are compared by value, so we can't rely on the identity check of the atomic array alone
+			if (!equals(current, expected)) {
+				return false;
+			}
+			else if (slots.compareAndSet(slot, current, value)) {
+				if (tracking) {
+					changed(property, current, value);
+				}
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Atomically updates the value and returns the previous one, for concurrent instances this is lock-free so the function may be called more than once
+	 */
+	Object getAndUpdate(String property, UnaryOperator<Object> function) {
+		checkFrozen(property);
+		if (slots == null) {
+			synchronized(this) {
+				Object current = values.get(property);
+				setValue(property, function.apply(current));
+				return current;
+			}
+		}
+		int slot = getSlot(property);
+		while (true) {
+			Object current = slots.get(slot);
+			Object value = function.apply(current);
+			if (slots.compareAndSet(slot, current, value)) {
+				if (tracking) {
+					changed(property, current, value);
+				}
+				return current;
+			}
+		}
+	}
+	
+	private int getSlot(String property) {
+		Integer slot = slotIndexes.get(property);
+		if (slot == null) {
+			throw new IllegalArgumentException("The property '" + property + "' does not exist in " + originalType.getBeanClass().getName());
+		}
+		return slot;
+	}
+	
+	private static boolean equals(Object first, Object second) {
+		return first == null ? second == null : first.equals(second);
+	}
+	
+	/**
+	 * The values by property name, for frozen instances this is a read-only view and for concurrent instances it is a snapshot
+	 */
+	Map<String, Object> getValues() {
+		if (slots == null) {
+			return values;
+		}
+		Map<String, Object> snapshot = new HashMap<String, Object>(values);
+		for (Map.Entry<String, Integer> entry : slotIndexes.entrySet()) {
+			Object value = slots.get(entry.getValue());
+			if (value != null) {
+				snapshot.put(entry.getKey(), value);
+			}
+		}
+		return snapshot;
+	}
+	
 }
@@ -0,0 +1,75 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the lazy loads of a single field across all the instances of a type
+ */
+public class BeanLoadStatistics {
+
+	private AtomicLong loads = new AtomicLong(), failures = new AtomicLong(), totalNanos = new AtomicLong(), maxNanos = new AtomicLong();
+	
+	void loaded(long nanos) {
+		loads.incrementAndGet();
+		time(nanos);
+	}
+	
+	void failed(long nanos) {
+		failures.incrementAndGet();
+		time(nanos);
+	}
+	
+	private void time(long nanos) {
+		totalNanos.addAndGet(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+	
+	public long getLoads() {
+		return loads.get();
+	}
+	
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	/**
+	 * The total time spent in the loader, including failed attempts
+	 */
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+	
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+	
+	public long getAverageNanos() {
+		long attempts = getLoads() + getFailures();
+		return attempts == 0 ? 0 : getTotalNanos() / attempts;
+	}
+	
+	@Override
+	public String toString() {
+		return "loads: " + getLoads() + ", failures: " + getFailures() + ", average: " + getAverageNanos() + "ns, max: " + getMaxNanos() + "ns";
+	}
+}
@@ -0,0 +1,192 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import be.nabu.libs.types.api.ComplexContent;
+
+/**
+ * A live map view on a bean, the keys are the names of the elements of the type and reading or writing goes straight through the accessors.
+ * All the elements are always present as keys (with a null value if they are not set) so keys can not be removed.
+ * Nested beans (also in lists) are returned as map views as well, other values are returned as they are.
+ */
+public class BeanMap extends AbstractMap<String, Object> {
+
+	private BeanInstance<?> instance;
+	private BeanType.Slots slots;
+	private EntrySet entries;
+	
+	BeanMap(BeanInstance<?> instance) {
+		this.instance = instance;
+		this.slots = instance.getType().getSlots();
+	}
+	
+	@Override
+	public Object get(Object key) {
+		Integer slot = key instanceof String ? slots.indexes.get(key) : null;
+		return slot == null ? null : read(slot);
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && slots.indexes.containsKey(key);
+	}
+	
+	/**
+	 * The value is converted to the type of the field if necessary, the previous value is returned as it was before the conversion
+	 */
+	@Override
+	public Object put(String key, Object value) {
+		Integer slot = slots.indexes.get(key);
+		if (slot == null) {
+			throw new IllegalArgumentException("The field " + key + " does not exist in " + instance.getType().getBeanClass().getName());
+		}
+		Object previous = read(slot);
+		instance.set(key, value instanceof BeanMap ? ((BeanMap) value).getInstance() : value);
+		return previous;
+	}
+	
+	@Override
+	public Object remove(Object key) {
+		throw new UnsupportedOperationException("The fields of a bean can not be removed, set them to null instead");
+	}
+	
+	@Override
+	public int size() {
+		return slots.elements.length;
+	}
+	
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (entries == null) {
+			entries = new EntrySet();
+		}
+		return entries;
+	}
+	
+	public BeanInstance<?> getInstance() {
+		return instance;
+	}
+	
+	private Object read(int slot) {
+		Object value = BeanUtils.read(instance.getUnwrapped(), instance.getType(), slots.elements, slot);
+		if (value == null || !slots.complex[slot]) {
+			return value;
+		}
+		else if (slots.lists[slot]) {
+			final List<?> list = BeanUtils.toList(value);
+			return new AbstractList<Object>() {
+				@Override
+				public Object get(int index) {
+					return view(list.get(index));
+				}
+				@Override
+				public int size() {
+					return list.size();
+				}
+			};
+		}
+		return view(value);
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Object view(Object value) {
+		value = BeanUtils.unwrap(value);
+		return value == null || value instanceof ComplexContent ? value : new BeanMap(new BeanInstance(value));
+	}
+	
+	private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			return new Iterator<Map.Entry<String, Object>>() {
+				private int slot;
+				@Override
+				public boolean hasNext() {
+					return slot < slots.elements.length;
+				}
+				@Override
+				public Map.Entry<String, Object> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return new Entry(slot++);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return slots.elements.length;
+		}
+	}
+	
+	/**
+	 * The value is only read when it is requested
+	 */
+	private class Entry implements Map.Entry<String, Object> {
+		private int slot;
+		
+		Entry(int slot) {
+			this.slot = slot;
+		}
+		
+		@Override
+		public String getKey() {
+			return slots.elements[slot].getName();
+		}
+
+		@Override
+		public Object getValue() {
+			return read(slot);
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			return put(getKey(), value);
+		}
+		
+		@Override
+		public int hashCode() {
+			Object value = getValue();
+			return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+		
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>) object;
+			Object value = getValue();
+			return getKey().equals(other.getKey()) && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+		}
+		
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import be.nabu.libs.types.ParsedPath;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * A path (e.g. "customer/id" or "lines[0]/amount") that is resolved once against the slots of a bean type.
+ * Reading the path uses the accessors of the slots directly instead of parsing the path and looking up the elements on every get.
+ * If a value along the way is not of the compiled type (e.g. an extension or complex content), the remainder of the path is resolved dynamically.
+ */
+public class BeanPath {
+
+	private String path;
+	private BeanType<?> type;
+	private String[] remainders;
+	private BeanType<?>[] types;
+	private BeanAccessor[] accessors;
+	private int[] indexes;
+	private Element<?> element;
+	
+	private BeanPath(String path, BeanType<?> type) {
+		this.path = path;
+		this.type = type;
+		List<ParsedPath> segments = new ArrayList<ParsedPath>();
+		for (ParsedPath segment = ParsedPath.parse(path); segment != null; segment = segment.getChildPath()) {
+			segments.add(segment);
+		}
+		remainders = new String[segments.size()];
+		types = new BeanType<?>[segments.size()];
+		accessors = new BeanAccessor[segments.size()];
+		indexes = new int[segments.size()];
+		ComplexType current = type;
+		for (int i = 0; i < segments.size(); i++) {
+			ParsedPath segment = segments.get(i);
+			String name = segment.getName().startsWith("@") ? segment.getName().substring(1) : segment.getName();
+			remainders[i] = segment.toString();
+			indexes[i] = segment.getIndex() == null ? -1 : Integer.parseInt(segment.getIndex());
+			element = current == null ? null : current.get(name);
+			if (element == null) {
+				throw new IllegalArgumentException("The path '" + path + "' does not exist in " + type.getName());
+			}
+			if (current instanceof BeanType) {
+				int slot = ((BeanType<?>) current).getSlot(name);
+				if (slot >= 0) {
+					types[i] = (BeanType<?>) current;
+					accessors[i] = types[i].getSlots().accessors[slot];
+				}
+			}
+			current = element.getType() instanceof ComplexType ? (ComplexType) element.getType() : null;
+			if (current == null && i < segments.size() - 1) {
+				throw new IllegalArgumentException("The field " + name + " in path '" + path + "' is not a complex type");
+			}
+		}
+	}
+	
+	public static BeanPath compile(BeanType<?> type, String path) {
+		return new BeanPath(path, type);
+	}
+	
+	public static BeanPath compile(Class<?> beanClass, String path) {
+		return compile(BeanResolver.getFor(beanClass), beanClass, path);
+	}
+	
+	public static BeanPath compile(BeanResolver resolver, Class<?> beanClass, String path) {
+		return new BeanPath(path, (BeanType<?>) resolver.resolve(beanClass));
+	}
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public Object get(Object bean) {
+		Object value = BeanUtils.unwrap(bean);
+		for (int i = 0; i < accessors.length; i++) {
+			if (value == null) {
+				return null;
+			}
+			else if (accessors[i] == null || !isOfType(value, types[i])) {
+				ComplexContent content = value instanceof ComplexContent ? (ComplexContent) value : new BeanInstance(value);
+				return BeanUtils.unwrap(content.get(remainders[i]));
+			}
+			try {
+				value = accessors[i].get(value);
+			}
+			catch (Exception e) {
+				throw new RuntimeException("Can not read '" + path + "' from " + bean, e);
+			}
+			if (indexes[i] >= 0 && value != null) {
+				List<?> list = BeanUtils.toList(value);
+				value = indexes[i] < list.size() ? list.get(indexes[i]) : null;
+			}
+			value = BeanUtils.unwrap(value);
+		}
+		return value;
+	}
+	
+	private static boolean isOfType(Object value, BeanType<?> type) {
+		if (value.getClass() == type.getBeanClass()) {
+			return true;
+		}
+		else if (Proxy.isProxyClass(value.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(value);
+			return handler instanceof BeanInterfaceInstance && ((BeanInterfaceInstance) handler).getOriginalType() == type;
+		}
+		return false;
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	public BeanType<?> getType() {
+		return type;
+	}
+	
+	/**
+	 * The element at the end of the path
+	 */
+	public Element<?> getElement() {
+		return element;
+	}
+	
+	@Override
+	public String toString() {
+		return type.getName() + ":" + path;
+	}
+}
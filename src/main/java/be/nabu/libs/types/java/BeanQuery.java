@@ -0,0 +1,363 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+
+import be.nabu.libs.converter.ConverterFactory;
+import be.nabu.libs.types.api.SimpleType;
+
+/**
+ * Filters, sorts, projects and aggregates collections of beans using path expressions, e.g. where("amount > 100").select(orders, "id", "customer/name")
+ * The paths are compiled against the bean type once and literals are converted to the type of the path at compile time, so evaluating a condition does not parse or convert anything.
+ * Queries can be executed in parallel on the fork-join pool, the order of the results is the same as the sequential execution.
+ * A query can be reused (also concurrently) once it is built.
+ */
+public class BeanQuery<T> {
+
+	public enum Operator {
+		EQUALS("="),
+		NOT_EQUALS("!="),
+		GREATER(">"),
+		GREATER_OR_EQUAL(">="),
+		LESS("<"),
+		LESS_OR_EQUAL("<=");
+		
+		private String symbol;
+		
+		private Operator(String symbol) {
+			this.symbol = symbol;
+		}
+		
+		public String getSymbol() {
+			return symbol;
+		}
+		
+		public static Operator fromSymbol(String symbol) {
+			for (Operator operator : values()) {
+				if (operator.symbol.equals(symbol)) {
+					return operator;
+				}
+			}
+			throw new IllegalArgumentException("Unknown operator: " + symbol);
+		}
+	}
+	
+	private static Pattern CONDITION = Pattern.compile("^\\s*([^<>=!\\s]+)\\s*(>=|<=|!=|=|>|<)\\s*(.*?)\\s*$");
+	private static Pattern AND = Pattern.compile("\\s+and\\s+(?=(?:[^']*'[^']*')*[^']*$)", Pattern.CASE_INSENSITIVE);
+	
+	private BeanType<T> type;
+	private Map<String, BeanPath> paths = new LinkedHashMap<String, BeanPath>();
+	private List<Predicate<T>> filters = new ArrayList<Predicate<T>>();
+	private Comparator<T> order;
+	private boolean parallel;
+	private long offset, limit = -1;
+	
+	public BeanQuery(BeanType<T> type) {
+		this.type = type;
+	}
+	
+	public static <T> BeanQuery<T> from(BeanType<T> type) {
+		return new BeanQuery<T>(type);
+	}
+	
+	public static <T> BeanQuery<T> from(Class<T> beanClass) {
+		return from(BeanResolver.getFor(beanClass), beanClass);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public static <T> BeanQuery<T> from(BeanResolver resolver, Class<T> beanClass) {
+		return new BeanQuery<T>((BeanType<T>) resolver.resolve(beanClass));
+	}
+	
+	/**
+	 * Adds a condition of the form "path operator value" where the value is a literal, a quoted string or null, e.g. "customer/name = 'john' and amount >= 100"
+	 * Multiple conditions (in one expression or over multiple calls) must all match
+	 */
+	public BeanQuery<T> where(String condition) {
+		for (String part : AND.split(condition.trim())) {
+			Matcher matcher = CONDITION.matcher(part);
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException("Invalid condition: " + part);
+			}
+			String literal = matcher.group(3);
+			Object value;
+			if (literal.equalsIgnoreCase("null")) {
+				value = null;
+			}
+			else if (literal.length() >= 2 && (literal.startsWith("'") && literal.endsWith("'") || literal.startsWith("\"") && literal.endsWith("\""))) {
+				value = literal.substring(1, literal.length() - 1);
+			}
+			else {
+				value = literal;
+			}
+			where(matcher.group(1), Operator.fromSymbol(matcher.group(2)), value);
+		}
+		return this;
+	}
+	
+	public BeanQuery<T> where(String path, Operator operator, Object value) {
+		final BeanPath compiled = getPath(path);
+		final Object expected = convert(compiled, value);
+		if (expected == null) {
+			if (operator == Operator.EQUALS) {
+				filters.add(bean -> compiled.get(bean) == null);
+			}
+			else if (operator == Operator.NOT_EQUALS) {
+				filters.add(bean -> compiled.get(bean) != null);
+			}
+			else {
+				throw new IllegalArgumentException("Can not use " + operator.getSymbol() + " with null for: " + path);
+			}
+		}
+		else {
+			filters.add(bean -> {
+				Object actual = compiled.get(bean);
+				if (actual == null) {
+					return operator == Operator.NOT_EQUALS;
+				}
+				else if (operator == Operator.EQUALS) {
+					return isEqual(actual, expected);
+				}
+				else if (operator == Operator.NOT_EQUALS) {
+					return !isEqual(actual, expected);
+				}
+				int comparison = compare(actual, expected);
+				switch (operator) {
+					case GREATER: return comparison > 0;
+					case GREATER_OR_EQUAL: return comparison >= 0;
+					case LESS: return comparison < 0;
+					default: return comparison <= 0;
+				}
+			});
+		}
+		return this;
+	}
+	
+	/**
+	 * Adds a custom condition on the value of the path
+	 */
+	public BeanQuery<T> where(String path, Predicate<Object> predicate) {
+		BeanPath compiled = getPath(path);
+		filters.add(bean -> predicate.test(compiled.get(bean)));
+		return this;
+	}
+	
+	public BeanQuery<T> orderBy(String path) {
+		return orderBy(path, true);
+	}
+	
+	/**
+	 * Sorts on the value of the path, null values come last, multiple calls sort on the first path first
+	 */
+	public BeanQuery<T> orderBy(String path, boolean ascending) {
+		BeanPath compiled = getPath(path);
+		Comparator<Object> values = BeanQuery::compare;
+		Comparator<T> comparator = Comparator.comparing(bean -> compiled.get(bean), Comparator.nullsLast(ascending ? values : values.reversed()));
+		order = order == null ? comparator : order.thenComparing(comparator);
+		return this;
+	}
+	
+	public BeanQuery<T> offset(long offset) {
+		this.offset = offset;
+		return this;
+	}
+	
+	public BeanQuery<T> limit(long limit) {
+		this.limit = limit;
+		return this;
+	}
+	
+	public BeanQuery<T> parallel() {
+		return parallel(true);
+	}
+	
+	public BeanQuery<T> parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+	
+	/**
+	 * The matching beans, sorted and limited
+	 */
+	@SuppressWarnings("unchecked")
+	public Stream<T> stream(Collection<? extends T> beans) {
+		Stream<T> stream = (Stream<T>) (parallel ? beans.parallelStream() : beans.stream());
+		for (Predicate<T> filter : filters) {
+			stream = stream.filter(filter);
+		}
+		if (order != null) {
+			stream = stream.sorted(order);
+		}
+		if (offset > 0) {
+			stream = stream.skip(offset);
+		}
+		if (limit >= 0) {
+			stream = stream.limit(limit);
+		}
+		return stream;
+	}
+	
+	public List<T> list(Collection<? extends T> beans) {
+		return stream(beans).collect(Collectors.toList());
+	}
+	
+	/**
+	 * The values of the paths for each matching bean, keyed by path
+	 */
+	public List<Map<String, Object>> select(Collection<? extends T> beans, String...paths) {
+		final BeanPath [] compiled = new BeanPath[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			compiled[i] = getPath(paths[i]);
+		}
+		return stream(beans).map(bean -> {
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			for (BeanPath path : compiled) {
+				row.put(path.getPath(), path.get(bean));
+			}
+			return row;
+		}).collect(Collectors.toList());
+	}
+	
+	public long count(Collection<? extends T> beans) {
+		return stream(beans).count();
+	}
+	
+	/**
+	 * The sum of the numeric values of the path, null values are skipped
+	 */
+	public double sum(Collection<? extends T> beans, String path) {
+		return numbers(beans, path).sum();
+	}
+	
+	public OptionalDouble average(Collection<? extends T> beans, String path) {
+		return numbers(beans, path).average();
+	}
+	
+	public Object min(Collection<? extends T> beans, String path) {
+		return values(beans, path).min(BeanQuery::compare).orElse(null);
+	}
+	
+	public Object max(Collection<? extends T> beans, String path) {
+		return values(beans, path).max(BeanQuery::compare).orElse(null);
+	}
+	
+	/**
+	 * Groups the matching beans by the value of the path, the groups are in order of first appearance
+	 */
+	public Map<Object, List<T>> group(Collection<? extends T> beans, String path) {
+		BeanPath compiled = getPath(path);
+		// null is a valid group but Collectors.groupingBy does not allow null keys
+		Function<T, Object> classifier = bean -> {
+			Object value = compiled.get(bean);
+			return value == null ? NullKey.INSTANCE : value;
+		};
+		Map<Object, List<T>> groups = stream(beans).collect(Collectors.groupingBy(classifier, LinkedHashMap::new, Collectors.toList()));
+		if (groups.containsKey(NullKey.INSTANCE)) {
+			Map<Object, List<T>> result = new LinkedHashMap<Object, List<T>>();
+			for (Map.Entry<Object, List<T>> entry : groups.entrySet()) {
+				result.put(entry.getKey() == NullKey.INSTANCE ? null : entry.getKey(), entry.getValue());
+			}
+			return result;
+		}
+		return groups;
+	}
+	
+	private Stream<Object> values(Collection<? extends T> beans, String path) {
+		BeanPath compiled = getPath(path);
+		return stream(beans).map(compiled::get).filter(Objects::nonNull);
+	}
+	
+	private DoubleStream numbers(Collection<? extends T> beans, String path) {
+		return values(beans, path).mapToDouble(value -> {
+			if (!(value instanceof Number)) {
+				throw new IllegalArgumentException("The value of '" + path + "' is not a number: " + value);
+			}
+			return ((Number) value).doubleValue();
+		});
+	}
+	
+	private synchronized BeanPath getPath(String path) {
+		BeanPath compiled = paths.get(path);
+		if (compiled == null) {
+			compiled = BeanPath.compile(type, path);
+			paths.put(path, compiled);
+		}
+		return compiled;
+	}
+	
+	private static Object convert(BeanPath path, Object value) {
+		value = BeanUtils.unwrap(value);
+		if (value != null && path.getElement().getType() instanceof SimpleType) {
+			Class<?> target = ((SimpleType<?>) path.getElement().getType()).getInstanceClass();
+			if (!target.isInstance(value)) {
+				Object converted = ConverterFactory.getInstance().getConverter().convert(value, target);
+				if (converted == null) {
+					throw new IllegalArgumentException("Can not convert " + value + " to " + target.getName() + " for: " + path);
+				}
+				return converted;
+			}
+		}
+		return value;
+	}
+	
+	// e.g. big decimals with a different scale are equal in comparison
+	private static boolean isEqual(Object first, Object second) {
+		if (first.equals(second)) {
+			return true;
+		}
+		try {
+			return compare(first, second) == 0;
+		}
+		catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object first, Object second) {
+		if (first instanceof Comparable && first.getClass().isInstance(second)) {
+			return ((Comparable) first).compareTo(second);
+		}
+		else if (first instanceof Number && second instanceof Number) {
+			return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+		}
+		else if (first.equals(second)) {
+			return 0;
+		}
+		throw new IllegalArgumentException("Can not compare " + first + " with " + second);
+	}
+	
+	private enum NullKey {
+		INSTANCE
+	}
+}
@@ -0,0 +1,125 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The types that were resolved during a run, how often and whether they were hot (their accessors were promoted).
+ * A profile can be saved to a local file and replayed on the next start to warm up the resolver before the first requests come in, see {@link BeanResolver#warmUp(BeanResolutionProfile, boolean)}
+ * The file has one line per type: "id" or "class", the name, the amount of resolutions and "hot" or "cold", separated by tabs.
+ */
+public class BeanResolutionProfile {
+
+	private List<Entry> entries = new ArrayList<Entry>();
+	
+	public static class Entry {
+		private boolean byClass, hot;
+		private String name;
+		private long count;
+		
+		public Entry(String name, boolean byClass, long count, boolean hot) {
+			this.name = name;
+			this.byClass = byClass;
+			this.count = count;
+			this.hot = hot;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Whether it was resolved by class or by id
+		 */
+		public boolean isByClass() {
+			return byClass;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		public boolean isHot() {
+			return hot;
+		}
+		
+		@Override
+		public String toString() {
+			return (byClass ? "class" : "id") + "\t" + name + "\t" + count + "\t" + (hot ? "hot" : "cold");
+		}
+	}
+	
+	public void add(Entry entry) {
+		entries.add(entry);
+	}
+	
+	/**
+	 * The entries with the most resolutions first
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> sorted = new ArrayList<Entry>(entries);
+		Collections.sort(sorted, (first, second) -> Long.compare(second.count, first.count));
+		return sorted;
+	}
+	
+	public void save(File file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			for (Entry entry : getEntries()) {
+				writer.write(entry.toString());
+				writer.newLine();
+			}
+		}
+	}
+	
+	/**
+	 * Lines that can not be parsed are skipped, a profile from an older version should never prevent a start
+	 */
+	public static BeanResolutionProfile load(File file) throws IOException {
+		BeanResolutionProfile profile = new BeanResolutionProfile();
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.trim().split("\t");
+				if (parts.length < 2 || line.startsWith("#")) {
+					continue;
+				}
+				try {
+					profile.add(new Entry(parts[1], parts[0].equals("class"), parts.length > 2 ? Long.parseLong(parts[2]) : 0, parts.length > 3 && parts[3].equals("hot")));
+				}
+				catch (NumberFormatException e) {
+					// skip
+				}
+			}
+		}
+		return profile;
+	}
+	
+	@Override
+	public String toString() {
+		return "profile of " + entries.size() + " types";
+	}
+}
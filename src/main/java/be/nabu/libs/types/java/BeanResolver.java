@@ -17,68 +17,220 @@
 
 package be.nabu.libs.types.java;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import be.nabu.libs.types.api.DefinedType;
 import be.nabu.libs.types.api.DefinedTypeResolver;
 
 public class BeanResolver implements DefinedTypeResolver {
 
-	private Map<String, DefinedType> resolved = new HashMap<String, DefinedType>();
-	private Map<Class<?>, BeanType<?>> resolvedClasses = new HashMap<Class<?>, BeanType<?>>();
+	private Map<String, Resolution> resolved = new ConcurrentHashMap<String, Resolution>();
+	/**
+	 * The types resolved by class are not bounded: the types that use them as children keep a reference to them so evicting them would only create duplicate types for the same class
+	 * They are removed along with the factory that provided their class, or with the resolver itself for scoped resolvers
+	 */
+	private Map<Class<?>, BeanType<?>> resolvedClasses = new ConcurrentHashMap<Class<?>, BeanType<?>>();
 	
 	/**
 	 * This keeps track of which factory resolved which bean
 	 * If they are unloaded, their beans are removed
+	 * Each registration of a factory gets a new generation, resolutions of an older generation are never returned
 	 */
-	private Map<DomainObjectFactory, List<String>> factoryResolutions = new HashMap<DomainObjectFactory, List<String>>();
+	private Map<DomainObjectFactory, FactoryRegistration> factoryResolutions = new ConcurrentHashMap<DomainObjectFactory, FactoryRegistration>();
+	private long generations;
+	/**
+	 * The registration of the factory that provided a classloader, classes from that classloader are recorded in it (only accessed while synchronized)
+	 */
+	private Map<ClassLoader, FactoryRegistration> factoryLoaders = new IdentityHashMap<ClassLoader, FactoryRegistration>();
+	
+	private static volatile BeanResolver instance;
 	
-	private static BeanResolver instance;
+	private static volatile ExecutorService warmUpExecutor;
+	
+	private Logger logger = LoggerFactory.getLogger(getClass());
+	
+	/**
+	 * Isolated resolvers, e.g. per tenant
+	 */
+	private static Map<Object, BeanResolver> scoped = new ConcurrentHashMap<Object, BeanResolver>();
+	
+	/**
+	 * Isolated resolvers per classloader, the resolver and the types it caches reference the classes of the classloader so they are only softly reachable
+	 * Otherwise the classloader could never be collected: a weak key is not released as long as its value references it
+	 */
+	private static Map<ClassLoader, SoftReference<BeanResolver>> scopedLoaders = Collections.synchronizedMap(new WeakHashMap<ClassLoader, SoftReference<BeanResolver>>());
+	
+	/**
+	 * The classloader that is tried first when resolving by id, if not set the classloader of this class is used
+	 */
+	private WeakReference<ClassLoader> classLoader;
 	
 	private List<DomainObjectFactory> objectFactories = new ArrayList<DomainObjectFactory>();
 	
+	/**
+	 * When enabled, the types created by this resolver read and write fields directly instead of calling the getters and setters
+	 */
+	private boolean fieldAccess = Boolean.parseBoolean(System.getProperty("bean.fieldAccess", "false"));
+	
+	/**
+	 * The maximum amount of types resolved by id that are cached, the least recently used are evicted first, 0 means unbounded
+	 */
+	private int maxSize = BeanType.getIntegerProperty("bean.resolver.maxSize", 0);
+	
+	private LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder(), invalidations = new LongAdder();
+	
+	/**
+	 * When recording, the resolutions are counted so they can be saved in a profile
+	 */
+	private volatile boolean recording = Boolean.parseBoolean(System.getProperty("bean.resolver.record", "false"));
+	/**
+	 * The property values shared by the elements of the types resolved here
+	 */
+	private SharedValues sharedValues = new SharedValues();
+	
+	private Map<String, LongAdder> recordedIds = new ConcurrentHashMap<String, LongAdder>(), recordedClasses = new ConcurrentHashMap<String, LongAdder>();
+	
+	public BeanResolver() {
+		// default
+	}
+	
+	public BeanResolver(ClassLoader classLoader) {
+		this.classLoader = classLoader == null ? null : new WeakReference<ClassLoader>(classLoader);
+	}
+	
 	public static BeanResolver getInstance() {
 		if (instance == null) {
-			instance = new BeanResolver();
+			synchronized(BeanResolver.class) {
+				if (instance == null) {
+					instance = new BeanResolver();
+				}
+			}
 		}
 		return instance;
 	}
 	
-	@SuppressWarnings({ "unchecked", "rawtypes" })
+	/**
+	 * Returns the isolated resolver for the scope (e.g. a tenant id), it has its own cache and lock and the types it creates use it to resolve their children
+	 * If the scope is a classloader, the resolver uses that classloader to resolve ids and it is only softly reachable so an unused classloader can still be collected
+	 * Other scoped resolvers are kept until they are removed
+	 */
+	public static BeanResolver getScoped(Object scope) {
+		if (scope instanceof ClassLoader) {
+			synchronized(scopedLoaders) {
+				SoftReference<BeanResolver> reference = scopedLoaders.get(scope);
+				BeanResolver resolver = reference == null ? null : reference.get();
+				if (resolver == null) {
+					resolver = new BeanResolver((ClassLoader) scope);
+					scopedLoaders.put((ClassLoader) scope, new SoftReference<BeanResolver>(resolver));
+				}
+				return resolver;
+			}
+		}
+		return scoped.computeIfAbsent(scope, key -> new BeanResolver());
+	}
+	
+	public static BeanResolver removeScoped(Object scope) {
+		if (scope instanceof ClassLoader) {
+			SoftReference<BeanResolver> reference = scopedLoaders.remove(scope);
+			return reference == null ? null : reference.get();
+		}
+		return scoped.remove(scope);
+	}
+	
+	/**
+	 * The resolver that owns the class: the scoped resolver of its classloader if there is one, otherwise the global one
+	 * This is used when a class is resolved without a type to inherit the resolver from
+	 */
+	public static BeanResolver getFor(Class<?> clazz) {
+		ClassLoader loader = clazz.getClassLoader();
+		if (loader != null && !scopedLoaders.isEmpty()) {
+			SoftReference<BeanResolver> reference = scopedLoaders.get(loader);
+			BeanResolver resolver = reference == null ? null : reference.get();
+			if (resolver != null) {
+				return resolver;
+			}
+		}
+		return getInstance();
+	}
+	
 	public DefinedType resolve(Class<?> clazz) {
-		if (!resolvedClasses.containsKey(clazz)) {
+		if (recording) {
+			record(recordedClasses, clazz.getName());
+		}
+		return resolveClass(clazz);
+	}
+	
+	private DefinedType resolveClass(Class<?> clazz) {
+		BeanType<?> type = resolvedClasses.get(clazz);
+		if (type == null) {
 			synchronized(this) {
-				if (!resolvedClasses.containsKey(clazz)) {
-					resolvedClasses.put(clazz, new BeanType(clazz));
+				type = resolvedClasses.get(clazz);
+				if (type == null) {
+					type = newType(clazz);
+					resolvedClasses.put(clazz, type);
+					FactoryRegistration registration = getRegistration(clazz);
+					if (registration != null) {
+						registration.classes.add(clazz);
+					}
 				}
 			}
 		}
-		return resolvedClasses.get(clazz);
+		return type;
 	}
 	
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public DefinedType resolve(String id) {
-		if (!resolved.containsKey(id)) {
+		if (recording) {
+			record(recordedIds, id);
+		}
+		return resolveId(id);
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private DefinedType resolveId(String id) {
+		Resolution resolution = getCurrent(id);
+		if (resolution == null) {
 			synchronized(this) {
-				if (!resolved.containsKey(id)) {
+				resolution = getCurrent(id);
+				if (resolution == null) {
+					misses.increment();
 					for (Class<?> resolvedClass : resolvedClasses.keySet()) {
 						if (resolvedClass.getName().equals(id)) {
-							resolved.put(id, resolvedClasses.get(resolvedClass));
+							resolution = new Resolution(resolvedClasses.get(resolvedClass), resolvedClass, null, 0);
 							break;
 						}
 					}
-					if (!resolved.containsKey(id)) {
+					if (resolution == null) {
 						Class<?> targetType = null;
+						DomainObjectFactory resolvingFactory = null;
 						// first check domain object factories
 						for (DomainObjectFactory factory : objectFactories) {
 							try {
 								targetType = factory.loadClass(id);
 								if (targetType != null) {
-									factoryResolutions.get(factory).add(id);
+									resolvingFactory = factory;
 									break;
 								}
 							}
@@ -88,55 +240,361 @@ public class BeanResolver implements DefinedTypeResolver {
 						}
 						if (targetType == null) {
 							try {
-								// first try the classloader for this class, you may have enabled DynamicImport-Package
-								// however that setting is useless if you don't use the classloader for this bundle
-								targetType = getClass().getClassLoader().loadClass(id);
+								targetType = loadClass(id);
 							}
 							catch (ClassNotFoundException e) {
-								// then try the thread classloader, it may be correct
-								try {
-									targetType = Thread.currentThread().getContextClassLoader().loadClass(id);
-								}
-								catch (ClassNotFoundException f) {
-									return null;
-								}
+								return null;
 							}
 						}
-						BeanType<?> beanType = new BeanType(targetType);
-						if (beanType.isSimpleType()) {
-							resolved.put(id, new SimpleBeanType(beanType));
+						BeanType<?> beanType = newType(targetType);
+						DefinedType type = beanType.isSimpleType() ? new SimpleBeanType(beanType) : beanType;
+						if (resolvingFactory == null) {
+							resolution = new Resolution(type, targetType, null, 0);
 						}
 						else {
-							resolved.put(id, beanType);
+							FactoryRegistration registration = factoryResolutions.get(resolvingFactory);
+							// shared classloaders are not tied to the factory
+							if (targetType.getClassLoader() != null && targetType.getClassLoader() != getClass().getClassLoader()) {
+								factoryLoaders.put(targetType.getClassLoader(), registration);
+							}
+							resolution = new Resolution(type, targetType, resolvingFactory, registration.generation);
 						}
 					}
+					// also record ids that were not loaded by the factory itself but whose class comes from one of its classloaders
+					FactoryRegistration registration = resolution.factory == null ? getRegistration(resolution.beanClass) : factoryResolutions.get(resolution.factory);
+					if (registration != null) {
+						registration.ids.add(id);
+					}
+					// touch before evicting, otherwise the new resolution is the least recently used one
+					resolution.touch(maxSize > 0);
+					resolved.put(id, resolution);
+					evict();
+					return resolution.type;
+				}
+			}
+		}
+		hits.increment();
+		resolution.touch(maxSize > 0);
+		return resolution.type;
+	}
+	
+	private FactoryRegistration getRegistration(Class<?> clazz) {
+		return clazz.getClassLoader() == null || factoryLoaders.isEmpty() ? null : factoryLoaders.get(clazz.getClassLoader());
+	}
+	
+	/**
+	 * Returns the resolution if it belongs to the current generation of its factory, stale resolutions are removed
+	 */
+	private Resolution getCurrent(String id) {
+		Resolution resolution = resolved.get(id);
+		if (resolution != null && resolution.factory != null) {
+			FactoryRegistration registration = factoryResolutions.get(resolution.factory);
+			if (registration == null || registration.generation != resolution.generation) {
+				if (resolved.remove(id, resolution)) {
+					invalidations.increment();
+				}
+				return null;
+			}
+		}
+		return resolution;
+	}
+	
+	/**
+	 * When the cache is too big, the least recently used tenth is evicted in one go so we don't have to do this for every new resolution
+	 */
+	private synchronized void evict() {
+		if (maxSize > 0 && resolved.size() > maxSize) {
+			List<Map.Entry<String, Resolution>> entries = new ArrayList<Map.Entry<String, Resolution>>(resolved.entrySet());
+			Collections.sort(entries, (first, second) -> Long.compare(first.getValue().lastAccess, second.getValue().lastAccess));
+			int amount = resolved.size() - (maxSize - maxSize / 10);
+			for (int i = 0; i < amount && i < entries.size(); i++) {
+				Map.Entry<String, Resolution> entry = entries.get(i);
+				if (resolved.remove(entry.getKey(), entry.getValue())) {
+					evictions.increment();
+					FactoryRegistration registration = entry.getValue().factory == null ? null : factoryResolutions.get(entry.getValue().factory);
+					if (registration != null) {
+						registration.ids.remove(entry.getKey());
+					}
 				}
 			}
 		}
-		return resolved.get(id);
+	}
+	
+	private Class<?> loadClass(String name) throws ClassNotFoundException {
+		try {
+			// first try the classloader for this class, you may have enabled DynamicImport-Package
+			// however that setting is useless if you don't use the classloader for this bundle
+			ClassLoader loader = classLoader == null ? null : classLoader.get();
+			return (loader == null ? getClass().getClassLoader() : loader).loadClass(name);
+		}
+		catch (ClassNotFoundException e) {
+			// then try the thread classloader, it may be correct
+			return Thread.currentThread().getContextClassLoader().loadClass(name);
+		}
+	}
+	
+	private static void record(Map<String, LongAdder> recorded, String name) {
+		LongAdder counter = recorded.get(name);
+		if (counter == null) {
+			counter = recorded.computeIfAbsent(name, key -> new LongAdder());
+		}
+		counter.increment();
+	}
+	
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Records the resolutions so a profile can be created for the next start
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+	
+	public void resetRecording() {
+		recordedIds.clear();
+		recordedClasses.clear();
+	}
+	
+	/**
+	 * The recorded resolutions, a type is hot if its accessors were promoted during the run
+	 */
+	public BeanResolutionProfile getProfile() {
+		BeanResolutionProfile profile = new BeanResolutionProfile();
+		for (Map.Entry<String, LongAdder> entry : recordedIds.entrySet()) {
+			Resolution resolution = resolved.get(entry.getKey());
+			boolean hot = resolution != null && resolution.type instanceof BeanType && ((BeanType<?>) resolution.type).isHot();
+			profile.add(new BeanResolutionProfile.Entry(entry.getKey(), false, entry.getValue().sum(), hot));
+		}
+		Map<String, BeanType<?>> types = new HashMap<String, BeanType<?>>();
+		for (BeanType<?> type : resolvedClasses.values()) {
+			types.put(type.getBeanClass().getName(), type);
+		}
+		for (Map.Entry<String, LongAdder> entry : recordedClasses.entrySet()) {
+			BeanType<?> type = types.get(entry.getKey());
+			profile.add(new BeanResolutionProfile.Entry(entry.getKey(), true, entry.getValue().sum(), type != null && type.isHot()));
+		}
+		return profile;
+	}
+	
+	public Future<Integer> warmUp(File profile, boolean promote) throws IOException {
+		return warmUp(BeanResolutionProfile.load(profile), promote);
+	}
+	
+	/**
+	 * Resolves and introspects the types in the profile on a low priority background thread, the most resolved types first
+	 * If promote is set, the accessors of the types that were hot are promoted immediately
+	 * Warming up is not recorded. Types that can no longer be resolved are skipped, the future returns how many were skipped
+	 */
+	public Future<Integer> warmUp(BeanResolutionProfile profile, boolean promote) {
+		final List<BeanResolutionProfile.Entry> entries = profile.getEntries();
+		return getWarmUpExecutor().submit(() -> {
+			int skipped = 0;
+			for (BeanResolutionProfile.Entry entry : entries) {
+				try {
+					DefinedType type = entry.isByClass() ? resolveClass(loadClass(entry.getName())) : resolveId(entry.getName());
+					if (type instanceof BeanType) {
+						((BeanType<?>) type).warmUp(promote && entry.isHot());
+					}
+					else {
+						skipped++;
+						logger.debug("Skipping warm-up of " + entry.getName() + ", it can not be resolved");
+					}
+				}
+				// the profile may be outdated
+				catch (Exception e) {
+					skipped++;
+					logger.debug("Skipping warm-up of " + entry.getName(), e);
+				}
+				catch (LinkageError e) {
+					skipped++;
+					logger.debug("Skipping warm-up of " + entry.getName(), e);
+				}
+			}
+			if (skipped > 0) {
+				logger.info("Skipped " + skipped + " of " + entries.size() + " types while warming up, the profile may be outdated");
+			}
+			return skipped;
+		});
+	}
+	
+	/**
+	 * All the resolvers share a single low priority thread to warm up, it stops when it has been idle for a while
+	 */
+	private static ExecutorService getWarmUpExecutor() {
+		if (warmUpExecutor == null) {
+			synchronized(BeanResolver.class) {
+				if (warmUpExecutor == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+						Thread thread = new Thread(runnable, "bean-resolver-warm-up");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					});
+					executor.allowCoreThreadTimeOut(true);
+					warmUpExecutor = executor;
+				}
+			}
+		}
+		return warmUpExecutor;
 	}
 	
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public void register(Class<?> clazz) {
+	public synchronized void register(Class<?> clazz) {
+		FactoryRegistration registration = getRegistration(clazz);
 		if (!resolvedClasses.containsKey(clazz)) {
-			resolvedClasses.put(clazz, new BeanType(clazz));
+			resolvedClasses.put(clazz, newType(clazz));
+			if (registration != null) {
+				registration.classes.add(clazz);
+			}
 		}
 		if (!resolved.containsKey(clazz.getName())) {
-			resolved.put(clazz.getName(), resolvedClasses.containsKey(clazz) ? resolvedClasses.get(clazz) : new BeanType(clazz));
+			Resolution resolution = new Resolution(resolvedClasses.get(clazz), clazz, null, 0);
+			resolution.touch(maxSize > 0);
+			resolved.put(clazz.getName(), resolution);
+			if (registration != null) {
+				registration.ids.add(clazz.getName());
+			}
+			evict();
 		}
 	}
 	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private BeanType<?> newType(Class<?> clazz) {
+		return new BeanType(clazz, false, fieldAccess, this);
+	}
+	
+	public boolean isFieldAccess() {
+		return fieldAccess;
+	}
+
+	public void setFieldAccess(boolean fieldAccess) {
+		this.fieldAccess = fieldAccess;
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Limits the amount of types that are cached by id, types that are evicted are resolved again when requested
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		evict();
+	}
+	
+	/**
+	 * The amount of types that are cached by id
+	 */
+	public int getSize() {
+		return resolved.size();
+	}
+	
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * The amount of types that were removed because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * The amount of types that were removed because their factory was removed
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+	
+	/**
+	 * Estimates the retained size of all the types that have been resolved so far
+	 */
+	public BeanTypeFootprint getFootprint() {
+		List<Object> roots = new ArrayList<Object>();
+		synchronized(this) {
+			roots.add(new HashMap<String, Resolution>(resolved));
+			roots.add(new HashMap<Class<?>, BeanType<?>>(resolvedClasses));
+		}
+		return BeanTypeFootprint.calculate(roots);
+	}
+	
+	SharedValues getSharedValues() {
+		return sharedValues;
+	}
+	
+	/**
+	 * Releases the interned property values, types that were already resolved keep theirs
+	 */
+	public void clearSharedValues() {
+		sharedValues.clear();
+	}
+	
 	public synchronized void addFactory(DomainObjectFactory factory) {
-		factoryResolutions.put(factory, new ArrayList<String>());
+		factoryResolutions.put(factory, new FactoryRegistration(++generations));
 		objectFactories.add(factory);
 	}
 	
+	/**
+	 * Removes all the types that were resolved through the factory, including those that were resolved from the classloaders it provided
+	 * Only the ids and classes that were recorded for the factory are removed, the rest of the cache is not scanned
+	 */
 	public synchronized void removeFactory(DomainObjectFactory factory) {
-		for (String id : factoryResolutions.get(factory)) {
-			resolved.remove(id);
-		}
+		FactoryRegistration registration = factoryResolutions.remove(factory);
 		objectFactories.remove(factory);
-		factoryResolutions.remove(factoryResolutions);
+		if (registration != null) {
+			for (String id : registration.ids) {
+				if (resolved.remove(id) != null) {
+					invalidations.increment();
+				}
+			}
+			for (Class<?> clazz : registration.classes) {
+				if (resolvedClasses.remove(clazz) != null) {
+					invalidations.increment();
+				}
+			}
+			factoryLoaders.values().removeIf(value -> value == registration);
+		}
+	}
+	
+	private static class Resolution {
+		private DefinedType type;
+		private Class<?> beanClass;
+		private DomainObjectFactory factory;
+		private long generation;
+		private volatile long lastAccess;
+		
+		Resolution(DefinedType type, Class<?> beanClass, DomainObjectFactory factory, long generation) {
+			this.type = type;
+			this.beanClass = beanClass;
+			this.factory = factory;
+			this.generation = generation;
+		}
+		
+		void touch(boolean bounded) {
+			// only needed for eviction
+			if (bounded) {
+				lastAccess = System.nanoTime();
+			}
+		}
+	}
+	
+	private static class FactoryRegistration {
+		private long generation;
+		// the ids and classes that were resolved through the factory or from the classloaders it provided
+		private Set<String> ids = new HashSet<String>();
+		private Set<Class<?>> classes = new HashSet<Class<?>>();
+		
+		FactoryRegistration(long generation) {
+			this.generation = generation;
+		}
 	}
 	
 	@SuppressWarnings("unused")
@@ -22,9 +22,22 @@ import be.nabu.libs.types.api.DefinedTypeResolver;
 
 public class BeanResolverService implements DefinedTypeResolver {
 
+	private BeanResolver resolver;
+	
+	public BeanResolverService() {
+		// default
+	}
+	
+	/**
+	 * Resolves through the given resolver instead of the global one
+	 */
+	public BeanResolverService(BeanResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@Override
 	public DefinedType resolve(String id) {
-		return BeanResolver.getInstance().resolve(id);
+		return (resolver == null ? BeanResolver.getInstance() : resolver).resolve(id);
 	}
 
 }
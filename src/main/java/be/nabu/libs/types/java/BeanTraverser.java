@@ -0,0 +1,333 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+import be.nabu.libs.types.CollectionHandlerFactory;
+import be.nabu.libs.types.SimpleTypeWrapperFactory;
+import be.nabu.libs.types.TypeUtils;
+import be.nabu.libs.types.api.CollectionHandlerProvider;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+import be.nabu.libs.types.api.Type;
+
+/**
+ * Walks a bean graph depth-first without recursion: the current position is kept on an explicit stack so deep graphs don't run out of stack.
+ * Objects that are already being visited higher up in the graph are reported as a cycle instead of being entered again.
+ * Beans are not wrapped while traversing, properties are read positionally through the slots of their type.
+ * The stack frames and the cursor are reused, so a traverser that is reused for multiple traversals does not allocate on the steady path (apart from iterators for lists that have no random access).
+ * A traverser is not thread safe, use one per thread.
+ */
+public class BeanTraverser {
+
+	private List<Frame> frames = new ArrayList<Frame>();
+	private int depth = -1;
+	private Map<Object, Object> ancestors = new IdentityHashMap<Object, Object>();
+	private BeanCursor cursor = new BeanCursor(this);
+	private StringBuilder path = new StringBuilder();
+	// report attributes before the other elements, e.g. for xml serialization
+	private boolean attributesFirst;
+	
+	public void traverse(Object root, BeanVisitor visitor) {
+		if (root instanceof BeanInstance) {
+			root = ((BeanInstance<?>) root).getUnwrapped();
+		}
+		if (root == null) {
+			throw new IllegalArgumentException("Can not traverse a null value");
+		}
+		if (depth >= 0) {
+			throw new IllegalStateException("The traverser is already in use");
+		}
+		ComplexType type = getType(root, null);
+		if (type == null) {
+			throw new IllegalArgumentException("Can not traverse the simple value: " + root);
+		}
+		try {
+			push(null, root, type, null, -1, -1, visitor);
+			while (depth >= 0) {
+				Frame frame = frames.get(depth);
+				if (frame.list != null) {
+					if (frame.hasNext()) {
+						int index = frame.listIndex++;
+						child(frame, frame.slot, frame.next(index), index, visitor);
+					}
+					else {
+						cursor.point(depth + 1, frame.instance, frame.getElement(frame.slot), frame.slot, -1, frame.list, null, frame.listSize);
+						frame.clearList();
+						frame.advance();
+						visitor.leaveList(cursor);
+					}
+				}
+				else if (frame.position >= frame.length) {
+					cursor.point(depth, depth == 0 ? null : frames.get(depth - 1).instance, frame.element, frame.parentSlot, frame.index, frame.instance, frame.type, -1);
+					ancestors.remove(frame.instance);
+					frame.clear();
+					depth--;
+					visitor.leave(cursor);
+				}
+				else {
+					int slot = frame.slot;
+					Object value = frame.get(slot);
+					if (value != null && frame.isList(slot)) {
+						frame.startList(value);
+						cursor.point(depth + 1, frame.instance, frame.getElement(slot), slot, -1, value, null, frame.listSize);
+						if (!visitor.enterList(cursor)) {
+							frame.clearList();
+							frame.advance();
+						}
+					}
+					else {
+						frame.advance();
+						child(frame, slot, value, -1, visitor);
+					}
+				}
+			}
+		}
+		finally {
+			// don't hold on to the graph if we were interrupted by an exception
+			for (; depth >= 0; depth--) {
+				frames.get(depth).clear();
+			}
+			ancestors.clear();
+		}
+	}
+	
+	private void child(Frame parent, int slot, Object value, int index, BeanVisitor visitor) {
+		Element<?> element = parent.getElement(slot);
+		if (value instanceof BeanInstance) {
+			value = ((BeanInstance<?>) value).getUnwrapped();
+		}
+		ComplexType type = value != null && parent.isComplex(slot) ? getType(value, element) : null;
+		if (type == null) {
+			cursor.point(depth + 1, parent.instance, element, slot, index, value, null, -1);
+			visitor.value(cursor);
+		}
+		else if (ancestors.containsKey(value)) {
+			cursor.point(depth + 1, parent.instance, element, slot, index, value, type, -1);
+			visitor.cycle(cursor);
+		}
+		else {
+			push(parent.instance, value, type, element, slot, index, visitor);
+		}
+	}
+	
+	private void push(Object parent, Object instance, ComplexType type, Element<?> element, int slot, int index, BeanVisitor visitor) {
+		cursor.point(depth + 1, parent, element, slot, index, instance, type, -1);
+		if (visitor.enter(cursor)) {
+			depth++;
+			if (frames.size() <= depth) {
+				frames.add(new Frame());
+			}
+			frames.get(depth).init(instance, type, element, slot, index, attributesFirst);
+			ancestors.put(instance, instance);
+		}
+	}
+	
+	/**
+	 * Returns the complex type of the (unwrapped) value or null if it is a simple value, the element is optional
+	 */
+	static ComplexType getType(Object value, Element<?> element) {
+		if (value instanceof ComplexContent) {
+			return ((ComplexContent) value).getType();
+		}
+		Type type = element == null ? null : element.getType();
+		// the most common case: the value is exactly the declared type
+		if (type instanceof BeanType && ((BeanType<?>) type).getBeanClass().equals(value.getClass())) {
+			return (ComplexType) type;
+		}
+		else if (!Proxy.isProxyClass(value.getClass()) && SimpleTypeWrapperFactory.getInstance().getWrapper().wrap(value.getClass()) != null) {
+			return null;
+		}
+		return BeanInstance.resolveType(value);
+	}
+	
+	ComplexType getParentType(BeanCursor cursor) {
+		return cursor.getDepth() == 0 ? null : frames.get(cursor.getDepth() - 1).type;
+	}
+	
+	public boolean isAttributesFirst() {
+		return attributesFirst;
+	}
+
+	public void setAttributesFirst(boolean attributesFirst) {
+		this.attributesFirst = attributesFirst;
+	}
+
+	String getPath(BeanCursor cursor) {
+		path.setLength(0);
+		for (int i = 1; i < cursor.getDepth() && i <= depth; i++) {
+			append(frames.get(i).element, frames.get(i).index);
+		}
+		if (cursor.getDepth() > 0) {
+			append(cursor.getElement(), cursor.getIndex());
+		}
+		return path.toString();
+	}
+	
+	private void append(Element<?> element, int index) {
+		if (path.length() > 0) {
+			path.append('/');
+		}
+		path.append(element.getName());
+		if (index >= 0) {
+			path.append('[').append(index).append(']');
+		}
+	}
+	
+	private static class Frame {
+		// the unwrapped object we are visiting and its type
+		private Object instance;
+		private ComplexType type;
+		// beans are accessed through their slots, other complex content by name
+		private BeanType.Slots slots;
+		private Element<?>[] elements;
+		// the position in the order we visit the slots in and the slot at that position
+		private int position, slot, length;
+		private int[] order;
+		// where the object is located in its parent
+		private Element<?> element;
+		private int parentSlot, index;
+		// the list in the current slot we are iterating over
+		private Object list;
+		private List<?> randomAccess;
+		private Iterator<?> iterator;
+		private int listIndex, listSize;
+		
+		void init(Object instance, ComplexType type, Element<?> element, int parentSlot, int index, boolean attributesFirst) {
+			this.instance = instance;
+			this.type = type;
+			this.element = element;
+			this.parentSlot = parentSlot;
+			this.index = index;
+			if (type instanceof BeanType && !(instance instanceof ComplexContent)) {
+				slots = ((BeanType<?>) type).getSlots();
+				length = slots.elements.length;
+				order = attributesFirst ? slots.attributesFirst : null;
+			}
+			else {
+				Collection<Element<?>> children = TypeUtils.getAllChildren(type);
+				elements = children.toArray(new Element<?>[children.size()]);
+				length = elements.length;
+				order = attributesFirst ? BeanType.Slots.getAttributesFirst(elements) : null;
+			}
+			position = -1;
+			advance();
+		}
+		
+		void advance() {
+			position++;
+			slot = position >= length || order == null ? position : order[position];
+		}
+		
+		Element<?> getElement(int slot) {
+			return slots == null ? elements[slot] : slots.elements[slot];
+		}
+		
+		boolean isList(int slot) {
+			return slots == null ? elements[slot].getType().isList(elements[slot].getProperties()) : slots.lists[slot];
+		}
+		
+		boolean isComplex(int slot) {
+			return slots == null ? elements[slot].getType() instanceof ComplexType : slots.complex[slot];
+		}
+		
+		Object get(int slot) {
+			if (slots == null) {
+				return ((ComplexContent) instance).get(elements[slot].getName());
+			}
+			BeanAccessor accessor = slots.accessors[slot];
+			try {
+				return accessor.get(instance);
+			}
+			catch (Exception e) {
+				throw new RuntimeException("Can not read '" + slots.elements[slot].getName() + "' from " + instance.getClass() + " => " + accessor, e);
+			}
+		}
+		
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		void startList(Object list) {
+			this.list = list;
+			this.listIndex = 0;
+			if (list instanceof List && list instanceof RandomAccess) {
+				randomAccess = (List<?>) list;
+				listSize = randomAccess.size();
+			}
+			else if (list.getClass().isArray()) {
+				listSize = Array.getLength(list);
+			}
+			else if (list instanceof Collection) {
+				iterator = ((Collection<?>) list).iterator();
+				listSize = ((Collection<?>) list).size();
+			}
+			// streaming lists are consumed lazily
+			else if (list instanceof Iterable || list instanceof Iterator || list instanceof Stream) {
+				iterator = StreamingCollectionHandlerProvider.iterator(list);
+				listSize = -1;
+			}
+			else {
+				CollectionHandlerProvider handler = CollectionHandlerFactory.getInstance().getHandler().getHandler(list.getClass());
+				if (handler == null) {
+					throw new IllegalArgumentException("Can not iterate over the list " + list.getClass());
+				}
+				Collection<?> collection = handler.getAsCollection(list);
+				iterator = collection.iterator();
+				listSize = collection.size();
+			}
+		}
+		
+		boolean hasNext() {
+			return iterator == null ? listIndex < listSize : iterator.hasNext();
+		}
+		
+		Object next(int index) {
+			if (iterator != null) {
+				return iterator.next();
+			}
+			return randomAccess == null ? Array.get(list, index) : randomAccess.get(index);
+		}
+		
+		void clearList() {
+			list = null;
+			randomAccess = null;
+			iterator = null;
+			listIndex = 0;
+			listSize = -1;
+		}
+		
+		void clear() {
+			clearList();
+			instance = null;
+			type = null;
+			slots = null;
+			elements = null;
+			order = null;
+			element = null;
+		}
+	}
+}
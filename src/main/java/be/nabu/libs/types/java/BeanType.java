@@ -18,6 +18,13 @@
 package be.nabu.libs.types.java;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
@@ -32,6 +39,9 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.validation.constraints.DecimalMax;
 import javax.validation.constraints.DecimalMin;
@@ -44,6 +54,7 @@ import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlEnumValue;
 import javax.xml.bind.annotation.XmlNsForm;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSchema;
@@ -84,29 +95,17 @@ import be.nabu.libs.types.base.ComplexElementImpl;
 import be.nabu.libs.types.base.SimpleElementImpl;
 import be.nabu.libs.types.base.ValueImpl;
 import be.nabu.libs.types.properties.AliasProperty;
-import be.nabu.libs.types.properties.AttributeQualifiedDefaultProperty;
-import be.nabu.libs.types.properties.CollectionHandlerProviderProperty;
 import be.nabu.libs.types.properties.CollectionNameProperty;
-import be.nabu.libs.types.properties.ElementQualifiedDefaultProperty;
 import be.nabu.libs.types.properties.EnumerationProperty;
-import be.nabu.libs.types.properties.FormatProperty;
 import be.nabu.libs.types.properties.GeneratedProperty;
-import be.nabu.libs.types.properties.LengthProperty;
-import be.nabu.libs.types.properties.MaxInclusiveProperty;
-import be.nabu.libs.types.properties.MaxLengthProperty;
 import be.nabu.libs.types.properties.MaxOccursProperty;
-import be.nabu.libs.types.properties.MinInclusiveProperty;
-import be.nabu.libs.types.properties.MinLengthProperty;
 import be.nabu.libs.types.properties.MinOccursProperty;
 import be.nabu.libs.types.properties.NameProperty;
 import be.nabu.libs.types.properties.NamespaceProperty;
 import be.nabu.libs.types.properties.NillableProperty;
-import be.nabu.libs.types.properties.PatternProperty;
 import be.nabu.libs.types.properties.PrimaryKeyProperty;
-import be.nabu.libs.types.properties.QualifiedProperty;
 import be.nabu.libs.types.properties.RawProperty;
 import be.nabu.libs.types.properties.TimeBlock;
-import be.nabu.libs.types.properties.TimeBlockProperty;
 import be.nabu.libs.types.simple.Date.XSDFormat;
 import be.nabu.libs.validator.MultipleValidator;
 import be.nabu.libs.validator.api.Validator;
@@ -118,6 +117,7 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	private Map<String, Method> getters = new HashMap<String, Method>();
 	private Map<String, Method> setters = new HashMap<String, Method>();
 	private Map<String, Class<?>> actualTypes = new HashMap<String, Class<?>>();
+	private Map<String, BeanAccessor> accessors = new HashMap<String, BeanAccessor>();
 	
 	private Map<String, Element<?>> children;
 	
@@ -125,12 +125,85 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	
 	private Class<T> beanClass;
 	
-	private List<Value<?>> values;
+	private volatile Value<?>[] enumProperties;
+	private volatile Map<String, T> enumConstants;
 	
 	private Logger logger = LoggerFactory.getLogger(getClass());
 	
 	private boolean allowVarargsGetters = true;
 	
+	/**
+	 * The amount of reflective accesses on a property before it is promoted to a method handle, a negative value disables promotion
+	 */
+	private static int defaultPromotionThreshold = getIntegerProperty("bean.accessor.threshold", 1000);
+	
+	private int promotionThreshold = defaultPromotionThreshold;
+	
+	/**
+	 * Reads an integer system property, a malformed value falls back to the default so it can not break class initialization
+	 */
+	static int getIntegerProperty(String name, int defaultValue) {
+		String value = System.getProperty(name);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			}
+			catch (NumberFormatException e) {
+				LoggerFactory.getLogger(BeanType.class).warn("Invalid value '" + value + "' for system property " + name + ", using default: " + defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+	
+	/**
+	 * Interface beans can be backed by atomic storage so they can be shared between threads without external locking
+	 */
+	private static boolean defaultConcurrent = Boolean.parseBoolean(System.getProperty("bean.concurrent", "false"));
+	
+	private boolean concurrent = defaultConcurrent;
+	
+	/**
+	 * Interface beans can keep track of which properties were changed and optionally which values they had before the change
+	 */
+	private static boolean defaultTrackChanges = Boolean.parseBoolean(System.getProperty("bean.trackChanges", "false"));
+	private static boolean defaultJournalChanges = Boolean.parseBoolean(System.getProperty("bean.journalChanges", "false"));
+	
+	private boolean trackChanges = defaultTrackChanges, journalChanges = defaultJournalChanges;
+	
+	/**
+	 * Interface beans can use structural equals and hashCode instead of identity
+	 */
+	private static boolean defaultStructuralEquality = Boolean.parseBoolean(System.getProperty("bean.structuralEquality", "false"));
+	
+	private boolean structuralEquality = defaultStructuralEquality;
+	
+	/**
+	 * The load statistics of lazy instances by property
+	 */
+	private Map<String, BeanLoadStatistics> loadStatistics = new ConcurrentHashMap<String, BeanLoadStatistics>();
+	
+	/**
+	 * When enabled, the fields backing the getters (and fields without getters) are accessed directly
+	 */
+	private boolean fieldAccess;
+	
+	/**
+	 * The resolver that created this type, the types of its children and parents are resolved by the same resolver
+	 */
+	private BeanResolver resolver;
+	
+	/**
+	 * The no-arg constructor of the bean class, it is only resolved once
+	 */
+	private volatile MethodHandle constructor;
+	
+	/**
+	 * The proxy constructors per context classloader (interfaces only), the proxy class references its classloader so the constructor is only softly reachable
+	 */
+	private final Map<ClassLoader, SoftReference<Constructor<?>>> proxyConstructors = new WeakHashMap<ClassLoader, SoftReference<Constructor<?>>>();
+
+	private volatile Slots slots;
+
 	/**
 	 * This contains the name of the element that contains the "value"
 	 * If this is present, all other children must be attributes and if so, it really should be exposed as a simple complex type
@@ -144,8 +217,18 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	}
 	
 	public BeanType(Class<T> beanClass, boolean includeChildrenNotInPropOrder) {
+		this(beanClass, includeChildrenNotInPropOrder, false);
+	}
+	
+	public BeanType(Class<T> beanClass, boolean includeChildrenNotInPropOrder, boolean fieldAccess) {
+		this(beanClass, includeChildrenNotInPropOrder, fieldAccess, null);
+	}
+	
+	public BeanType(Class<T> beanClass, boolean includeChildrenNotInPropOrder, boolean fieldAccess, BeanResolver resolver) {
 		this.beanClass = beanClass;
+		this.resolver = resolver;
 		this.includeChildrenNotInPropOrder = includeChildrenNotInPropOrder;
+		this.fieldAccess = fieldAccess;
 		loadName();
 		loadNamespace();
 		loadCollectionName();
@@ -171,13 +254,76 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	}
 	
 	Type getGenericType(String name) {
-		Method getter = getGetter(name);
-		if (getter == null) {
+		BeanAccessor accessor = getAccessor(name);
+		if (accessor == null) {
 			throw new IllegalArgumentException("Could not find getter for: " + name);
 		}
-		return getter.getGenericReturnType();
+		return accessor.getGenericType();
+	}
+	
+	public boolean isFieldAccess() {
+		return fieldAccess;
+	}
+	
+	public int getPromotionThreshold() {
+		return promotionThreshold;
+	}
+
+	public void setPromotionThreshold(int promotionThreshold) {
+		this.promotionThreshold = promotionThreshold;
 	}
 	
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * Only applies to interface beans that are instantiated after the toggle
+	 */
+	public void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+
+	public boolean isTrackChanges() {
+		return trackChanges;
+	}
+
+	/**
+	 * Only applies to interface beans that are instantiated after the toggle
+	 */
+	public void setTrackChanges(boolean trackChanges) {
+		this.trackChanges = trackChanges;
+	}
+
+	public boolean isJournalChanges() {
+		return journalChanges;
+	}
+
+	/**
+	 * Keeps the original values of changed properties, this implies change tracking
+	 */
+	public void setJournalChanges(boolean journalChanges) {
+		this.journalChanges = journalChanges;
+	}
+
+	/**
+	 * The resolver this type belongs to, types that were created outside of a resolver use the global one
+	 */
+	public BeanResolver getResolver() {
+		return resolver == null ? BeanResolver.getInstance() : resolver;
+	}
+
+	public boolean isStructuralEquality() {
+		return structuralEquality;
+	}
+
+	/**
+	 * Interface beans of this type compare (and hash) their content instead of their identity, see BeanEquality
+	 */
+	public void setStructuralEquality(boolean structuralEquality) {
+		this.structuralEquality = structuralEquality;
+	}
+
 	public Class<T> getBeanClass() {
 		return beanClass;
 	}
@@ -194,7 +340,8 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 				if (children == null) {
 					Map<String, Element<?>> children = new LinkedHashMap<String, Element<?>>();
 					Map<String, String> mappedNames = new HashMap<String, String>();
-					SimpleTypeWrapper wrapper = SimpleTypeWrapperFactory.getInstance().getWrapper();
+					// the names as derived from the getters, before any mapping
+					List<String> derivedNames = new ArrayList<String>();
 					// this only lists the methods that are actually implemented by this class, not those that are inherited
 					for (Method method : getBeanClass().getDeclaredMethods()) {
 						if (Modifier.isPublic(method.getModifiers()) && (method.getName().startsWith("get") || method.getName().startsWith("is"))) {
@@ -219,6 +366,7 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 							name = name.substring(0, 1).toLowerCase() + name.substring(1);
 							
 							logger.debug("Found getter for: {} in {}", name, getBeanClass());
+							derivedNames.add(name);
 							
 							if (getIndicatedName(method) != null) {
 								String original = name;
@@ -226,202 +374,7 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 								mappedNames.put(original, name);
 							}
 							
-							String namespace = getNamespace(method);
-		
-							Class<?> returnType = method.getReturnType();
-							
-							// need to know if it's native (it can not be null then)
-							boolean isNative = false;
-							// box primitives, they can not be wrapped by simpletype anyway
-							if (returnType.getName().equals("int")) {
-								returnType = Integer.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("float")) {
-								returnType = Float.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("double")) {
-								returnType = Double.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("char")) {
-								returnType = Character.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("short")) {
-								returnType = Short.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("long")) {
-								returnType = Long.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("byte")) {
-								returnType = Byte.class;
-								isNative = true;
-							}
-							else if (returnType.getName().equals("boolean")) {
-								returnType = Boolean.class;
-								isNative = true;
-							}
-							
-							// the actual type must be preserved, mostly for collection management
-							actualTypes.put(name, returnType);
-		
-							boolean isList = false;
-							CollectionHandlerProvider provider = getCollectionHandler().getHandler(returnType);
-							// if it is a list, we need the actual type
-							if (provider != null) {
-								isList = true;
-								try {
-									returnType = provider.getComponentType(method.getGenericReturnType());
-								}
-								catch (IllegalArgumentException e) {
-									// proxies don't inherit the generic information from their interfaces, check the interfaces to see if we can find the component type
-									Class<?>[] interfaces = getBeanClass().getInterfaces();
-									boolean foundInInterfaces = false;
-									if (interfaces != null) {
-										for (Class<?> clazz : interfaces) {
-											try {
-												Method methodInterface = clazz.getMethod(method.getName(), method.getParameterTypes());
-												returnType = provider.getComponentType(methodInterface.getGenericReturnType());
-												foundInInterfaces = true;
-											}
-											catch (NoSuchMethodException e1) {
-												// ignore
-											}
-											catch (SecurityException e1) {
-												// ignore
-											}
-											// couldn't extract it, stop
-											catch (IllegalArgumentException e1) {
-												break;
-											}
-										}
-									}
-									if (!foundInInterfaces) {
-										throw new IllegalArgumentException("Can not get the component type for field '" + name + "': " + method, e);
-									}
-								}
-							}
-		
-							Element<?> element = null;
-							
-							SimpleType<?> simpleType = wrapper.wrap(returnType);
-							if (simpleType != null) {
-								if (isAttribute(method)) {
-									element = new AttributeImpl(name, simpleType, this);
-									element.setProperty(new ValueImpl(new QualifiedProperty(), isAttributeQualified(getBeanClass())));
-								}
-								else {
-									element = new SimpleElementImpl(name, simpleType, this);
-									element.setProperty(new ValueImpl(new QualifiedProperty(), isElementQualified(getBeanClass())));
-								}
-								// get min/max
-								Long min = getMin(method);
-								Long max = getMax(method);
-								String minDecimal = getMinDecimal(method);
-								String maxDecimal = getMaxDecimal(method);
-								Integer minLength = getMinLength(method);
-								Integer maxLength = getMaxLength(method);
-								
-								// if min and max are the same, express it as length
-								if (minLength != null && maxLength != null && minLength.equals(maxLength))
-									element.setProperty(new ValueImpl(new LengthProperty(), minLength));
-								else {
-									if (minLength != null)
-										element.setProperty(new ValueImpl(new MinLengthProperty(), minLength));
-									if (maxLength != null)
-										element.setProperty(new ValueImpl(new MaxLengthProperty(), maxLength));
-								}
-								
-								if (isGenerated(method)) {
-									element.setProperty(new ValueImpl<Boolean>(GeneratedProperty.getInstance(), true));
-								}
-								
-								if (isPrimary(method)) {
-									element.setProperty(new ValueImpl<Boolean>(PrimaryKeyProperty.getInstance(), true));
-								}
-								
-								String pattern = getPattern(method);
-								if (pattern != null)
-									element.setProperty(new ValueImpl(new PatternProperty(), pattern));
-								
-								// if it's a java.util.date (or extension), check for a schema element type name
-								if (Date.class.isAssignableFrom(returnType)) {
-									String indicatedSchemaType = getIndicatedSchemaType(method);
-									if (indicatedSchemaType != null && XSDFormat.getXSDFormat(indicatedSchemaType) != null) {
-										element.setProperty(new ValueImpl(new FormatProperty(), indicatedSchemaType));
-									}
-								}
-								Boolean isFuture = isFuture(method);
-								Boolean isPast = isPast(method);
-								if (isFuture != null && isFuture)
-									element.setProperty(new ValueImpl(new TimeBlockProperty(), TimeBlock.FUTURE));
-								else if (isPast != null && isPast)
-									element.setProperty(new ValueImpl(new TimeBlockProperty(), TimeBlock.PAST));
-								
-								Converter converter = ConverterFactory.getInstance().getConverter(); 
-								if (min != null)
-									element.setProperty(new ValueImpl(new MinInclusiveProperty(), converter.convert(min, returnType)));
-								else if (minDecimal != null)
-									element.setProperty(new ValueImpl(new MinInclusiveProperty(), converter.convert(minDecimal, returnType)));
-								
-								if (max != null)
-									element.setProperty(new ValueImpl(new MaxInclusiveProperty(), converter.convert(max, returnType)));
-								else if (maxDecimal != null)
-									element.setProperty(new ValueImpl(new MaxInclusiveProperty(), converter.convert(maxDecimal, returnType)));
-							}
-							else {
-								element = new ComplexElementImpl(name, (ComplexType) BeanResolver.getInstance().resolve(returnType), this);
-								element.setProperty(new ValueImpl(new AttributeQualifiedDefaultProperty(), isAttributeQualified(returnType)));
-								element.setProperty(new ValueImpl(new ElementQualifiedDefaultProperty(), isElementQualified(returnType)));
-								element.setProperty(new ValueImpl(new QualifiedProperty(), isElementQualified(getBeanClass())));
-							}
-							
-							// if we have a collection provider, set it as a property for instantiation later
-							if (provider != null) {
-								element.setProperty(new ValueImpl(new CollectionHandlerProviderProperty(), provider));
-							}
-							
-							if (namespace != null && !NamespaceProperty.DEFAULT_NAMESPACE.equals(namespace))
-								element.setProperty(new ValueImpl(NamespaceProperty.getInstance(), namespace));
-							
-							if (method.getAnnotation(XmlValue.class) != null)
-								valueElement = element;
-							// make sure the nillable is explicitly set correctly
-							boolean nillable = false;
-							if (!isNative && isNillable(method)) {
-								element.setProperty(new ValueImpl(NillableProperty.getInstance(), true));
-								nillable = true;
-							}
-							else {
-								element.setProperty(new ValueImpl(NillableProperty.getInstance(), false));
-							}
-						
-							String alias = getAlias(method);
-							if (alias != null) {
-								element.setProperty(new ValueImpl<String>(AliasProperty.getInstance(), alias));
-							}
-							
-							Integer minOccurs = getMinOccurs(method);
-							Integer maxOccurs = getMaxOccurs(method);
-							if (minOccurs != null) {
-								element.setProperty(new ValueImpl(MinOccursProperty.getInstance(), minOccurs));
-							}
-							else if (nillable) {
-								element.setProperty(new ValueImpl(MinOccursProperty.getInstance(), 0));
-							}
-							if (maxOccurs != null)
-								element.setProperty(new ValueImpl(MaxOccursProperty.getInstance(), maxOccurs));
-							else if (isList)
-								element.setProperty(new ValueImpl(MaxOccursProperty.getInstance(), 0));
-							
-							boolean raw = isRaw(method);
-							if (raw) {
-								element.setProperty(new ValueImpl<Boolean>(RawProperty.getInstance(), true));
-							}
+							Element<?> element = buildElement(name, method, method.getReturnType(), method.getGenericReturnType());
 							
 							getters.put(element.getName(), method);
 							
@@ -454,6 +407,10 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 							setters.put(name, method);
 						}
 					}
+					Map<String, java.lang.reflect.Field> fields = fieldAccess ? getFields(children, mappedNames, derivedNames) : new HashMap<String, java.lang.reflect.Field>();
+					for (String name : children.keySet()) {
+						accessors.put(name, new BeanAccessor(this, getters.get(name), getSetter(name), fields.get(name)));
+					}
 					String [] propOrder = getPropOrder(getBeanClass());
 					if (propOrder != null) {
 						children = orderChildren(children, propOrder, mappedNames);
@@ -468,7 +425,254 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return children;
 	}
 	
-	private String getAlias(Method method) {
+	/**
+	 * Finds the fields that back the getters and adds elements for the fields that have no getter
+	 */
+	private Map<String, java.lang.reflect.Field> getFields(Map<String, Element<?>> children, Map<String, String> mappedNames, List<String> derivedNames) {
+		Map<String, java.lang.reflect.Field> fields = new HashMap<String, java.lang.reflect.Field>();
+		for (java.lang.reflect.Field field : getBeanClass().getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+				continue;
+			}
+			String derivedName = null;
+			for (String name : derivedNames) {
+				if (name.equalsIgnoreCase(field.getName())) {
+					derivedName = name;
+					break;
+				}
+			}
+			if (derivedName != null) {
+				String name = mappedNames.containsKey(derivedName) ? mappedNames.get(derivedName) : derivedName;
+				// only use the field if it holds exactly what the getter returns
+				if (getters.containsKey(name) && field.getType().equals(getters.get(name).getReturnType())) {
+					fields.put(name, field);
+				}
+			}
+			// private fields without a getter are considered internal state
+			else if (!Modifier.isPrivate(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) 
+					&& field.getAnnotation(XmlTransient.class) == null && field.getAnnotation(Transient.class) == null) {
+				String name = field.getName();
+				logger.debug("Found field for: {} in {}", name, getBeanClass());
+				if (getIndicatedName(field) != null) {
+					name = getIndicatedName(field);
+					mappedNames.put(field.getName(), name);
+				}
+				Element<?> element = buildElement(name, field, field.getType(), field.getGenericType());
+				fields.put(element.getName(), field);
+				children.put(element.getName(), element);
+			}
+		}
+		return fields;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Element<?> buildElement(String name, AnnotatedElement annotated, Class<?> returnType, Type genericType) {
+		SimpleTypeWrapper wrapper = SimpleTypeWrapperFactory.getInstance().getWrapper();
+		SharedValues values = getResolver().getSharedValues();
+		
+		String namespace = getNamespace(annotated);
+		
+		// need to know if it's native (it can not be null then)
+		boolean isNative = false;
+		// box primitives, they can not be wrapped by simpletype anyway
+		if (returnType.getName().equals("int")) {
+			returnType = Integer.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("float")) {
+			returnType = Float.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("double")) {
+			returnType = Double.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("char")) {
+			returnType = Character.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("short")) {
+			returnType = Short.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("long")) {
+			returnType = Long.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("byte")) {
+			returnType = Byte.class;
+			isNative = true;
+		}
+		else if (returnType.getName().equals("boolean")) {
+			returnType = Boolean.class;
+			isNative = true;
+		}
+		
+		// the actual type must be preserved, mostly for collection management
+		actualTypes.put(name, returnType);
+	
+		boolean isList = false;
+		CollectionHandlerProvider provider = StreamingCollectionHandlerProvider.getHandler(getCollectionHandler(), returnType);
+		// if it is a list, we need the actual type
+		if (provider != null) {
+			isList = true;
+			try {
+				returnType = provider.getComponentType(genericType);
+			}
+			catch (IllegalArgumentException e) {
+				if (!(annotated instanceof Method)) {
+					throw new IllegalArgumentException("Can not get the component type for field '" + name + "': " + annotated, e);
+				}
+				Method method = (Method) annotated;
+				// proxies don't inherit the generic information from their interfaces, check the interfaces to see if we can find the component type
+				Class<?>[] interfaces = getBeanClass().getInterfaces();
+				boolean foundInInterfaces = false;
+				if (interfaces != null) {
+					for (Class<?> clazz : interfaces) {
+						try {
+							Method methodInterface = clazz.getMethod(method.getName(), method.getParameterTypes());
+							returnType = provider.getComponentType(methodInterface.getGenericReturnType());
+							foundInInterfaces = true;
+						}
+						catch (NoSuchMethodException e1) {
+							// ignore
+						}
+						catch (SecurityException e1) {
+							// ignore
+						}
+						// couldn't extract it, stop
+						catch (IllegalArgumentException e1) {
+							break;
+						}
+					}
+				}
+				if (!foundInInterfaces) {
+					throw new IllegalArgumentException("Can not get the component type for field '" + name + "': " + method, e);
+				}
+			}
+		}
+	
+		Element<?> element = null;
+		
+		SimpleType<?> simpleType = wrapper.wrap(returnType);
+		if (simpleType != null) {
+			if (isAttribute(annotated)) {
+				element = new AttributeImpl(name, simpleType, this);
+				element.setProperty(values.get(SharedValues.QUALIFIED, isAttributeQualified(getBeanClass())));
+			}
+			else {
+				element = new SimpleElementImpl(name, simpleType, this);
+				element.setProperty(values.get(SharedValues.QUALIFIED, isElementQualified(getBeanClass())));
+			}
+			// get min/max
+			Long min = getMin(annotated);
+			Long max = getMax(annotated);
+			String minDecimal = getMinDecimal(annotated);
+			String maxDecimal = getMaxDecimal(annotated);
+			Integer minLength = getMinLength(annotated);
+			Integer maxLength = getMaxLength(annotated);
+			
+			// if min and max are the same, express it as length
+			if (minLength != null && maxLength != null && minLength.equals(maxLength))
+				element.setProperty(values.get(SharedValues.LENGTH, minLength));
+			else {
+				if (minLength != null)
+					element.setProperty(values.get(SharedValues.MIN_LENGTH, minLength));
+				if (maxLength != null)
+					element.setProperty(values.get(SharedValues.MAX_LENGTH, maxLength));
+			}
+			
+			if (isGenerated(annotated)) {
+				element.setProperty(values.get(GeneratedProperty.getInstance(), true));
+			}
+			
+			if (isPrimary(annotated)) {
+				element.setProperty(values.get(PrimaryKeyProperty.getInstance(), true));
+			}
+			
+			String pattern = getPattern(annotated);
+			if (pattern != null)
+				element.setProperty(values.get(SharedValues.PATTERN, pattern));
+			
+			// if it's a java.util.date (or extension), check for a schema element type name
+			if (Date.class.isAssignableFrom(returnType)) {
+				String indicatedSchemaType = getIndicatedSchemaType(annotated);
+				if (indicatedSchemaType != null && XSDFormat.getXSDFormat(indicatedSchemaType) != null) {
+					element.setProperty(values.get(SharedValues.FORMAT, indicatedSchemaType));
+				}
+			}
+			Boolean isFuture = isFuture(annotated);
+			Boolean isPast = isPast(annotated);
+			if (isFuture != null && isFuture)
+				element.setProperty(values.get(SharedValues.TIME_BLOCK, TimeBlock.FUTURE));
+			else if (isPast != null && isPast)
+				element.setProperty(values.get(SharedValues.TIME_BLOCK, TimeBlock.PAST));
+			
+			Converter converter = ConverterFactory.getInstance().getConverter(); 
+			if (min != null)
+				element.setProperty(values.get(SharedValues.MIN_INCLUSIVE, converter.convert(min, returnType)));
+			else if (minDecimal != null)
+				element.setProperty(values.get(SharedValues.MIN_INCLUSIVE, converter.convert(minDecimal, returnType)));
+			
+			if (max != null)
+				element.setProperty(values.get(SharedValues.MAX_INCLUSIVE, converter.convert(max, returnType)));
+			else if (maxDecimal != null)
+				element.setProperty(values.get(SharedValues.MAX_INCLUSIVE, converter.convert(maxDecimal, returnType)));
+		}
+		else {
+			element = new ComplexElementImpl(name, (ComplexType) getResolver().resolve(returnType), this);
+			element.setProperty(values.get(SharedValues.ATTRIBUTE_QUALIFIED_DEFAULT, isAttributeQualified(returnType)));
+			element.setProperty(values.get(SharedValues.ELEMENT_QUALIFIED_DEFAULT, isElementQualified(returnType)));
+			element.setProperty(values.get(SharedValues.QUALIFIED, isElementQualified(getBeanClass())));
+		}
+		
+		// if we have a collection provider, set it as a property for instantiation later
+		if (provider != null) {
+			element.setProperty(values.get(SharedValues.COLLECTION_HANDLER_PROVIDER, provider));
+		}
+		
+		if (namespace != null && !NamespaceProperty.DEFAULT_NAMESPACE.equals(namespace))
+			element.setProperty(values.get(NamespaceProperty.getInstance(), namespace));
+		
+		if (annotated.getAnnotation(XmlValue.class) != null)
+			valueElement = element;
+		// make sure the nillable is explicitly set correctly
+		boolean nillable = false;
+		if (!isNative && isNillable(annotated)) {
+			element.setProperty(values.get(NillableProperty.getInstance(), true));
+			nillable = true;
+		}
+		else {
+			element.setProperty(values.get(NillableProperty.getInstance(), false));
+		}
+	
+		String alias = getAlias(annotated);
+		if (alias != null) {
+			element.setProperty(values.get(AliasProperty.getInstance(), alias));
+		}
+		
+		Integer minOccurs = getMinOccurs(annotated);
+		Integer maxOccurs = getMaxOccurs(annotated);
+		if (minOccurs != null) {
+			element.setProperty(values.get(MinOccursProperty.getInstance(), minOccurs));
+		}
+		else if (nillable) {
+			element.setProperty(values.get(MinOccursProperty.getInstance(), 0));
+		}
+		if (maxOccurs != null)
+			element.setProperty(values.get(MaxOccursProperty.getInstance(), maxOccurs));
+		else if (isList)
+			element.setProperty(values.get(MaxOccursProperty.getInstance(), 0));
+		
+		boolean raw = isRaw(annotated);
+		if (raw) {
+			element.setProperty(values.get(RawProperty.getInstance(), true));
+		}
+		
+		return element;
+	}
+	
+	private String getAlias(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		if (field != null && !field.alias().trim().isEmpty()) {
 			return field.alias();
@@ -476,7 +680,7 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return null;
 	}
 	
-	private boolean isRaw(Method method) {
+	private boolean isRaw(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		return field == null ? false : field.raw();
 	}
@@ -516,6 +720,14 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return orderedChildren;
 	}
 	
+	/**
+	 * The element that holds the simple value (@XmlValue) or null if there is none
+	 */
+	Element<?> getValueElement() {
+		getChildren();
+		return valueElement;
+	}
+	
 	public boolean isSimpleType() {
 		if (valueElement != null) {
 			for (String name : getChildren().keySet()) {
@@ -555,11 +767,11 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	
 	@Override
 	public String getName(Value<?>...values) {
-		String valueName = ValueUtils.getValue(new NameProperty(), values);
+		String valueName = ValueUtils.getValue(NameProperty.getInstance(), values);
 		if (valueName != null) {
 			return valueName;
 		}
-		return ValueUtils.getValue(new NameProperty(), getProperties());
+		return ValueUtils.getValue(NameProperty.getInstance(), getProperties());
 	}
 
 	protected void loadNamespace() {
@@ -590,7 +802,19 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return ValueUtils.getValue(NamespaceProperty.getInstance(), getProperties());
 	}
 	
+	/**
+	 * The annotation hooks accept both getters and fields (field access mode). For getters they call the Method variant
+	 * so subclasses that override the original Method hooks keep working.
+	 */
+	protected String getIndicatedSchemaType(AnnotatedElement method) {
+		return method instanceof Method ? getIndicatedSchemaType((Method) method) : getIndicatedSchemaTypeFor(method);
+	}
+	
 	protected String getIndicatedSchemaType(Method method) {
+		return getIndicatedSchemaTypeFor(method);
+	}
+	
+	private String getIndicatedSchemaTypeFor(AnnotatedElement method) {
 		// currently only support for xml schema types
 		XmlSchemaType annotation = method.getAnnotation(XmlSchemaType.class);
 		return annotation == null || (annotation.namespace() != null && !annotation.namespace().equals("http://www.w3.org/2001/XMLSchema")) ? null : annotation.name();
@@ -605,7 +829,15 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return annotation == null ? null : annotation.propOrder();
 	}
 	
+	protected String getIndicatedName(AnnotatedElement method) {
+		return method instanceof Method ? getIndicatedName((Method) method) : getIndicatedNameFor(method);
+	}
+	
 	protected String getIndicatedName(Method method) {
+		return getIndicatedNameFor(method);
+	}
+	
+	private String getIndicatedNameFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		if (field != null && !field.name().trim().isEmpty()) {
 			return field.name();
@@ -619,7 +851,15 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return name == null || name.equals("##default") ? null : name;
 	}
 	
+	protected String getNamespace(AnnotatedElement method) {
+		return method instanceof Method ? getNamespace((Method) method) : getNamespaceFor(method);
+	}
+	
 	protected String getNamespace(Method method) {
+		return getNamespaceFor(method);
+	}
+	
+	private String getNamespaceFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		if (field != null && !field.namespace().trim().isEmpty()) {
 			return field.namespace();
@@ -641,7 +881,15 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 			return XmlNsForm.QUALIFIED.equals(annotation.elementFormDefault());
 	}
 
+	protected boolean isNillable(AnnotatedElement method) {
+		return method instanceof Method ? isNillable((Method) method) : isNillableFor(method);
+	}
+	
 	protected boolean isNillable(Method method) {
+		return isNillableFor(method);
+	}
+	
+	private boolean isNillableFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		// must work correctly together with not null
 		if (field != null && field.minOccurs() != 0) {
@@ -650,17 +898,41 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		return method.getAnnotation(NotNull.class) == null;
 	}
 	
+	protected boolean isGenerated(AnnotatedElement method) {
+		return method instanceof Method ? isGenerated((Method) method) : isGeneratedFor(method);
+	}
+	
 	protected boolean isGenerated(Method method) {
+		return isGeneratedFor(method);
+	}
+	
+	private boolean isGeneratedFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		return field != null && field.generated();
 	}
 	
+	protected boolean isPrimary(AnnotatedElement method) {
+		return method instanceof Method ? isPrimary((Method) method) : isPrimaryFor(method);
+	}
+	
 	protected boolean isPrimary(Method method) {
+		return isPrimaryFor(method);
+	}
+	
+	private boolean isPrimaryFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		return field != null && field.primary();
 	}
 	
+	protected Long getMin(AnnotatedElement method) {
+		return method instanceof Method ? getMin((Method) method) : getMinFor(method);
+	}
+	
 	protected Long getMin(Method method) {
+		return getMinFor(method);
+	}
+	
+	private Long getMinFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		if (field != null && field.min() != 0) {
 			return field.min();
@@ -668,7 +940,15 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		Min annotation = method.getAnnotation(Min.class);
 		return annotation == null ? null : annotation.value();
 	}
+	protected Long getMax(AnnotatedElement method) {
+		return method instanceof Method ? getMax((Method) method) : getMaxFor(method);
+	}
+	
 	protected Long getMax(Method method) {
+		return getMaxFor(method);
+	}
+	
+	private Long getMaxFor(AnnotatedElement method) {
 		Field field = method.getAnnotation(Field.class);
 		if (field != null && field.max() != 0) {
 			return field.max();
@@ -676,17 +956,41 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		Max annotation = method.getAnnotation(Max.class);
 		return annotation == null ? null : annotation.value();
 	}
+	protected String getMinDecimal(AnnotatedElement method) {
+		return method instanceof Method ? getMinDecimal((Method) method) : getMinDecimalFor(method);
+	}
+	
 	protected String getMinDecimal(Method method) {
+		return getMinDecimalFor(method);
+	}
+	
+	private String getMinDecimalFor(AnnotatedElement method) {
 		DecimalMin annotation = method.getAnnotation(DecimalMin.class);
 		return annotation == null ? null : annotation.value();
 	}
+	protected String getMaxDecimal(AnnotatedElement method) {
+		return method instanceof Method ? getMaxDecimal((Method) method) : getMaxDecimalFor(method);
+	}
+	
 	protected String getMaxDecimal(Method method) {
+		return getMaxDecimalFor(method);
+	}
+	
+	private String getMaxDecimalFor(AnnotatedElement method) {
 		DecimalMax annotation = method.getAnnotation(DecimalMax.class);
 		return annotation == null ? null : annotation.value();
 	}
 	
+	protected Integer getMinOccurs(AnnotatedElement method) {
+		return method instanceof Method ? getMinOccurs((Method) method) : getMinOccursFor(method);
+	}
+	
 	protected Integer getMinOccurs(Method method) {
-		if (Collection.class.isAssignableFrom(method.getReturnType()) || Object[].class.isAssignableFrom(method.getReturnType())) {
+		return getMinOccursFor(method);
+	}
+	
+	private Integer getMinOccursFor(AnnotatedElement method) {
+		if (Collection.class.isAssignableFrom(getValueType(method)) || Object[].class.isAssignableFrom(getValueType(method))) {
 			Field field = method.getAnnotation(Field.class);
 			if (field != null && field.minOccurs() != 0) {
 				return field.minOccurs();
@@ -697,8 +1001,16 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		else
 			return null;
 	}
+	protected Integer getMaxOccurs(AnnotatedElement method) {
+		return method instanceof Method ? getMaxOccurs((Method) method) : getMaxOccursFor(method);
+	}
+	
 	protected Integer getMaxOccurs(Method method) {
-		if (Collection.class.isAssignableFrom(method.getReturnType()) || Object[].class.isAssignableFrom(method.getReturnType())) {
+		return getMaxOccursFor(method);
+	}
+	
+	private Integer getMaxOccursFor(AnnotatedElement method) {
+		if (Collection.class.isAssignableFrom(getValueType(method)) || Object[].class.isAssignableFrom(getValueType(method))) {
 			Field field = method.getAnnotation(Field.class);
 			if (field != null && field.maxOccurs() != 0) {
 				return field.maxOccurs();
@@ -709,8 +1021,16 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		else
 			return null;
 	}
+	protected Integer getMinLength(AnnotatedElement method) {
+		return method instanceof Method ? getMinLength((Method) method) : getMinLengthFor(method);
+	}
+	
 	protected Integer getMinLength(Method method) {
-		if (CharSequence.class.isAssignableFrom(method.getReturnType())) {
+		return getMinLengthFor(method);
+	}
+	
+	private Integer getMinLengthFor(AnnotatedElement method) {
+		if (CharSequence.class.isAssignableFrom(getValueType(method))) {
 			Field field = method.getAnnotation(Field.class);
 			if (field != null && field.minLength() != 0) {
 				return field.minLength();
@@ -721,8 +1041,16 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		else
 			return null;
 	}
+	protected Integer getMaxLength(AnnotatedElement method) {
+		return method instanceof Method ? getMaxLength((Method) method) : getMaxLengthFor(method);
+	}
+	
 	protected Integer getMaxLength(Method method) {
-		if (CharSequence.class.isAssignableFrom(method.getReturnType())) {
+		return getMaxLengthFor(method);
+	}
+	
+	private Integer getMaxLengthFor(AnnotatedElement method) {
+		if (CharSequence.class.isAssignableFrom(getValueType(method))) {
 			Field field = method.getAnnotation(Field.class);
 			if (field != null && field.maxLength() != 0) {
 				return field.maxLength();
@@ -733,8 +1061,16 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		else
 			return null;
 	}
+	protected String getPattern(AnnotatedElement method) {
+		return method instanceof Method ? getPattern((Method) method) : getPatternFor(method);
+	}
+	
 	protected String getPattern(Method method) {
-		if (CharSequence.class.isAssignableFrom(method.getReturnType())) {
+		return getPatternFor(method);
+	}
+	
+	private String getPatternFor(AnnotatedElement method) {
+		if (CharSequence.class.isAssignableFrom(getValueType(method))) {
 			Field field = method.getAnnotation(Field.class);
 			if (field != null && !field.pattern().trim().isEmpty()) {
 				return field.pattern();
@@ -745,16 +1081,32 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 		else
 			return null;
 	}
+	protected Boolean isFuture(AnnotatedElement method) {
+		return method instanceof Method ? isFuture((Method) method) : isFutureFor(method);
+	}
+	
 	protected Boolean isFuture(Method method) {
-		if (Date.class.isAssignableFrom(method.getReturnType())) {
+		return isFutureFor(method);
+	}
+	
+	private Boolean isFutureFor(AnnotatedElement method) {
+		if (Date.class.isAssignableFrom(getValueType(method))) {
 			Future annotation = method.getAnnotation(Future.class);
 			return annotation != null;
 		}
 		else
 			return null;
 	}
+	protected Boolean isPast(AnnotatedElement method) {
+		return method instanceof Method ? isPast((Method) method) : isPastFor(method);
+	}
+	
 	protected Boolean isPast(Method method) {
-		if (Date.class.isAssignableFrom(method.getReturnType())) {
+		return isPastFor(method);
+	}
+	
+	private Boolean isPastFor(AnnotatedElement method) {
+		if (Date.class.isAssignableFrom(getValueType(method))) {
 			Past annotation = method.getAnnotation(Past.class);
 			return annotation != null;
 		}
@@ -762,8 +1114,20 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 			return null;
 	}
 
+	private static Class<?> getValueType(AnnotatedElement element) {
+		return element instanceof Method ? ((Method) element).getReturnType() : ((java.lang.reflect.Field) element).getType();
+	}
+	
+	protected boolean isList(AnnotatedElement method) {
+		return method instanceof Method ? isList((Method) method) : isListFor(method);
+	}
+	
 	protected boolean isList(Method method) {
-		return method.getReturnType().isArray() || Collection.class.isAssignableFrom(method.getReturnType());
+		return isListFor(method);
+	}
+	
+	private boolean isListFor(AnnotatedElement method) {
+		return getValueType(method).isArray() || Collection.class.isAssignableFrom(getValueType(method)) || StreamingCollectionHandlerProvider.isStreaming(getValueType(method));
 	}
 
 	protected boolean isAttributeQualified(Class<?> clazz) {
@@ -774,7 +1138,15 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 			return XmlNsForm.QUALIFIED.equals(annotation.attributeFormDefault());
 	}
 	
+	protected boolean isAttribute(AnnotatedElement method) {
+		return method instanceof Method ? isAttribute((Method) method) : isAttributeFor(method);
+	}
+	
 	protected boolean isAttribute(Method method) {
+		return isAttributeFor(method);
+	}
+	
+	private boolean isAttributeFor(AnnotatedElement method) {
 		return method.getAnnotation(XmlAttribute.class) != null;
 	}
 
@@ -782,26 +1154,136 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	public ComplexType getSuperType() {
 		// if we implement an interface and the direct parent is object, report the interface as the parent
 		if ((getBeanClass().isInterface() || getBeanClass().getSuperclass() == null || getBeanClass().getSuperclass().equals(Object.class)) && getBeanClass().getInterfaces().length > 0) {
-			return (ComplexType) BeanResolver.getInstance().resolve(getBeanClass().getInterfaces()[0]);
+			return (ComplexType) getResolver().resolve(getBeanClass().getInterfaces()[0]);
 		}
-		return getBeanClass().getSuperclass() == null ? null : (ComplexType) BeanResolver.getInstance().resolve(getBeanClass().getSuperclass());
+		return getBeanClass().getSuperclass() == null ? null : (ComplexType) getResolver().resolve(getBeanClass().getSuperclass());
 	}
 
 	@Override
 	public BeanInstance<T> newInstance() {
-		// use the context class loader, the actual class may reside at a point that does not see the full class hierarchy
-		if (getBeanClass().isInterface())
-			return new BeanInstance<T>(this, Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), new Class<?> [] { getBeanClass(), SneakyEditableBeanInstance.class }, new BeanInterfaceInstance(this)));
-		else {
-			try {
-				return new BeanInstance<T>(this, getBeanClass().newInstance());
+		return new BeanInstance<T>(this, instantiate());
+	}
+	
+	/**
+	 * Creates a new unwrapped instance, the way to instantiate is resolved once and reused for subsequent calls
+	 */
+	@SuppressWarnings("unchecked")
+	T instantiate() {
+		try {
+			// use the context class loader, the actual class may reside at a point that does not see the full class hierarchy
+			if (getBeanClass().isInterface()) {
+				return newProxy(new BeanInterfaceInstance(this, concurrent));
 			}
-			catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
+			else {
+				Object instance = getConstructor().invokeExact();
+				return (T) instance;
+			}
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Creates an interface bean whose fields are loaded by the loader when their getter is first called, fields that are set explicitly are not loaded
+	 */
+	public T instantiateLazy(BeanFieldLoader<? super T> loader) {
+		if (!getBeanClass().isInterface()) {
+			throw new IllegalArgumentException("Only interface beans can be lazy: " + getBeanClass().getName());
+		}
+		try {
+			return newProxy(new BeanInterfaceInstance(this, concurrent, loader));
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	Object load(BeanFieldLoader<Object> loader, Object instance, String property) {
+		BeanLoadStatistics statistics = loadStatistics.get(property);
+		if (statistics == null) {
+			statistics = new BeanLoadStatistics();
+			BeanLoadStatistics existing = loadStatistics.putIfAbsent(property, statistics);
+			if (existing != null) {
+				statistics = existing;
 			}
-			catch (InstantiationException e) {
-				throw new RuntimeException(e);
+		}
+		long started = System.nanoTime();
+		try {
+			Object value = loader.load(instance, property);
+			statistics.loaded(System.nanoTime() - started);
+			return value;
+		}
+		catch (Exception e) {
+			statistics.failed(System.nanoTime() - started);
+			throw new RuntimeException("Could not load '" + property + "' of " + getBeanClass().getName(), e);
+		}
+	}
+	
+	/**
+	 * The lazy load statistics per property for all the lazy instances of this type
+	 */
+	public Map<String, BeanLoadStatistics> getLoadStatistics() {
+		return new TreeMap<String, BeanLoadStatistics>(loadStatistics);
+	}
+	
+	public void resetLoadStatistics() {
+		loadStatistics.clear();
+	}
+	
+	/**
+	 * Creates a read-only instance of an interface bean with the given values, the keys are the property names as derived from the getters
+	 */
+	T instantiateFrozen(Map<String, Object> values) {
+		if (!getBeanClass().isInterface()) {
+			throw new IllegalArgumentException("Only interface beans can be instantiated as frozen: " + getBeanClass().getName());
+		}
+		try {
+			return newProxy(new BeanInterfaceInstance(this, values));
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T newProxy(BeanInterfaceInstance handler) throws ReflectiveOperationException {
+		return (T) getProxyConstructor(Thread.currentThread().getContextClassLoader()).newInstance(handler);
+	}
+	
+	private MethodHandle getConstructor() throws ReflectiveOperationException {
+		if (constructor == null) {
+			// like Class.newInstance() we only use constructors that are accessible, private constructors are not forced open
+			Constructor<T> declared = getBeanClass().getDeclaredConstructor();
+			constructor = MethodHandles.lookup().unreflectConstructor(declared).asType(MethodType.methodType(Object.class));
+		}
+		return constructor;
+	}
+	
+	private Constructor<?> getProxyConstructor(ClassLoader loader) throws ReflectiveOperationException {
+		synchronized(proxyConstructors) {
+			SoftReference<Constructor<?>> reference = proxyConstructors.get(loader);
+			Constructor<?> proxyConstructor = reference == null ? null : reference.get();
+			if (proxyConstructor == null) {
+				proxyConstructor = Proxy.getProxyClass(loader, getBeanClass(), SneakyEditableBeanInstance.class).getConstructor(InvocationHandler.class);
+				if (!proxyConstructor.isAccessible()) {
+					proxyConstructor.setAccessible(true);
+				}
+				proxyConstructors.put(loader, new SoftReference<Constructor<?>>(proxyConstructor));
 			}
+			return proxyConstructor;
 		}
 	}
 	
@@ -819,9 +1301,146 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 			return getters.get(name);
 	}
 	
+	BeanAccessor getAccessor(String name) {
+		if (!getChildren().containsKey(name) && getSuperType() instanceof BeanType)
+			return ((BeanType<?>) getSuperType()).getAccessor(name);
+		else
+			return accessors.get(name);
+	}
+	
+	/**
+	 * The position of the property in the flattened list of all properties (including inherited ones) or -1 if it does not exist
+	 */
+	public int getSlot(String name) {
+		Integer slot = getSlots().indexes.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * A type is hot if any of its accessors was promoted, types that have not been introspected yet are never hot
+	 */
+	boolean isHot() {
+		Slots current = slots;
+		if (current != null) {
+			for (BeanAccessor accessor : current.accessors) {
+				if (accessor != null && accessor.isPromoted()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Makes sure the type is fully introspected and optionally promotes all its accessors
+	 */
+	void warmUp(boolean promote) {
+		Slots current = getSlots();
+		if (promote) {
+			for (BeanAccessor accessor : current.accessors) {
+				if (accessor != null) {
+					accessor.promote();
+				}
+			}
+		}
+	}
+	
+	Slots getSlots() {
+		if (slots == null) {
+			synchronized(this) {
+				if (slots == null) {
+					List<Element<?>> elements = new ArrayList<Element<?>>();
+					ComplexType superType = getSuperType();
+					if (superType instanceof BeanType) {
+						elements.addAll(Arrays.asList(((BeanType<?>) superType).getSlots().elements));
+					}
+					for (Element<?> element : this) {
+						boolean overridden = false;
+						// a property that is redefined keeps the slot it had in the parent
+						for (int i = 0; i < elements.size(); i++) {
+							if (elements.get(i).getName().equals(element.getName())) {
+								elements.set(i, element);
+								overridden = true;
+								break;
+							}
+						}
+						if (!overridden) {
+							elements.add(element);
+						}
+					}
+					slots = new Slots(this, elements.toArray(new Element<?>[elements.size()]));
+				}
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * A positional view on all the properties, this allows for traversal without any name-based lookups
+	 */
+	static class Slots {
+		final Element<?>[] elements;
+		final BeanAccessor[] accessors;
+		final boolean[] lists, complex;
+		// the actual java types of the properties, this is the target of the conversion when setting a value
+		final Class<?>[] actualTypes;
+		// the slots with the attributes first, the relative order is otherwise unchanged
+		final int[] attributesFirst;
+		// the slot of the primary key or -1 if there is none
+		final int primaryKey;
+		final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		// the slots by java property name (as derived from the getter) which can differ from the element name
+		final Map<String, Integer> properties = new HashMap<String, Integer>();
+
+		Slots(BeanType<?> type, Element<?>[] elements) {
+			this.elements = elements;
+			this.accessors = new BeanAccessor[elements.length];
+			this.lists = new boolean[elements.length];
+			this.complex = new boolean[elements.length];
+			this.actualTypes = new Class<?>[elements.length];
+			for (int i = 0; i < elements.length; i++) {
+				accessors[i] = type.getAccessor(elements[i].getName());
+				actualTypes[i] = type.getActualType(elements[i].getName());
+				lists[i] = elements[i].getType().isList(elements[i].getProperties());
+				complex[i] = elements[i].getType() instanceof ComplexType;
+				indexes.put(elements[i].getName(), i);
+				if (accessors[i] != null) {
+					properties.put(accessors[i].getPropertyName(), i);
+				}
+			}
+			this.attributesFirst = getAttributesFirst(elements);
+			this.primaryKey = getPrimaryKey(elements);
+		}
+
+		static int getPrimaryKey(Element<?>[] elements) {
+			for (int i = 0; i < elements.length; i++) {
+				if (Boolean.TRUE.equals(ValueUtils.getValue(PrimaryKeyProperty.getInstance(), elements[i].getProperties()))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		static int[] getAttributesFirst(Element<?>[] elements) {
+			int[] order = new int[elements.length];
+			int position = 0;
+			for (int i = 0; i < elements.length; i++) {
+				if (elements[i] instanceof Attribute) {
+					order[position++] = i;
+				}
+			}
+			for (int i = 0; i < elements.length; i++) {
+				if (!(elements[i] instanceof Attribute)) {
+					order[position++] = i;
+				}
+			}
+			return order;
+		}
+	}
+
 	public Annotation[] getAnnotations(String name) {
-		Method getter = getGetter(name);
-		return getter == null ? null : getter.getAnnotations();
+		BeanAccessor accessor = getAccessor(name);
+		return accessor == null ? null : accessor.getAnnotated().getAnnotations();
 	}
 	
 	@Override
@@ -856,16 +1475,16 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 
 	@Override
 	public Boolean isAttributeQualified(Value<?>... values) {
-		if (ValueUtils.contains(new AttributeQualifiedDefaultProperty(), values))
-			return ValueUtils.getValue(new AttributeQualifiedDefaultProperty(), values);
+		if (ValueUtils.contains(SharedValues.ATTRIBUTE_QUALIFIED_DEFAULT, values))
+			return (Boolean) ValueUtils.getValue(SharedValues.ATTRIBUTE_QUALIFIED_DEFAULT, values);
 		else
 			return isAttributeQualified(getBeanClass());
 	}
 
 	@Override
 	public Boolean isElementQualified(Value<?>... values) {
-		if (ValueUtils.contains(new ElementQualifiedDefaultProperty(), values))
-			return ValueUtils.getValue(new ElementQualifiedDefaultProperty(), values);
+		if (ValueUtils.contains(SharedValues.ELEMENT_QUALIFIED_DEFAULT, values))
+			return (Boolean) ValueUtils.getValue(SharedValues.ELEMENT_QUALIFIED_DEFAULT, values);
 		else
 			return isElementQualified(getBeanClass());
 	}
@@ -901,21 +1520,66 @@ public class BeanType<T> extends BaseType<BeanInstance<T>> implements ComplexTyp
 	
 	}
 
+	/**
+	 * For enums the properties (including the enumeration) are calculated once, the array is shared and must not be modified
+	 */
 	@Override
 	public Value<?>[] getProperties() {
 		if (!Enum.class.isAssignableFrom(getBeanClass())) {
 			return super.getProperties();
 		}
-		else if (values == null) {
+		else if (enumProperties == null) {
 			synchronized(this) {
-				if (values == null) {
-					values = new ArrayList<Value<?>>(Arrays.asList(super.getProperties()));
+				if (enumProperties == null) {
+					List<Value<?>> values = new ArrayList<Value<?>>(Arrays.asList(super.getProperties()));
 					// add enumeration constants
-					values.add(new ValueImpl<List<T>>(new EnumerationProperty<T>(), Arrays.asList(getBeanClass().getEnumConstants())));
+					values.add(new ValueImpl<List<T>>(new EnumerationProperty<T>(), Collections.unmodifiableList(Arrays.asList(getBeanClass().getEnumConstants()))));
+					enumProperties = values.toArray(new Value[values.size()]);
+				}
+			}
+		}
+		return enumProperties;
+	}
+	
+	/**
+	 * Looks up an enum constant by its name or its alias (@XmlEnumValue or @Field(alias)).
+	 * This returns null if the value is unknown or this is not an enum.
+	 * The table is used when converting strings, validation is done by the generic enumeration validator against the shared constant list from {@link #getProperties()}.
+	 * Once converted a value is always an actual constant so the aliases play no part there.
+	 */
+	public T getEnumConstant(String name) {
+		if (enumConstants == null) {
+			if (!Enum.class.isAssignableFrom(getBeanClass()) || getBeanClass().getEnumConstants() == null) {
+				return null;
+			}
+			synchronized(this) {
+				if (enumConstants == null) {
+					Map<String, T> constants = new HashMap<String, T>();
+					for (T constant : getBeanClass().getEnumConstants()) {
+						constants.put(((Enum<?>) constant).name(), constant);
+					}
+					// aliases never override actual names
+					for (T constant : getBeanClass().getEnumConstants()) {
+						try {
+							java.lang.reflect.Field field = getBeanClass().getField(((Enum<?>) constant).name());
+							XmlEnumValue enumValue = field.getAnnotation(XmlEnumValue.class);
+							if (enumValue != null && !constants.containsKey(enumValue.value())) {
+								constants.put(enumValue.value(), constant);
+							}
+							Field fieldAnnotation = field.getAnnotation(Field.class);
+							if (fieldAnnotation != null && !fieldAnnotation.alias().trim().isEmpty() && !constants.containsKey(fieldAnnotation.alias())) {
+								constants.put(fieldAnnotation.alias(), constant);
+							}
+						}
+						catch (NoSuchFieldException e) {
+							// ignore
+						}
+					}
+					enumConstants = constants;
 				}
 			}
 		}
-		return values.toArray(new Value[values.size()]);
+		return enumConstants.get(name);
 	}
 
 	@Override
@@ -0,0 +1,235 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import be.nabu.libs.property.api.Value;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * Estimates the retained heap of a resolved type model: the bean types, their elements and the property values they hold.
+ * Objects are only followed if they belong to the type model (be.nabu classes and the collections, arrays and strings they reference), shared infrastructure like loggers and classloaders is not counted.
+ * The sizes are estimates that assume a 64-bit jvm with compressed references.
+ */
+public class BeanTypeFootprint {
+
+	private static final int HEADER = 12, REFERENCE = 4, ALIGNMENT = 8;
+
+	private int types, elements, values;
+	private long valueReferences, estimatedBytes;
+
+	private Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	private Deque<Object> pending = new ArrayDeque<Object>();
+	private Map<Class<?>, ClassLayout> layouts = new HashMap<Class<?>, ClassLayout>();
+
+	public static BeanTypeFootprint calculate(Collection<?> roots) {
+		BeanTypeFootprint footprint = new BeanTypeFootprint();
+		for (Object root : roots) {
+			footprint.walk(root);
+		}
+		// don't keep the model alive through the report
+		footprint.visited = null;
+		footprint.layouts = null;
+		return footprint;
+	}
+
+	private void walk(Object root) {
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			Object object = pending.pop();
+			if (visited.add(object)) {
+				estimatedBytes += measure(object);
+			}
+		}
+	}
+
+	private void follow(Object object) {
+		if (object != null && !visited.contains(object)) {
+			pending.push(object);
+		}
+	}
+
+	private long measure(Object object) {
+		Class<?> clazz = object.getClass();
+		if (object instanceof BeanType) {
+			types++;
+		}
+		else if (object instanceof Element) {
+			elements++;
+			Value<?>[] properties = ((Element<?>) object).getProperties();
+			if (properties != null) {
+				valueReferences += properties.length;
+			}
+		}
+		else if (object instanceof Value) {
+			values++;
+		}
+		if (clazz.isArray()) {
+			int length = Array.getLength(object);
+			if (clazz.getComponentType().isPrimitive()) {
+				return align(HEADER + 4 + (long) length * primitiveSize(clazz.getComponentType()));
+			}
+			for (int i = 0; i < length; i++) {
+				follow(Array.get(object, i));
+			}
+			return align(HEADER + 4 + (long) length * REFERENCE);
+		}
+		else if (object instanceof String) {
+			return align(HEADER + REFERENCE + 8) + align(HEADER + 4 + ((String) object).length() * 2L);
+		}
+		// the internals of jdk collections may not be accessible, we estimate them from the outside
+		else if (object instanceof Map && clazz.getName().startsWith("java.")) {
+			Map<?, ?> map = (Map<?, ?>) object;
+			for (Map.Entry<?, ?> entry : new ArrayList<Map.Entry<?, ?>>(map.entrySet())) {
+				follow(entry.getKey());
+				follow(entry.getValue());
+			}
+			return align(HEADER + 5 * REFERENCE + 16) + align(HEADER + 4 + (long) Math.max(16, map.size() * 2) * REFERENCE) + map.size() * align(HEADER + 3 * REFERENCE + 4);
+		}
+		else if (object instanceof Collection && clazz.getName().startsWith("java.")) {
+			Collection<?> collection = (Collection<?>) object;
+			for (Object child : new ArrayList<Object>(collection)) {
+				follow(child);
+			}
+			return align(HEADER + 2 * REFERENCE + 8) + align(HEADER + 4 + (long) Math.max(10, collection.size()) * REFERENCE);
+		}
+		// metadata that is not part of the heap we want to measure
+		else if (object instanceof Class || object instanceof ClassLoader) {
+			return 0;
+		}
+		ClassLayout layout = getLayout(clazz);
+		// we only look inside our own classes, other objects (reflective members, method handles, boxed values...) are counted shallowly
+		if (clazz.getName().startsWith("be.nabu.") && !(object instanceof BeanResolver)) {
+			for (Field field : layout.references) {
+				try {
+					follow(field.get(object));
+				}
+				catch (Exception e) {
+					// can't follow it
+				}
+			}
+		}
+		else if (!clazz.getName().startsWith("java.") && !(object instanceof AccessibleObject)) {
+			// shared infrastructure like loggers
+			return 0;
+		}
+		return layout.size;
+	}
+
+	private ClassLayout getLayout(Class<?> clazz) {
+		ClassLayout layout = layouts.get(clazz);
+		if (layout == null) {
+			layout = new ClassLayout();
+			long size = HEADER;
+			boolean accessible = clazz.getName().startsWith("be.nabu.");
+			for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+				for (Field field : current.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						continue;
+					}
+					if (field.getType().isPrimitive()) {
+						size += primitiveSize(field.getType());
+					}
+					else {
+						size += REFERENCE;
+						if (accessible) {
+							try {
+								field.setAccessible(true);
+								layout.references.add(field);
+							}
+							catch (RuntimeException e) {
+								// not accessible
+							}
+						}
+					}
+				}
+			}
+			layout.size = align(size);
+			layouts.put(clazz, layout);
+		}
+		return layout;
+	}
+
+	private static int primitiveSize(Class<?> clazz) {
+		if (clazz == long.class || clazz == double.class) {
+			return 8;
+		}
+		else if (clazz == int.class || clazz == float.class) {
+			return 4;
+		}
+		else if (clazz == short.class || clazz == char.class) {
+			return 2;
+		}
+		return 1;
+	}
+
+	private static long align(long size) {
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	private static class ClassLayout {
+		private long size;
+		private List<Field> references = new ArrayList<Field>();
+	}
+
+	public int getTypes() {
+		return types;
+	}
+
+	public int getElements() {
+		return elements;
+	}
+
+	/**
+	 * The amount of distinct property values in the model
+	 */
+	public int getValues() {
+		return values;
+	}
+
+	/**
+	 * The amount of times elements reference a property value, compared to the distinct values this shows how much is shared
+	 */
+	public long getValueReferences() {
+		return valueReferences;
+	}
+
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "types: " + types + ", elements: " + elements + ", property values: " + values + " distinct for " + valueReferences + " references"
+			+ ", estimated retained bytes: " + estimatedBytes;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import be.nabu.libs.types.CollectionHandlerFactory;
+import be.nabu.libs.types.TypeUtils;
+import be.nabu.libs.types.api.CollectionHandlerProvider;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+
+/**
+ * Shared helpers to read beans and complex content by slot, used by the tools that walk bean graphs (diff, equality, paths, indexes...)
+ */
+class BeanUtils {
+
+	private BeanUtils() {
+		// static access only
+	}
+	
+	/**
+	 * The children of the type in slot order, for bean types these are the slots of the type
+	 */
+	static Element<?>[] getElements(ComplexType type) {
+		if (type instanceof BeanType) {
+			return ((BeanType<?>) type).getSlots().elements;
+		}
+		Collection<Element<?>> children = TypeUtils.getAllChildren(type);
+		return children.toArray(new Element<?>[children.size()]);
+	}
+	
+	/**
+	 * Reads the value in the slot, beans are read through their accessor, other objects must be complex content
+	 */
+	static Object read(Object object, ComplexType type, Element<?>[] elements, int slot) {
+		if (object instanceof ComplexContent || !(type instanceof BeanType)) {
+			return ((ComplexContent) object).get(elements[slot].getName());
+		}
+		BeanAccessor accessor = ((BeanType<?>) type).getSlots().accessors[slot];
+		try {
+			return accessor.get(object);
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Can not read '" + elements[slot].getName() + "' from " + object.getClass() + " => " + accessor, e);
+		}
+	}
+	
+	/**
+	 * A list view of a list value (list, array, iterable or anything the collection handler supports), null is an empty list
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static List<?> toList(Object value) {
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		else if (value instanceof List) {
+			return (List<?>) value;
+		}
+		else if (value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+		else if (value.getClass().isArray()) {
+			List<Object> list = new ArrayList<Object>();
+			for (int i = 0; i < Array.getLength(value); i++) {
+				list.add(Array.get(value, i));
+			}
+			return list;
+		}
+		else if (value instanceof Iterable) {
+			List<Object> list = new ArrayList<Object>();
+			for (Object item : (Iterable<?>) value) {
+				list.add(item);
+			}
+			return list;
+		}
+		CollectionHandlerProvider handler = StreamingCollectionHandlerProvider.getValueHandler(CollectionHandlerFactory.getInstance().getHandler(), value);
+		if (handler == null) {
+			throw new IllegalArgumentException("Can not use " + value.getClass() + " as a list");
+		}
+		return new ArrayList<Object>(handler.getAsCollection(value));
+	}
+	
+	/**
+	 * The bean wrapped by a bean instance, other values are returned as they are
+	 */
+	static Object unwrap(Object value) {
+		return value instanceof BeanInstance ? ((BeanInstance<?>) value).getUnwrapped() : value;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+/**
+ * Receives the events of a {@link BeanTraverser}.
+ * The cursor is reused for every event, copy what you need before returning.
+ */
+public interface BeanVisitor {
+	
+	/**
+	 * A complex value (including the root) is entered, return false to skip its children, in that case leave() is not called either
+	 */
+	public boolean enter(BeanCursor cursor);
+	
+	public void leave(BeanCursor cursor);
+	
+	/**
+	 * A simple value or a complex value that is null
+	 */
+	public void value(BeanCursor cursor);
+	
+	/**
+	 * A non-null list is entered, the items are reported as separate events with their index, return false to skip the items
+	 */
+	public default boolean enterList(BeanCursor cursor) {
+		return true;
+	}
+	
+	public default void leaveList(BeanCursor cursor) {
+		// do nothing
+	}
+	
+	/**
+	 * The complex value is already being visited higher up in the graph, it is not entered again
+	 */
+	public default void cycle(BeanCursor cursor) {
+		// do nothing
+	}
+}
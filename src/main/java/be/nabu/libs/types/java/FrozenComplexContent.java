@@ -0,0 +1,124 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.nabu.libs.types.ParsedPath;
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.api.ComplexType;
+
+/**
+ * A read-only snapshot of complex content (usually a class bean), complex children are frozen as well and lists are read-only.
+ * All state is final so it can be shared between threads without synchronization.
+ */
+public class FrozenComplexContent implements ComplexContent {
+
+	private final ComplexType type;
+	private final Map<String, Object> values;
+	
+	/**
+	 * The cached structural hash, 0 if it has not been calculated yet
+	 */
+	private volatile int hash;
+	
+	FrozenComplexContent(ComplexType type, Map<String, Object> values) {
+		this.type = type;
+		this.values = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(values));
+	}
+	
+	@Override
+	public ComplexType getType() {
+		return type;
+	}
+
+	@Override
+	public void set(String path, Object value) {
+		throw new UnsupportedOperationException("Can not update '" + path + "', the instance of " + type.getName() + " is frozen");
+	}
+
+	@Override
+	public Object get(String path) {
+		return get(ParsedPath.parse(path));
+	}
+	
+	private Object get(ParsedPath path) {
+		String name = path.getName().startsWith("@") ? path.getName().substring(1) : path.getName();
+		Object value = values.get(name);
+		if (value != null && path.getIndex() != null) {
+			if (!(value instanceof List)) {
+				throw new IllegalArgumentException("The field " + name + " is not a list");
+			}
+			int index;
+			try {
+				index = Integer.parseInt(path.getIndex());
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid index '" + path.getIndex() + "' for the field " + name, e);
+			}
+			if (index < 0) {
+				throw new IllegalArgumentException("Invalid index '" + path.getIndex() + "' for the field " + name);
+			}
+			// like a bean list, an index beyond the end simply has no value
+			value = index < ((List<?>) value).size() ? ((List<?>) value).get(index) : null;
+		}
+		if (value == null || path.getChildPath() == null) {
+			// dates and calendars are shared by the snapshot, every read gets its own copy
+			return BeanFreezer.copy(value);
+		}
+		else if (value instanceof ComplexContent) {
+			return ((ComplexContent) value).get(path.getChildPath().toString());
+		}
+		else {
+			return new BeanInstance<Object>(value).get(path.getChildPath().toString());
+		}
+	}
+
+	/**
+	 * The frozen values by element name
+	 */
+	Map<String, Object> getValues() {
+		return values;
+	}
+	
+	Integer getHash() {
+		return hash == 0 ? null : hash;
+	}
+	
+	void setHash(int hash) {
+		this.hash = hash;
+	}
+	
+	@Override
+	public boolean equals(Object object) {
+		return object instanceof ComplexContent && BeanEquality.DEEP.equals(this, object);
+	}
+	
+	@Override
+	public int hashCode() {
+		return BeanEquality.DEEP.hashCode(this);
+	}
+	
+	@Override
+	public String toString() {
+		return "Frozen " + type.getName() + ": " + values;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import be.nabu.libs.property.api.Property;
+import be.nabu.libs.property.api.Value;
+import be.nabu.libs.types.base.ValueImpl;
+import be.nabu.libs.types.properties.AttributeQualifiedDefaultProperty;
+import be.nabu.libs.types.properties.CollectionHandlerProviderProperty;
+import be.nabu.libs.types.properties.ElementQualifiedDefaultProperty;
+import be.nabu.libs.types.properties.FormatProperty;
+import be.nabu.libs.types.properties.LengthProperty;
+import be.nabu.libs.types.properties.MaxInclusiveProperty;
+import be.nabu.libs.types.properties.MaxLengthProperty;
+import be.nabu.libs.types.properties.MinInclusiveProperty;
+import be.nabu.libs.types.properties.MinLengthProperty;
+import be.nabu.libs.types.properties.PatternProperty;
+import be.nabu.libs.types.properties.QualifiedProperty;
+import be.nabu.libs.types.properties.TimeBlockProperty;
+
+/**
+ * The property values of bean elements are largely the same across all the elements of all the types (nillable false, qualified false,...).
+ * Instead of creating new properties and values for each element, they are interned here and shared.
+ * The shared values must never be modified.
+ * Each resolver has its own values so values of types loaded by a plugin classloader do not outlive the resolver that resolved them.
+ */
+@SuppressWarnings("rawtypes")
+final class SharedValues {
+
+	static final QualifiedProperty QUALIFIED = new QualifiedProperty();
+	static final LengthProperty LENGTH = new LengthProperty();
+	static final MinLengthProperty MIN_LENGTH = new MinLengthProperty();
+	static final MaxLengthProperty MAX_LENGTH = new MaxLengthProperty();
+	static final PatternProperty PATTERN = new PatternProperty();
+	static final FormatProperty FORMAT = new FormatProperty();
+	static final TimeBlockProperty TIME_BLOCK = new TimeBlockProperty();
+	static final MinInclusiveProperty MIN_INCLUSIVE = new MinInclusiveProperty();
+	static final MaxInclusiveProperty MAX_INCLUSIVE = new MaxInclusiveProperty();
+	static final AttributeQualifiedDefaultProperty ATTRIBUTE_QUALIFIED_DEFAULT = new AttributeQualifiedDefaultProperty();
+	static final ElementQualifiedDefaultProperty ELEMENT_QUALIFIED_DEFAULT = new ElementQualifiedDefaultProperty();
+	static final CollectionHandlerProviderProperty COLLECTION_HANDLER_PROVIDER = new CollectionHandlerProviderProperty();
+
+	private Map<Key, Value<?>> values = new ConcurrentHashMap<Key, Value<?>>();
+
+	@SuppressWarnings("unchecked")
+	<T> Value<T> get(Property<T> property, T value) {
+		if (value == null) {
+			return new ValueImpl<T>(property, value);
+		}
+		Key key = new Key(property, value);
+		Value<T> shared = (Value<T>) values.get(key);
+		if (shared == null) {
+			shared = new ValueImpl<T>(property, value);
+			Value<T> existing = (Value<T>) values.putIfAbsent(key, shared);
+			if (existing != null) {
+				shared = existing;
+			}
+		}
+		return shared;
+	}
+
+	int size() {
+		return values.size();
+	}
+	
+	/**
+	 * Elements that were already built keep their values, only new elements will intern again
+	 */
+	void clear() {
+		values.clear();
+	}
+
+	private static final class Key {
+		private Property<?> property;
+		private Object value;
+
+		public Key(Property<?> property, Object value) {
+			this.property = property;
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(property) + value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) object;
+			// properties are singletons, values must be of the exact same class (e.g. an integer 1 is not the same as a long 1)
+			return property == other.property && value.getClass().equals(other.value.getClass()) && value.equals(other.value);
+		}
+	}
+}
@@ -17,6 +17,7 @@
 
 package be.nabu.libs.types.java;
 
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.util.Iterator;
 
@@ -67,6 +68,11 @@ public class SimpleBeanType<T, S> extends BeanType<T> implements SimpleType<S> {
 	public BeanInstance<T> newInstance() {
 		return beanType.newInstance();
 	}
+	
+	@Override
+	T instantiate() {
+		return beanType.instantiate();
+	}
 
 	@Override
 	public void setCollectionHandler(CollectionHandler handler) {
@@ -92,6 +98,11 @@ public class SimpleBeanType<T, S> extends BeanType<T> implements SimpleType<S> {
 	public Class<T> getBeanClass() {
 		return beanType.getBeanClass();
 	}
+	
+	@Override
+	public BeanResolver getResolver() {
+		return beanType.getResolver();
+	}
 
 	@Override
 	public boolean isSimpleType() {
@@ -99,12 +110,12 @@ public class SimpleBeanType<T, S> extends BeanType<T> implements SimpleType<S> {
 	}
 
 	@Override
-	protected String getIndicatedName(Method method) {
+	protected String getIndicatedName(AnnotatedElement method) {
 		return beanType.getIndicatedName(method);
 	}
 
 	@Override
-	protected String getNamespace(Method method) {
+	protected String getNamespace(AnnotatedElement method) {
 		return beanType.getNamespace(method);
 	}
 
@@ -114,12 +125,12 @@ public class SimpleBeanType<T, S> extends BeanType<T> implements SimpleType<S> {
 	}
 
 	@Override
-	protected boolean isNillable(Method method) {
+	protected boolean isNillable(AnnotatedElement method) {
 		return beanType.isNillable(method);
 	}
 
 	@Override
-	protected boolean isList(Method method) {
+	protected boolean isList(AnnotatedElement method) {
 		return beanType.isList(method);
 	}
 
@@ -129,7 +140,7 @@ public class SimpleBeanType<T, S> extends BeanType<T> implements SimpleType<S> {
 	}
 
 	@Override
-	protected boolean isAttribute(Method method) {
+	protected boolean isAttribute(AnnotatedElement method) {
 		return beanType.isAttribute(method);
 	}
 
@@ -154,9 +165,36 @@ public class SimpleBeanType<T, S> extends BeanType<T> implements SimpleType<S> {
 			return beanType.getGetter(name);
 	}
 
+	@Override
+	BeanAccessor getAccessor(String name) {
+		if (name.equals(SIMPLE_TYPE_VALUE))
+			return beanType.getAccessor(beanType.valueElement.getName());
+		else
+			return beanType.getAccessor(name);
+	}
+
+	@Override
+	Element<?> getValueElement() {
+		return beanType.getValueElement();
+	}
+
+	@Override
+	public boolean isFieldAccess() {
+		return beanType.isFieldAccess();
+	}
+
 	@Override
 	public String getId() {
 		return beanType.getId();
 	}
 	
+	@Override
+	boolean isHot() {
+		return beanType.isHot();
+	}
+	
+	@Override
+	void warmUp(boolean promote) {
+		beanType.warmUp(promote);
+	}
 }
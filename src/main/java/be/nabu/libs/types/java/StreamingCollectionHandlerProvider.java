@@ -0,0 +1,253 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+import be.nabu.libs.types.api.CollectionHandler;
+import be.nabu.libs.types.api.CollectionHandlerProvider;
+
+/**
+ * Allows bean properties of type Iterable, Iterator or Stream to be used as lists that are consumed lazily.
+ * This means a bean can expose a huge list (e.g. rows from a database) without materializing it, as long as the consumer only iterates over it once.
+ * An iterator or stream can only be consumed once: the first access by index (or the size of the collection view) buffers the remainder of it, later accesses are served from that buffer.
+ * An iterable is not buffered, each access by index iterates it up to that item and each size iterates it completely.
+ * Only properties that are declared as exactly Iterable, Iterator or Stream are streaming, subtypes (e.g. a Path which is an Iterable of paths) are not.
+ * The lists can not be modified.
+ */
+@SuppressWarnings("rawtypes")
+public class StreamingCollectionHandlerProvider implements CollectionHandlerProvider<Object, Integer> {
+
+	private static StreamingCollectionHandlerProvider instance = new StreamingCollectionHandlerProvider();
+	
+	// the state of single use sources, the state does not reference the source so it can still be collected
+	private static Map<Object, Source> sources = new WeakHashMap<Object, Source>();
+	
+	public static StreamingCollectionHandlerProvider getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Looks up the provider in the collection handler and falls back to this one for the streaming types it does not know
+	 */
+	static CollectionHandlerProvider getHandler(CollectionHandler handler, Class<?> clazz) {
+		CollectionHandlerProvider provider = handler.getHandler(clazz);
+		return provider == null && isStreaming(clazz) ? instance : provider;
+	}
+	
+	/**
+	 * Looks up the provider for the runtime value of a list property, the value of a streaming property is usually a subtype of the declared type
+	 */
+	static CollectionHandlerProvider getValueHandler(CollectionHandler handler, Object value) {
+		CollectionHandlerProvider provider = handler.getHandler(value.getClass());
+		return provider == null && isStreamingValue(value) ? instance : provider;
+	}
+	
+	public static boolean isStreaming(Class<?> clazz) {
+		return Iterable.class.equals(clazz) || Iterator.class.equals(clazz) || Stream.class.equals(clazz);
+	}
+	
+	static boolean isStreamingValue(Object value) {
+		return !(value instanceof Collection) && (value instanceof Iterable || value instanceof Iterator || value instanceof Stream);
+	}
+	
+	/**
+	 * Returns a lazy iterator over the streaming value
+	 */
+	static Iterator<?> iterator(Object value) {
+		if (value instanceof Iterable) {
+			return ((Iterable<?>) value).iterator();
+		}
+		else if (value instanceof Iterator) {
+			return (Iterator<?>) value;
+		}
+		else if (value instanceof Stream) {
+			return ((Stream<?>) value).iterator();
+		}
+		throw new IllegalArgumentException("Not a streaming value: " + value.getClass());
+	}
+	
+	@Override
+	public Class<?> getComponentType(Type type) {
+		if (type instanceof ParameterizedType) {
+			Type component = ((ParameterizedType) type).getActualTypeArguments()[0];
+			if (component instanceof WildcardType) {
+				component = ((WildcardType) component).getUpperBounds()[0];
+			}
+			if (component instanceof ParameterizedType) {
+				component = ((ParameterizedType) component).getRawType();
+			}
+			if (component instanceof Class) {
+				return (Class<?>) component;
+			}
+		}
+		throw new IllegalArgumentException("Can not determine the component type of: " + type);
+	}
+
+	@Override
+	public Integer unmarshalIndex(String index, Object collection) {
+		return Integer.parseInt(index);
+	}
+
+	@Override
+	public Object create(Class<? extends Object> clazz, int size) {
+		if (clazz.isAssignableFrom(ArrayList.class)) {
+			return new ArrayList<Object>(size);
+		}
+		throw new UnsupportedOperationException("Can not create an instance of streaming list " + clazz);
+	}
+
+	@Override
+	public Object set(Object collection, Integer index, Object value) {
+		throw new UnsupportedOperationException("Streaming lists can not be modified");
+	}
+
+	@Override
+	public Object get(Object collection, Integer index) {
+		if (collection instanceof Iterable) {
+			int position = 0;
+			for (Object item : (Iterable<?>) collection) {
+				if (position++ == index) {
+					return item;
+				}
+			}
+			return null;
+		}
+		List<Object> buffer = buffer(collection, false);
+		return index >= 0 && index < buffer.size() ? buffer.get(index) : null;
+	}
+
+	@Override
+	public Collection<?> getAsCollection(Object collection) {
+		return collection instanceof LazyCollection ? (Collection<?>) collection : new LazyCollection(collection);
+	}
+
+	@Override
+	public Collection<Integer> getIndexes(Object collection) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		int size = getAsCollection(collection).size();
+		for (int i = 0; i < size; i++) {
+			indexes.add(i);
+		}
+		return indexes;
+	}
+
+	@Override
+	public Class<Object> getCollectionClass() {
+		return Object.class;
+	}
+
+	@Override
+	public Class<Integer> getIndexClass() {
+		return Integer.class;
+	}
+	
+	private static Source getSource(Object source) {
+		synchronized(sources) {
+			Source state = sources.get(source);
+			if (state == null) {
+				state = new Source();
+				sources.put(source, state);
+			}
+			return state;
+		}
+	}
+	
+	/**
+	 * Reads the remainder of a single use source once, the same buffer is returned for all later calls
+	 * A source that was already iterated by a collection view can only be read if it is not strict
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Object> buffer(Object source, boolean strict) {
+		Source state = getSource(source);
+		// only this source is locked while it is read, reading it can take a while
+		synchronized(state) {
+			if (state.buffer == null) {
+				if (strict && state.consumed) {
+					throw new IllegalStateException("The streaming list has already been consumed");
+				}
+				List<Object> buffer = new ArrayList<Object>();
+				for (Iterator<Object> iterator = (Iterator<Object>) iterator(source); iterator.hasNext(); ) {
+					buffer.add(iterator.next());
+				}
+				state.buffer = buffer;
+			}
+			return state.buffer;
+		}
+	}
+	
+	/**
+	 * Whether a single use source has been iterated directly and whatever was buffered, shared by all the views on the source
+	 */
+	private static class Source {
+		private boolean consumed;
+		private List<Object> buffer;
+	}
+	
+	/**
+	 * A read-only collection view that only iterates the source when asked, single use sources are buffered if they need to be read more than once
+	 */
+	private static class LazyCollection extends AbstractCollection<Object> {
+		private Object source;
+		
+		LazyCollection(Object source) {
+			this.source = source;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public Iterator<Object> iterator() {
+			if (source instanceof Iterable) {
+				return ((Iterable<Object>) source).iterator();
+			}
+			Source state = getSource(source);
+			synchronized(state) {
+				if (state.buffer != null) {
+					return state.buffer.iterator();
+				}
+				else if (state.consumed) {
+					throw new IllegalStateException("The streaming list has already been consumed");
+				}
+				state.consumed = true;
+			}
+			return (Iterator<Object>) StreamingCollectionHandlerProvider.iterator(source);
+		}
+
+		@Override
+		public int size() {
+			if (source instanceof Iterable) {
+				int size = 0;
+				for (Iterator<?> iterator = ((Iterable<?>) source).iterator(); iterator.hasNext(); iterator.next()) {
+					size++;
+				}
+				return size;
+			}
+			return buffer(source, true).size();
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class AccessorTest extends TestCase {
+	
+	public void testWrongTarget() throws Exception {
+		for (boolean promoted : new boolean[] { false, true }) {
+			try {
+				accessor("count", promoted).get("not a counter");
+				fail("The target is not a counter");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	public void testWrongValue() throws Exception {
+		for (boolean promoted : new boolean[] { false, true }) {
+			try {
+				accessor("count", promoted).set(new Counter(), "1");
+				fail("A string can not be set in an int");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+			try {
+				accessor("count", promoted).set(new Counter(), 1L);
+				fail("A long can not be narrowed to an int");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	public void testNullPrimitive() throws Exception {
+		for (boolean promoted : new boolean[] { false, true }) {
+			try {
+				accessor("count", promoted).set(new Counter(), null);
+				fail("A primitive can not be null");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	public void testWidening() throws Exception {
+		for (boolean promoted : new boolean[] { false, true }) {
+			BeanAccessor accessor = accessor("total", promoted);
+			Counter counter = new Counter();
+			accessor.set(counter, 5);
+			assertEquals(5L, counter.getTotal());
+			accessor.set(counter, (byte) 2);
+			assertEquals(2L, counter.getTotal());
+			assertEquals(2L, accessor.get(counter));
+		}
+	}
+	
+	public void testThreshold() throws Exception {
+		BeanType<Counter> type = new BeanType<Counter>(Counter.class);
+		type.setPromotionThreshold(3);
+		BeanAccessor accessor = type.getAccessor("count");
+		Counter counter = new Counter();
+		accessor.get(counter);
+		accessor.get(counter);
+		assertFalse(accessor.isPromoted());
+		accessor.get(counter);
+		assertTrue(accessor.isPromoted());
+		assertTrue(type.isHot());
+	}
+	
+	public void testFieldAccess() throws Exception {
+		BeanType<Counter> type = new BeanType<Counter>(Counter.class, false, true);
+		Counter counter = new Counter();
+		BeanInstance<Counter> instance = new BeanInstance<Counter>(type, counter);
+		Counter.calls.set(0);
+		instance.set("count", 3);
+		assertEquals(3, instance.get("count"));
+		instance.set("total", 4L);
+		assertEquals(4L, instance.get("total"));
+		assertEquals("fixed", instance.get("id"));
+		// the getters and setters are never called
+		assertEquals(0, Counter.calls.get());
+		assertEquals(3, counter.count);
+		// direct field access does not make the type hot
+		assertFalse(type.isHot());
+		
+		BeanAccessor accessor = type.getAccessor("id");
+		assertFalse(accessor.isSettable());
+		try {
+			accessor.set(counter, "other");
+			fail("The field is read-only");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	private static BeanAccessor accessor(String name, boolean promoted) {
+		BeanType<Counter> type = new BeanType<Counter>(Counter.class);
+		// never promote because of traffic
+		type.setPromotionThreshold(-1);
+		BeanAccessor accessor = type.getAccessor(name);
+		if (promoted) {
+			accessor.promote();
+			assertTrue(accessor.isPromoted());
+		}
+		else {
+			assertFalse(accessor.isPromoted());
+		}
+		return accessor;
+	}
+	
+	public static class Counter {
+		static AtomicInteger calls = new AtomicInteger();
+		
+		private int count;
+		private long total;
+		private final String id = new String("fixed");
+		
+		public int getCount() {
+			calls.incrementAndGet();
+			return count;
+		}
+		public void setCount(int count) {
+			calls.incrementAndGet();
+			this.count = count;
+		}
+		public long getTotal() {
+			calls.incrementAndGet();
+			return total;
+		}
+		public void setTotal(long total) {
+			calls.incrementAndGet();
+			this.total = total;
+		}
+		public String getId() {
+			calls.incrementAndGet();
+			return id;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import junit.framework.TestCase;
+
+public class AtomicTest extends TestCase {
+
+	public void testCompareAndSet() {
+		BeanInstance<Counter> instance = newCounter();
+		instance.set("count", 1);
+		// numbers are compared by value
+		assertTrue(instance.compareAndSet("count", 1L, 2));
+		assertFalse(instance.compareAndSet("count", 1, 3));
+		assertEquals(2, instance.get("count"));
+		assertTrue(instance.compareAndSet("name", null, "first"));
+		assertFalse(instance.compareAndSet("name", null, "second"));
+		assertEquals("first", instance.get("name"));
+	}
+	
+	public void testGetAndUpdate() {
+		BeanInstance<Counter> instance = newCounter();
+		instance.set("name", "a");
+		Object previous = instance.getAndUpdate("name", new UnaryOperator<Object>() {
+			@Override
+			public Object apply(Object current) {
+				return current + "b";
+			}
+		});
+		assertEquals("a", previous);
+		assertEquals("ab", instance.get("name"));
+	}
+	
+	public void testConcurrentAdd() throws Exception {
+		final BeanInstance<Counter> instance = newCounter();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (int j = 0; j < 1000; j++) {
+							instance.getAndAdd("count", 1);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertEquals(4000, instance.get("count"));
+	}
+	
+	public void testClassBean() {
+		BeanInstance<TraverserTest.Node> instance = new BeanInstance<TraverserTest.Node>(new TraverserTest.Node());
+		assertTrue(instance.compareAndSet("name", null, "root"));
+		assertFalse(instance.compareAndSet("name", null, "other"));
+		assertEquals("root", instance.getUnwrapped().getName());
+	}
+	
+	private BeanInstance<Counter> newCounter() {
+		BeanType<Counter> type = new BeanType<Counter>(Counter.class);
+		type.setConcurrent(true);
+		return type.newInstance();
+	}
+	
+	public static interface Counter {
+		public Integer getCount();
+		public void setCount(Integer count);
+		public String getName();
+		public void setName(String name);
+	}
+}
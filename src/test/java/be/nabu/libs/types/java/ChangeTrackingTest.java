@@ -0,0 +1,95 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.UnaryOperator;
+
+import junit.framework.TestCase;
+
+public class ChangeTrackingTest extends TestCase {
+
+	private BeanResolver resolver = new BeanResolver();
+	
+	@SuppressWarnings("unchecked")
+	private <T> BeanType<T> tracked(Class<T> clazz) {
+		BeanType<T> type = (BeanType<T>) resolver.resolve(clazz);
+		type.setTrackChanges(true);
+		type.setJournalChanges(true);
+		return type;
+	}
+	
+	public void testChanges() {
+		BeanInstance<Parent> instance = tracked(Parent.class).newInstance();
+		assertEquals(Collections.emptyList(), instance.getChangedPaths());
+		instance.set("name", "bob");
+		assertEquals(Arrays.asList("name"), instance.getChangedPaths());
+		instance.resetChanges();
+		assertEquals(Collections.emptyList(), instance.getChangedPaths());
+		// setting the same value is not a change
+		instance.set("name", "bob");
+		assertEquals(Collections.emptyList(), instance.getChangedPaths());
+	}
+	
+	public void testJournal() {
+		BeanInstance<Parent> instance = tracked(Parent.class).newInstance();
+		instance.set("name", "bob");
+		instance.resetChanges();
+		instance.set("name", "alice");
+		instance.set("name", "eve");
+		// the journal keeps the value at the last reset
+		assertEquals("bob", instance.getOriginalValues().get("name"));
+	}
+	
+	public void testNestedChanges() {
+		tracked(Child.class);
+		BeanInstance<Parent> instance = tracked(Parent.class).newInstance();
+		instance.set("child/value", "a");
+		instance.resetChanges();
+		instance.set("child/value", "b");
+		assertEquals(Arrays.asList("child/value"), instance.getChangedPaths());
+		assertEquals("a", instance.getOriginalValues().get("child/value"));
+	}
+	
+	public void testConcurrent() {
+		BeanType<Parent> type = tracked(Parent.class);
+		type.setConcurrent(true);
+		BeanInstance<Parent> instance = type.newInstance();
+		instance.getAndUpdate("name", new UnaryOperator<Object>() {
+			@Override
+			public Object apply(Object current) {
+				return "x";
+			}
+		});
+		assertEquals(Arrays.asList("name"), instance.getChangedPaths());
+	}
+	
+	public static interface Parent {
+		public String getName();
+		public void setName(String name);
+		public Child getChild();
+		public void setChild(Child child);
+	}
+	
+	public static interface Child {
+		public String getValue();
+		public void setValue(String value);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.nabu.libs.types.java.FreezerTest.Address;
+import be.nabu.libs.types.java.FreezerTest.Customer;
+import junit.framework.TestCase;
+
+public class CopyOnWriteTest extends TestCase {
+
+	public void testStructuralSharing() {
+		Customer customer = FreezerTest.newCustomer();
+		Customer updated = BeanCopyOnWrite.with(customer, "name", "alice");
+		assertEquals("bob", customer.getName());
+		assertEquals("alice", updated.getName());
+		assertSame(customer.getAddress(), updated.getAddress());
+	}
+	
+	public void testFrozen() {
+		Customer frozen = BeanFreezer.freezeBean(FreezerTest.newCustomer());
+		Customer updated = BeanCopyOnWrite.with(frozen, "address/city", "Antwerp");
+		assertTrue(BeanFreezer.isFrozen(updated));
+		assertEquals("Antwerp", updated.getAddress().getCity());
+		assertEquals("Ghent", frozen.getAddress().getCity());
+		assertEquals("bob", updated.getName());
+		
+		updated = BeanCopyOnWrite.with(frozen, "addresses[0]/city", "Leuven");
+		assertEquals("Leuven", updated.getAddresses().get(0).getCity());
+		assertEquals("Brussels", frozen.getAddresses().get(0).getCity());
+	}
+	
+	public void testLazy() {
+		final AtomicInteger loads = new AtomicInteger();
+		Customer lazy = new BeanType<Customer>(Customer.class).instantiateLazy(new BeanFieldLoader<Customer>() {
+			@Override
+			public Object load(Customer bean, String property) {
+				loads.incrementAndGet();
+				if (property.equals("address")) {
+					Address address = new Address();
+					address.setCity("Lazy");
+					return address;
+				}
+				return null;
+			}
+		});
+		lazy.setName("bob");
+		assertNull(lazy.getTags());
+		assertEquals(1, loads.get());
+		
+		Customer updated = BeanCopyOnWrite.with(lazy, "name", "alice");
+		// fields that were not loaded yet can still be loaded in the copy
+		assertEquals("Lazy", updated.getAddress().getCity());
+		assertEquals(2, loads.get());
+		// fields that were already loaded are not loaded again
+		assertNull(updated.getTags());
+		assertEquals(2, loads.get());
+	}
+	
+	public void testReadOnlyState() {
+		Account account = new Account();
+		account.assignId("a1");
+		account.setName("bob");
+		Account updated = BeanCopyOnWrite.with(account, "name", "alice");
+		assertEquals("a1", updated.getId());
+		assertEquals("alice", updated.getName());
+		assertEquals("bob", account.getName());
+	}
+	
+	public static class Account {
+		private String id, name;
+		
+		public String getId() {
+			return id;
+		}
+		void assignId(String id) {
+			this.id = id;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import be.nabu.libs.types.api.annotation.Field;
+import be.nabu.libs.types.java.BeanChange.ChangeType;
+import junit.framework.TestCase;
+
+public class DiffTest extends TestCase {
+
+	public void testDiff() {
+		Order original = newOrder("a", "b");
+		Order updated = newOrder("a", "b");
+		updated.setNote("urgent");
+		updated.getLines().get(1).setQuantity(5);
+		
+		List<BeanChange> changes = BeanDiff.diff(original, updated);
+		assertEquals(2, changes.size());
+		assertEquals(ChangeType.CHANGED, changes.get(0).getType());
+		assertEquals("note", changes.get(0).getPath());
+		assertEquals("lines[1]/quantity", changes.get(1).getPath());
+		assertEquals(5, changes.get(1).getNewValue());
+		
+		assertTrue(BeanDiff.diff(original, newOrder("a", "b")).isEmpty());
+	}
+	
+	public void testApply() {
+		Order updated = newOrder("b", "c", "a");
+		updated.getLines().get(0).setQuantity(7);
+		List<BeanChange> changes = BeanDiff.diff(newOrder("a", "b"), updated);
+		
+		Order target = BeanDiff.apply(newOrder("a", "b"), changes);
+		assertTrue(BeanEquality.DEEP.equals(updated, target));
+	}
+	
+	public void testApplyFrozen() {
+		Order updated = newOrder("b", "a");
+		updated.setNote("urgent");
+		updated.getLines().get(0).setQuantity(7);
+		updated.getLines().get(1).setQuantity(8);
+		List<BeanChange> changes = BeanDiff.diff(newOrder("a", "b"), updated);
+		
+		Order frozen = BeanFreezer.freezeBean(newOrder("a", "b"));
+		Order patched = BeanDiff.apply(frozen, changes);
+		assertTrue(BeanFreezer.isFrozen(patched));
+		assertTrue(BeanEquality.DEEP.equals(updated, patched));
+		// the original snapshot is not affected
+		assertTrue(BeanEquality.DEEP.equals(newOrder("a", "b"), frozen));
+	}
+	
+	public void testDifferentBase() {
+		List<BeanChange> changes = BeanDiff.diff(newOrder("a", "b"), newOrder("b", "a"));
+		try {
+			BeanDiff.apply(newOrder("a", "c"), changes);
+			fail("The patch was calculated against a different list");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			BeanDiff.apply(newOrder("a"), changes);
+			fail("The patch was calculated against a list of a different size");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	static Order newOrder(String...lineIds) {
+		Order order = new BeanType<Order>(Order.class).newInstance().getUnwrapped();
+		List<Line> lines = new ArrayList<Line>();
+		for (String lineId : lineIds) {
+			lines.add(newLine(lineId, 1));
+		}
+		order.setLines(lines);
+		return order;
+	}
+	
+	static Line newLine(String id, Integer quantity) {
+		Line line = new Line();
+		line.setId(id);
+		line.setQuantity(quantity);
+		return line;
+	}
+	
+	@SuppressWarnings("unchecked")
+	static BeanType<Line> getLineType() {
+		return (BeanType<Line>) BeanInstance.resolveType(new Line());
+	}
+	
+	public static interface Order {
+		public String getNote();
+		public void setNote(String note);
+		public List<Line> getLines();
+		public void setLines(List<Line> lines);
+	}
+	
+	public static class Line {
+		private String id;
+		private Integer quantity;
+		
+		@Field(primary = true)
+		public String getId() {
+			return id;
+		}
+		public void setId(String id) {
+			this.id = id;
+		}
+		public Integer getQuantity() {
+			return quantity;
+		}
+		public void setQuantity(Integer quantity) {
+			this.quantity = quantity;
+		}
+	}
+}
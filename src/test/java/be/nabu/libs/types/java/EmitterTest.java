@@ -0,0 +1,127 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlType;
+
+import be.nabu.libs.types.api.ComplexType;
+import be.nabu.libs.types.api.Element;
+import junit.framework.TestCase;
+
+public class EmitterTest extends TestCase {
+
+	public void testEvents() {
+		Order order = new Order();
+		order.setId("o1");
+		order.setName("test");
+		order.setTags(Arrays.asList("a", "b"));
+		
+		List<String> events = emit(order, false);
+		assertEquals(Arrays.asList("startObject", "field @id", "value o1", "field name", "value test", "field tags", "startList tags 2", "value a", "value b", "endList tags", "endObject"), events);
+	}
+	
+	public void testNulls() {
+		Order order = new Order();
+		order.setId("o1");
+		assertFalse(emit(order, false).contains("field name"));
+		assertTrue(emit(order, true).contains("field name"));
+	}
+	
+	public void testCycle() {
+		TraverserTest.Node root = new TraverserTest.Node();
+		TraverserTest.Node child = new TraverserTest.Node();
+		child.setParent(root);
+		root.getChildren().add(child);
+		try {
+			emit(root, false);
+			fail("Cycles can not be emitted");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+	
+	private List<String> emit(Object bean, boolean includeNulls) {
+		final List<String> events = new ArrayList<String>();
+		BeanEventEmitter emitter = new BeanEventEmitter();
+		emitter.setIncludeNulls(includeNulls);
+		emitter.emit(bean, new BeanEventHandler() {
+			@Override
+			public void startObject(ComplexType type) {
+				events.add("startObject");
+			}
+			@Override
+			public void endObject(ComplexType type) {
+				events.add("endObject");
+			}
+			@Override
+			public void field(Element<?> element, boolean attribute) {
+				events.add("field " + (attribute ? "@" : "") + element.getName());
+			}
+			@Override
+			public void startList(Element<?> element, int size) {
+				events.add("startList " + element.getName() + " " + size);
+			}
+			@Override
+			public void endList(Element<?> element) {
+				events.add("endList " + element.getName());
+			}
+			@Override
+			public void value(Element<?> element, Object value) {
+				events.add("value " + value);
+			}
+			@Override
+			public void content(Element<?> element, Object value) {
+				events.add("content " + value);
+			}
+		});
+		return events;
+	}
+	
+	@XmlType(propOrder = { "name", "tags", "id" })
+	public static class Order {
+		private String id, name;
+		private List<String> tags;
+		
+		@XmlAttribute
+		public String getId() {
+			return id;
+		}
+		public void setId(String id) {
+			this.id = id;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public List<String> getTags() {
+			return tags;
+		}
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import be.nabu.libs.types.java.DiffTest.Line;
+import be.nabu.libs.types.java.DiffTest.Order;
+import junit.framework.TestCase;
+
+public class EqualityTest extends TestCase {
+
+	public void testDeep() {
+		Order first = DiffTest.newOrder("a", "b");
+		Order second = DiffTest.newOrder("a", "b");
+		assertTrue(BeanEquality.DEEP.equals(first, second));
+		assertEquals(BeanEquality.DEEP.hashCode(first), BeanEquality.DEEP.hashCode(second));
+		
+		second.getLines().get(1).setQuantity(2);
+		assertFalse(BeanEquality.DEEP.equals(first, second));
+		assertFalse(BeanEquality.DEEP.equals(first, DiffTest.newOrder("b", "a")));
+	}
+	
+	public void testFrozen() {
+		Order order = DiffTest.newOrder("a", "b");
+		Order frozen = BeanFreezer.freezeBean(DiffTest.newOrder("a", "b"));
+		assertTrue(BeanEquality.DEEP.equals(order, frozen));
+		// the hash of the frozen instance is cached but must match the calculated one
+		assertEquals(BeanEquality.DEEP.hashCode(order), BeanEquality.DEEP.hashCode(frozen));
+		assertEquals(BeanEquality.DEEP.hashCode(order), BeanEquality.DEEP.hashCode(frozen));
+	}
+	
+	public void testPrimaryKey() {
+		Line first = new Line();
+		first.setId("a");
+		first.setQuantity(1);
+		Line second = new Line();
+		second.setId("a");
+		second.setQuantity(2);
+		assertTrue(BeanEquality.PRIMARY_KEY.equals(first, second));
+		assertEquals(BeanEquality.PRIMARY_KEY.hashCode(first), BeanEquality.PRIMARY_KEY.hashCode(second));
+		assertFalse(BeanEquality.DEEP.equals(first, second));
+	}
+	
+	public void testPrimaryKeyNested() {
+		Order first = DiffTest.newOrder("a", "b");
+		Order second = DiffTest.newOrder("a", "b");
+		second.getLines().get(0).setQuantity(5);
+		assertTrue(BeanEquality.PRIMARY_KEY.equals(first, second));
+		assertEquals(BeanEquality.PRIMARY_KEY.hashCode(first), BeanEquality.PRIMARY_KEY.hashCode(second));
+		// the cached deep hash of a frozen instance is not used for keys
+		Order frozen = BeanFreezer.freezeBean(second);
+		BeanEquality.DEEP.hashCode(frozen);
+		assertEquals(BeanEquality.PRIMARY_KEY.hashCode(first), BeanEquality.PRIMARY_KEY.hashCode(frozen));
+		
+		Set<Object> keys = new HashSet<Object>();
+		keys.add(BeanEquality.PRIMARY_KEY.key(first));
+		keys.add(BeanEquality.PRIMARY_KEY.key(second));
+		keys.add(BeanEquality.PRIMARY_KEY.key(frozen));
+		assertEquals(1, keys.size());
+		
+		second.setNote("note");
+		assertFalse(BeanEquality.PRIMARY_KEY.equals(first, second));
+	}
+	
+	public void testPrimaryKeyWithoutValue() {
+		Line first = new Line();
+		first.setQuantity(1);
+		Line second = new Line();
+		second.setQuantity(2);
+		// without a key value the lines are compared deeply
+		assertFalse(BeanEquality.PRIMARY_KEY.equals(first, second));
+		Set<Object> keys = new HashSet<Object>();
+		keys.add(BeanEquality.PRIMARY_KEY.key(first));
+		keys.add(BeanEquality.PRIMARY_KEY.key(second));
+		assertEquals(2, keys.size());
+		
+		second.setQuantity(1);
+		assertTrue(BeanEquality.PRIMARY_KEY.equals(first, second));
+		assertEquals(BeanEquality.PRIMARY_KEY.hashCode(first), BeanEquality.PRIMARY_KEY.hashCode(second));
+		second.setId("a");
+		assertFalse(BeanEquality.PRIMARY_KEY.equals(first, second));
+	}
+	
+	public void testKeys() {
+		Set<Object> keys = new HashSet<Object>();
+		keys.add(BeanEquality.DEEP.key(DiffTest.newOrder("a")));
+		keys.add(BeanEquality.DEEP.key(DiffTest.newOrder("a")));
+		keys.add(BeanEquality.DEEP.key(DiffTest.newOrder("b")));
+		assertEquals(2, keys.size());
+	}
+	
+	public void testCycles() {
+		assertTrue(BeanEquality.DEEP.equals(newCycle("root"), newCycle("root")));
+		assertFalse(BeanEquality.DEEP.equals(newCycle("root"), newCycle("other")));
+		assertEquals(BeanEquality.DEEP.hashCode(newCycle("root")), BeanEquality.DEEP.hashCode(newCycle("root")));
+	}
+	
+	public void testStructuralProxies() {
+		BeanType<Order> type = new BeanType<Order>(Order.class);
+		type.setStructuralEquality(true);
+		Order first = type.newInstance().getUnwrapped();
+		Order second = type.newInstance().getUnwrapped();
+		first.setNote("note");
+		second.setNote("note");
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+	}
+	
+	private static TraverserTest.Node newCycle(String name) {
+		TraverserTest.Node root = new TraverserTest.Node();
+		root.setName(name);
+		TraverserTest.Node child = new TraverserTest.Node();
+		child.setName("child");
+		child.setParent(root);
+		root.getChildren().add(child);
+		return root;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import be.nabu.libs.types.api.ComplexContent;
+import junit.framework.TestCase;
+
+public class FreezerTest extends TestCase {
+
+	public void testFreezeInterfaceBean() {
+		Customer customer = newCustomer();
+		Customer frozen = BeanFreezer.freezeBean(customer);
+		assertTrue(BeanFreezer.isFrozen(frozen));
+		assertEquals("bob", frozen.getName());
+		try {
+			frozen.setName("alice");
+			fail("A frozen bean can not be updated");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+		// the original is not affected by the snapshot and vice versa
+		customer.setName("alice");
+		assertEquals("bob", frozen.getName());
+	}
+	
+	public void testNestedClassBeansStayFrozen() {
+		Customer frozen = BeanFreezer.freezeBean(newCustomer());
+		Address address = frozen.getAddress();
+		assertEquals("Ghent", address.getCity());
+		address.setCity("Antwerp");
+		// every read gets its own copy so the snapshot never changes
+		assertEquals("Ghent", frozen.getAddress().getCity());
+		assertNotSame(address, frozen.getAddress());
+		
+		frozen.getAddresses().get(0).setCity("Antwerp");
+		assertEquals("Brussels", frozen.getAddresses().get(0).getCity());
+		
+		frozen.getCodes()[0] = 9;
+		assertEquals(1, frozen.getCodes()[0]);
+	}
+	
+	public void testListsAreReadOnly() {
+		Customer frozen = BeanFreezer.freezeBean(newCustomer());
+		try {
+			frozen.getTags().add("c");
+			fail("A frozen list can not be updated");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+	
+	public void testFreezeContent() {
+		Address address = new Address();
+		address.setCity("Ghent");
+		address.getLines().add("street 1");
+		ComplexContent frozen = new BeanInstance<Address>(address).freeze();
+		assertTrue(frozen instanceof FrozenComplexContent);
+		assertEquals("street 1", frozen.get("lines[0]"));
+		assertNull(frozen.get("lines[5]"));
+		try {
+			frozen.get("lines[-1]");
+			fail("Negative indexes are invalid");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			frozen.set("city", "Antwerp");
+			fail("Frozen content can not be updated");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+	
+	public void testMutableValuesAreCopied() {
+		Date created = new Date(1000);
+		Stamp stamp = new Stamp();
+		stamp.setAt(new Date(2000));
+		Event event = new BeanType<Event>(Event.class).newInstance().getUnwrapped();
+		event.setCreated(created);
+		event.setHistory(new ArrayList<Date>(Arrays.asList(new Date(3000))));
+		event.setStamp(stamp);
+		Event frozen = BeanFreezer.freezeBean(event);
+		// changing the original does not change the snapshot
+		created.setTime(5000);
+		assertEquals(1000, frozen.getCreated().getTime());
+		// and neither does changing what was read from it
+		frozen.getCreated().setTime(6000);
+		assertEquals(1000, frozen.getCreated().getTime());
+		frozen.getHistory().get(0).setTime(6000);
+		assertEquals(3000, frozen.getHistory().get(0).getTime());
+		frozen.getStamp().getAt().setTime(6000);
+		assertEquals(2000, frozen.getStamp().getAt().getTime());
+		
+		ComplexContent content = new BeanInstance<Stamp>(stamp).freeze();
+		stamp.getAt().setTime(7000);
+		((Date) content.get("at")).setTime(8000);
+		assertEquals(2000, ((Date) content.get("at")).getTime());
+	}
+	
+	public void testCycle() {
+		TraverserTest.Node root = new TraverserTest.Node();
+		TraverserTest.Node child = new TraverserTest.Node();
+		child.setParent(root);
+		root.getChildren().add(child);
+		try {
+			BeanFreezer.freeze(new BeanInstance<TraverserTest.Node>(root));
+			fail("Cycles can not be frozen");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+	}
+	
+	static Customer newCustomer() {
+		Customer customer = new BeanType<Customer>(Customer.class).newInstance().getUnwrapped();
+		customer.setName("bob");
+		Address address = new Address();
+		address.setCity("Ghent");
+		customer.setAddress(address);
+		List<Address> addresses = new ArrayList<Address>();
+		Address other = new Address();
+		other.setCity("Brussels");
+		addresses.add(other);
+		customer.setAddresses(addresses);
+		List<String> tags = new ArrayList<String>();
+		tags.add("a");
+		tags.add("b");
+		customer.setTags(tags);
+		customer.setCodes(new int[] { 1, 2 });
+		return customer;
+	}
+	
+	public static interface Customer {
+		public String getName();
+		public void setName(String name);
+		public Address getAddress();
+		public void setAddress(Address address);
+		public List<Address> getAddresses();
+		public void setAddresses(List<Address> addresses);
+		public List<String> getTags();
+		public void setTags(List<String> tags);
+		public int[] getCodes();
+		public void setCodes(int[] codes);
+	}
+	
+	public static interface Event {
+		public Date getCreated();
+		public void setCreated(Date created);
+		public List<Date> getHistory();
+		public void setHistory(List<Date> history);
+		public Stamp getStamp();
+		public void setStamp(Stamp stamp);
+	}
+	
+	public static class Stamp {
+		private Date at;
+
+		public Date getAt() {
+			return at;
+		}
+		public void setAt(Date at) {
+			this.at = at;
+		}
+	}
+	
+	public static class Address {
+		private String city;
+		private List<String> lines = new ArrayList<String>();
+		
+		public String getCity() {
+			return city;
+		}
+		public void setCity(String city) {
+			this.city = city;
+		}
+		public List<String> getLines() {
+			return lines;
+		}
+		public void setLines(List<String> lines) {
+			this.lines = lines;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import be.nabu.libs.types.java.BeanIdentityMap.Eviction;
+import be.nabu.libs.types.java.DiffTest.Line;
+import junit.framework.TestCase;
+
+public class IdentityMapTest extends TestCase {
+
+	public void testCanonicalize() {
+		BeanIdentityMap map = new BeanIdentityMap(Eviction.SOFT);
+		Line first = DiffTest.newLine("a", null);
+		Line second = DiffTest.newLine("a", null);
+		assertSame(first, map.canonicalize(first));
+		assertSame(first, map.canonicalize(second));
+		assertSame(first, map.get(DiffTest.getLineType(), "a"));
+		assertEquals(1, map.getHits());
+		assertEquals(1, map.getMisses());
+		
+		map.remove(DiffTest.getLineType(), "a");
+		assertNull(map.get(DiffTest.getLineType(), "a"));
+		assertSame(second, map.canonicalize(second));
+	}
+	
+	public void testWithoutPrimaryKey() {
+		BeanIdentityMap map = new BeanIdentityMap();
+		Line line = new Line();
+		assertSame(line, map.canonicalize(line));
+		assertEquals(0, map.size());
+	}
+	
+	public void testBounded() {
+		BeanIdentityMap map = new BeanIdentityMap(Eviction.BOUNDED, 2);
+		Line a = map.canonicalize(DiffTest.newLine("a", null));
+		map.canonicalize(DiffTest.newLine("b", null));
+		// a is now the most recently used
+		assertSame(a, map.canonicalize(DiffTest.newLine("a", null)));
+		map.canonicalize(DiffTest.newLine("c", null));
+		assertEquals(2, map.size());
+		assertEquals(1, map.getEvictions());
+		assertNull(map.get(DiffTest.getLineType(), "b"));
+		assertSame(a, map.get(DiffTest.getLineType(), "a"));
+	}
+	
+	public void testBoundedNeedsSize() {
+		try {
+			new BeanIdentityMap(Eviction.BOUNDED, 0);
+			fail("A bounded map needs a size");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
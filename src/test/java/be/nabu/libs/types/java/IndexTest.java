@@ -0,0 +1,80 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import be.nabu.libs.types.java.BeanIndex.Kind;
+import be.nabu.libs.types.java.BeanInstance.ComplexContentList;
+import be.nabu.libs.types.java.DiffTest.Line;
+import junit.framework.TestCase;
+
+public class IndexTest extends TestCase {
+
+	public void testHash() {
+		BeanIndex<Line> index = BeanIndex.hash(DiffTest.getLineType(), "id", Arrays.asList(DiffTest.newLine("a", 1), DiffTest.newLine("b", 2), DiffTest.newLine("a", 3)));
+		assertEquals(3, index.size());
+		assertEquals(2, index.get("a").size());
+		assertEquals(Integer.valueOf(2), index.getFirst("b").getQuantity());
+		assertTrue(index.get("c").isEmpty());
+		assertTrue(index.containsKey("a"));
+	}
+	
+	public void testSorted() {
+		BeanIndex<Line> index = BeanIndex.sorted(DiffTest.getLineType(), "quantity", Arrays.asList(DiffTest.newLine("a", 3), DiffTest.newLine("b", 1), DiffTest.newLine("c", 2)));
+		assertEquals(Arrays.<Object>asList(1, 2, 3), index.getKeys());
+		List<Line> range = index.range(1, 3);
+		assertEquals(2, range.size());
+		assertEquals("b", range.get(0).getId());
+		assertEquals("c", range.get(1).getId());
+		try {
+			BeanIndex.hash(DiffTest.getLineType(), "quantity", new ArrayList<Line>()).range(1, 2);
+			fail("Hash indexes do not support ranges");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+	
+	public void testAttached() {
+		ComplexContentList<Line> list = new ComplexContentList<Line>(Line.class, new ArrayList<Line>(Arrays.asList(DiffTest.newLine("a", 1))));
+		BeanIndex<Line> index = new BeanIndex<Line>(DiffTest.getLineType(), "id", Kind.HASH).attach(list);
+		list.add(DiffTest.newLine("b", 2));
+		assertEquals(2, index.size());
+		list.remove(0);
+		assertTrue(index.get("a").isEmpty());
+		
+		index.detach(list);
+		list.add(DiffTest.newLine("c", 3));
+		assertFalse(index.containsKey("c"));
+	}
+	
+	public void testSubListSharesListeners() {
+		ComplexContentList<Line> list = new ComplexContentList<Line>(Line.class, new ArrayList<Line>(Arrays.asList(DiffTest.newLine("a", 1), DiffTest.newLine("b", 2), DiffTest.newLine("c", 3))));
+		// the sublist is created before the index is attached
+		List<Object> subList = list.subList(0, 2);
+		BeanIndex<Line> index = new BeanIndex<Line>(DiffTest.getLineType(), "id", Kind.HASH).attach(list);
+		subList.clear();
+		assertEquals(1, index.size());
+		assertTrue(index.containsKey("c"));
+		assertFalse(index.containsKey("a"));
+	}
+}
@@ -0,0 +1,150 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class LazyTest extends TestCase {
+	
+	public void testLoadedOnce() {
+		BeanType<Profile> type = new BeanType<Profile>(Profile.class);
+		List<String> loads = new ArrayList<String>();
+		Profile profile = type.instantiateLazy(new BeanFieldLoader<Profile>() {
+			@Override
+			public Object load(Profile bean, String property) {
+				loads.add(property);
+				return property.equals("name") ? "bob" : null;
+			}
+		});
+		assertTrue(loads.isEmpty());
+		assertEquals("bob", profile.getName());
+		assertEquals("bob", profile.getName());
+		// null values are cached as well
+		assertNull(profile.getScore());
+		assertNull(profile.getScore());
+		assertEquals(Arrays.asList("name", "score"), loads);
+		
+		assertEquals(1, type.getLoadStatistics().get("name").getLoads());
+		assertEquals(1, type.getLoadStatistics().get("score").getLoads());
+		assertFalse(type.getLoadStatistics().containsKey("tags"));
+	}
+	
+	public void testSetPreventsLoad() {
+		BeanType<Profile> type = new BeanType<Profile>(Profile.class);
+		Profile profile = type.instantiateLazy(new BeanFieldLoader<Profile>() {
+			@Override
+			public Object load(Profile bean, String property) {
+				throw new IllegalStateException("No load expected for " + property);
+			}
+		});
+		profile.setName("alice");
+		assertEquals("alice", profile.getName());
+		assertTrue(type.getLoadStatistics().isEmpty());
+	}
+	
+	public void testFailure() {
+		BeanType<Profile> type = new BeanType<Profile>(Profile.class);
+		List<String> loads = new ArrayList<String>();
+		Profile profile = type.instantiateLazy(new BeanFieldLoader<Profile>() {
+			@Override
+			public Object load(Profile bean, String property) {
+				loads.add(property);
+				if (loads.size() == 1) {
+					throw new IllegalStateException("Unavailable");
+				}
+				return 5;
+			}
+		});
+		try {
+			profile.getScore();
+			fail("The loader failed");
+		}
+		catch (RuntimeException e) {
+			// expected
+		}
+		// a failed load is retried
+		assertEquals(Integer.valueOf(5), profile.getScore());
+		BeanLoadStatistics statistics = type.getLoadStatistics().get("score");
+		assertEquals(1, statistics.getLoads());
+		assertEquals(1, statistics.getFailures());
+		
+		type.resetLoadStatistics();
+		assertTrue(type.getLoadStatistics().isEmpty());
+	}
+	
+	public void testConcurrentLoads() throws InterruptedException {
+		BeanType<Profile> type = new BeanType<Profile>(Profile.class);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean finished = new AtomicBoolean();
+		Profile profile = type.instantiateLazy(new BeanFieldLoader<Profile>() {
+			@Override
+			public Object load(Profile bean, String property) throws Exception {
+				if (property.equals("name")) {
+					loading.countDown();
+					release.await(10, TimeUnit.SECONDS);
+					finished.set(true);
+					return "bob";
+				}
+				return 5;
+			}
+		});
+		AtomicReference<String> read = new AtomicReference<String>();
+		Thread thread = new Thread(() -> read.set(profile.getName()));
+		thread.start();
+		assertTrue(loading.await(10, TimeUnit.SECONDS));
+		// a slow load only blocks the property that is being loaded
+		assertEquals(Integer.valueOf(5), profile.getScore());
+		assertFalse(finished.get());
+		// a value that is set while loading is not overwritten by the loaded one
+		profile.setName("alice");
+		release.countDown();
+		thread.join();
+		assertEquals("alice", read.get());
+		assertEquals("alice", profile.getName());
+		assertEquals(1, type.getLoadStatistics().get("name").getLoads());
+	}
+	
+	public void testOnlyInterfaces() {
+		try {
+			new BeanType<DiffTest.Line>(DiffTest.Line.class).instantiateLazy((bean, property) -> null);
+			fail("Only interface beans can be lazy");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	public interface Profile {
+		public String getName();
+		public void setName(String name);
+		public Integer getScore();
+		public void setScore(Integer score);
+		public List<String> getTags();
+		public void setTags(List<String> tags);
+	}
+}
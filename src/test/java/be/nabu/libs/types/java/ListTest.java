@@ -0,0 +1,108 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import be.nabu.libs.types.api.ComplexContent;
+import be.nabu.libs.types.java.BeanInstance.ComplexContentList;
+import be.nabu.libs.types.java.BeanInstance.ComplexContentList.MutationListener;
+import be.nabu.libs.types.java.DiffTest.Line;
+import junit.framework.TestCase;
+
+public class ListTest extends TestCase {
+	
+	public void testSpliterator() {
+		ComplexContentList<Line> list = newList(1000);
+		Spliterator<Object> spliterator = list.spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+		assertEquals(1000, spliterator.estimateSize());
+		Spliterator<Object> split = spliterator.trySplit();
+		assertEquals(500, split.estimateSize());
+		assertEquals(500, spliterator.estimateSize());
+		
+		List<Object> ids = list.stream().parallel().map(item -> ((ComplexContent) item).get("id")).collect(Collectors.toList());
+		assertEquals(ids(list.getList()), ids);
+	}
+	
+	public void testUnwrapped() {
+		ComplexContentList<Line> list = newList(1000);
+		assertEquals(list.getList(), list.unwrapped(true).collect(Collectors.toList()));
+		assertEquals(499500, list.unwrapped(true).mapToInt(Line::getQuantity).sum());
+	}
+	
+	public void testCursors() {
+		ComplexContentList<Line> list = newList(1000);
+		assertEquals(499500, list.cursors(true).mapToInt(content -> (Integer) content.get("quantity")).sum());
+		
+		// linked lists are split by their own spliterator
+		ComplexContentList<Line> linked = new ComplexContentList<Line>(Line.class, new LinkedList<Line>(list.getList()));
+		List<Object> ids = linked.cursors(false).map(content -> content.get("id")).collect(Collectors.toList());
+		assertEquals(ids(list.getList()), ids);
+	}
+	
+	public void testListIterator() {
+		ComplexContentList<Line> list = newList(3);
+		List<String> events = new ArrayList<String>();
+		list.addListener(new MutationListener<Line>() {
+			@Override
+			public void added(Line item) {
+				events.add("+" + item.getId());
+			}
+			@Override
+			public void removed(Line item) {
+				events.add("-" + item.getId());
+			}
+		});
+		ListIterator<Object> iterator = list.listIterator();
+		assertEquals("id0", ((ComplexContent) iterator.next()).get("id"));
+		iterator.set(DiffTest.newLine("a", 10));
+		iterator.add(DiffTest.newLine("b", 11));
+		assertEquals("id1", ((ComplexContent) iterator.next()).get("id"));
+		iterator.remove();
+		assertEquals("b", ((ComplexContent) iterator.previous()).get("id"));
+		assertEquals(1, iterator.nextIndex());
+		
+		assertEquals(Arrays.asList("a", "b", "id2"), ids(list.getList()));
+		assertEquals(Arrays.asList("-id0", "+a", "+b", "-id1"), events);
+	}
+	
+	private static List<Object> ids(List<Line> lines) {
+		List<Object> ids = new ArrayList<Object>();
+		for (Line line : lines) {
+			ids.add(line.getId());
+		}
+		return ids;
+	}
+	
+	private static ComplexContentList<Line> newList(int size) {
+		List<Line> lines = new ArrayList<Line>();
+		for (int i = 0; i < size; i++) {
+			lines.add(DiffTest.newLine("id" + i, i));
+		}
+		return new ComplexContentList<Line>(Line.class, lines);
+	}
+}
@@ -0,0 +1,93 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.List;
+import java.util.Map;
+
+import be.nabu.libs.types.java.FreezerTest.Customer;
+import junit.framework.TestCase;
+
+public class MapTest extends TestCase {
+	
+	public void testLiveView() {
+		Customer customer = FreezerTest.newCustomer();
+		Map<String, Object> map = new BeanInstance<Customer>(customer).asMap();
+		assertEquals("bob", map.get("name"));
+		assertEquals("bob", map.put("name", "alice"));
+		assertEquals("alice", customer.getName());
+		customer.setName("john");
+		assertEquals("john", map.get("name"));
+		
+		// all the fields are keys, even if they are null
+		customer.setTags(null);
+		assertTrue(map.containsKey("tags"));
+		assertNull(map.get("tags"));
+		assertFalse(map.containsKey("unknown"));
+		assertNull(map.get("unknown"));
+		assertEquals(map.size(), map.entrySet().size());
+	}
+	
+	@SuppressWarnings("unchecked")
+	public void testNested() {
+		Customer customer = FreezerTest.newCustomer();
+		Map<String, Object> map = new BeanInstance<Customer>(customer).asMap();
+		Map<String, Object> address = (Map<String, Object>) map.get("address");
+		assertEquals("Ghent", address.get("city"));
+		address.put("city", "Antwerp");
+		assertEquals("Antwerp", customer.getAddress().getCity());
+		
+		List<Object> addresses = (List<Object>) map.get("addresses");
+		assertEquals(1, addresses.size());
+		assertEquals("Brussels", ((Map<String, Object>) addresses.get(0)).get("city"));
+		
+		// a view can be set as the value of another field
+		map.put("address", addresses.get(0));
+		assertEquals("Brussels", customer.getAddress().getCity());
+	}
+	
+	public void testRemove() {
+		Map<String, Object> map = new BeanInstance<Customer>(FreezerTest.newCustomer()).asMap();
+		try {
+			map.remove("name");
+			fail("Fields can not be removed");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			map.put("unknown", "value");
+			fail("The field does not exist");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	public void testEntries() {
+		Customer customer = FreezerTest.newCustomer();
+		Map<String, Object> map = new BeanInstance<Customer>(customer).asMap();
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			if (entry.getKey().equals("name")) {
+				assertEquals("bob", entry.setValue("alice"));
+			}
+		}
+		assertEquals("alice", customer.getName());
+	}
+}
@@ -0,0 +1,90 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.nabu.libs.types.java.FreezerTest.Address;
+import be.nabu.libs.types.java.FreezerTest.Customer;
+import junit.framework.TestCase;
+
+public class PopulateTest extends TestCase {
+	
+	public void testMergeNested() {
+		Customer customer = FreezerTest.newCustomer();
+		Address address = customer.getAddress();
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("name", "alice");
+		values.put("address", map("lines", Arrays.asList("street 1")));
+		new BeanInstance<Customer>(customer).populate(values);
+		
+		assertEquals("alice", customer.getName());
+		// the nested map is merged into the existing address
+		assertSame(address, customer.getAddress());
+		assertEquals("Ghent", address.getCity());
+		assertEquals(Arrays.asList("street 1"), address.getLines());
+	}
+	
+	public void testListOfMaps() {
+		Customer customer = FreezerTest.newCustomer();
+		Address address = new Address();
+		address.setCity("Leuven");
+		new BeanInstance<Customer>(customer).populate(map("addresses", Arrays.asList(map("city", "Antwerp"), address)));
+		List<Address> addresses = customer.getAddresses();
+		assertEquals(2, addresses.size());
+		assertEquals("Antwerp", addresses.get(0).getCity());
+		assertSame(address, addresses.get(1));
+	}
+	
+	public void testValidateFirst() throws Exception {
+		Field field = BeanInstance.class.getDeclaredField("ignoreNonExistent");
+		field.setAccessible(true);
+		Object original = field.get(null);
+		field.set(null, false);
+		try {
+			Customer customer = FreezerTest.newCustomer();
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put("name", "alice");
+			values.put("unknown", "value");
+			try {
+				new BeanInstance<Customer>(customer).populate(values);
+				fail("The field does not exist");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+			// nothing was set
+			assertEquals("bob", customer.getName());
+		}
+		finally {
+			field.set(null, original);
+		}
+	}
+	
+	private static Map<String, Object> map(String key, Object value) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put(key, value);
+		return map;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import be.nabu.libs.types.java.BeanQuery.Operator;
+import be.nabu.libs.types.java.DiffTest.Line;
+import junit.framework.TestCase;
+
+public class QueryTest extends TestCase {
+
+	private List<Line> lines = Arrays.asList(DiffTest.newLine("a", 3), DiffTest.newLine("b", 1), DiffTest.newLine("c", null), DiffTest.newLine("d", 2), DiffTest.newLine("a", 5));
+	
+	public void testWhere() {
+		assertEquals(Arrays.asList("a", "a"), ids(BeanQuery.from(Line.class).where("quantity > 2").list(lines)));
+		assertEquals(Arrays.asList("b", "d"), ids(BeanQuery.from(Line.class).where("quantity >= 1 and quantity < 3").list(lines)));
+		assertEquals(Arrays.asList("c"), ids(BeanQuery.from(Line.class).where("quantity = null").list(lines)));
+		assertEquals(Arrays.asList("a", "a"), ids(BeanQuery.from(Line.class).where("id", Operator.EQUALS, "a").list(lines)));
+		try {
+			BeanQuery.from(Line.class).where("quantity ~ 1");
+			fail("The condition is invalid");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	public void testOrder() {
+		// null values come last
+		assertEquals(Arrays.asList("b", "d", "a", "a", "c"), ids(BeanQuery.from(Line.class).orderBy("quantity").list(lines)));
+		assertEquals(Arrays.asList("a", "a", "d", "b", "c"), ids(BeanQuery.from(Line.class).orderBy("quantity", false).list(lines)));
+		assertEquals(Arrays.asList("d", "a"), ids(BeanQuery.from(Line.class).orderBy("quantity").offset(1).limit(2).list(lines)));
+	}
+	
+	public void testParallel() {
+		List<Line> many = new ArrayList<Line>();
+		for (int i = 0; i < 10000; i++) {
+			many.add(DiffTest.newLine("id" + i, i % 100));
+		}
+		BeanQuery<Line> query = BeanQuery.from(Line.class).where("quantity < 50").orderBy("quantity");
+		assertEquals(ids(query.list(many)), ids(query.parallel().list(many)));
+	}
+	
+	public void testAggregates() {
+		BeanQuery<Line> query = BeanQuery.from(Line.class);
+		assertEquals(5, query.count(lines));
+		assertEquals(11.0, query.sum(lines, "quantity"), 0);
+		assertEquals(2.75, query.average(lines, "quantity").getAsDouble(), 0);
+		assertEquals(1, query.min(lines, "quantity"));
+		assertEquals(5, query.max(lines, "quantity"));
+		
+		Map<Object, List<Line>> groups = query.group(lines, "id");
+		assertEquals(Arrays.<Object>asList("a", "b", "c", "d"), new ArrayList<Object>(groups.keySet()));
+		assertEquals(2, groups.get("a").size());
+	}
+	
+	public void testSelect() {
+		List<Map<String, Object>> rows = BeanQuery.from(Line.class).where("id = 'b'").select(lines, "id", "quantity");
+		assertEquals(1, rows.size());
+		assertEquals("b", rows.get(0).get("id"));
+		assertEquals(1, rows.get(0).get("quantity"));
+	}
+	
+	private static List<String> ids(List<Line> lines) {
+		List<String> ids = new ArrayList<String>();
+		for (Line line : lines) {
+			ids.add(line.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import be.nabu.libs.types.java.BeanAccessRecorder.AccessType;
+import be.nabu.libs.types.java.BeanAccessRecorder.RecordedAccess;
+import junit.framework.TestCase;
+
+public class RecorderTest extends TestCase {
+
+	private BeanAccessRecorder recorder = BeanAccessRecorder.getInstance();
+	
+	@Override
+	protected void setUp() {
+		recorder.reset();
+		recorder.setSampleRate(1);
+		recorder.setEnabled(true);
+	}
+	
+	@Override
+	protected void tearDown() {
+		recorder.setEnabled(false);
+		recorder.setSampleRate(100);
+		recorder.reset();
+	}
+	
+	public void testReadsAndWrites() {
+		BeanInstance<Person> instance = new BeanInstance<Person>(new Person());
+		instance.set("name", "bob");
+		instance.get("name");
+		instance.get("name");
+		assertEquals(1, find("name", AccessType.WRITE).getCount());
+		assertEquals(2, find("name", AccessType.READ).getCount());
+		assertTrue(recorder.getReport().contains("name\tREAD\t2\t2"));
+	}
+	
+	public void testIndexesAreStripped() {
+		Person person = new Person();
+		person.getChildren().add(new Person());
+		person.getChildren().add(new Person());
+		BeanInstance<Person> instance = new BeanInstance<Person>(person);
+		instance.get("children[0]/name");
+		instance.get("children[1]/name");
+		assertEquals(2, find("children[]/name", AccessType.READ).getCount());
+	}
+	
+	public void testNestedWritesOnce() {
+		Person person = new Person();
+		person.getChildren().add(new Person());
+		new BeanInstance<Person>(person).set("children[0]/name", "bob");
+		assertEquals("bob", person.getChildren().get(0).getName());
+		// only the outermost write is recorded, not the write of the nested instance
+		int writes = 0;
+		for (RecordedAccess access : recorder.getAccesses()) {
+			if (access.getAccessType() == AccessType.WRITE) {
+				assertEquals("children[]/name", access.getPath());
+				writes += access.getCount();
+			}
+		}
+		assertEquals(1, writes);
+	}
+	
+	public void testDisabled() {
+		recorder.setEnabled(false);
+		new BeanInstance<Person>(new Person()).get("name");
+		assertTrue(recorder.getAccesses().isEmpty());
+	}
+	
+	public void testMaxEntries() {
+		recorder.setMaxEntries(1);
+		try {
+			BeanInstance<Person> instance = new BeanInstance<Person>(new Person());
+			instance.get("name");
+			instance.get("children");
+			assertEquals(1, recorder.getAccesses().size());
+			assertTrue(recorder.getReport().contains("# dropped 1"));
+		}
+		finally {
+			recorder.setMaxEntries(10000);
+		}
+	}
+	
+	private RecordedAccess find(String path, AccessType accessType) {
+		for (RecordedAccess access : recorder.getAccesses()) {
+			if (access.getPath().equals(path) && access.getAccessType() == accessType) {
+				return access;
+			}
+		}
+		fail("No access recorded for " + path + " (" + accessType + ")");
+		return null;
+	}
+	
+	public static class Person {
+		private String name;
+		private List<Person> children = new ArrayList<Person>();
+		
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public List<Person> getChildren() {
+			return children;
+		}
+		public void setChildren(List<Person> children) {
+			this.children = children;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import be.nabu.libs.types.java.DiffTest.Line;
+import junit.framework.TestCase;
+
+public class ResolverTest extends TestCase {
+	
+	public void testEviction() {
+		BeanResolver resolver = new BeanResolver();
+		resolver.setMaxSize(2);
+		assertNotNull(resolver.resolve(Line.class.getName()));
+		assertNotNull(resolver.resolve(FreezerTest.Address.class.getName()));
+		assertNotNull(resolver.resolve(LazyTest.Profile.class.getName()));
+		assertEquals(2, resolver.getSize());
+		assertEquals(1, resolver.getEvictions());
+		assertEquals(3, resolver.getMisses());
+		
+		resolver.resolve(LazyTest.Profile.class.getName());
+		assertEquals(1, resolver.getHits());
+	}
+	
+	public void testRemoveFactory() {
+		BeanResolver resolver = new BeanResolver();
+		DomainObjectFactory factory = name -> name.equals("line") ? Line.class : null;
+		resolver.addFactory(factory);
+		assertNotNull(resolver.resolve("line"));
+		assertNotNull(resolver.resolve(FreezerTest.Address.class.getName()));
+		assertEquals(2, resolver.getSize());
+		
+		resolver.removeFactory(factory);
+		// only the id that was resolved through the factory is invalidated
+		assertEquals(1, resolver.getInvalidations());
+		assertEquals(1, resolver.getSize());
+		assertNull(resolver.resolve("line"));
+	}
+	
+	public void testRemoveFactoryClassLoader() throws Exception {
+		URL location = Line.class.getProtectionDomain().getCodeSource().getLocation();
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { location }, null)) {
+			Class<?> isolated = loader.loadClass(Line.class.getName());
+			assertNotSame(Line.class, isolated);
+			
+			BeanResolver resolver = new BeanResolver();
+			DomainObjectFactory factory = name -> name.equals("line") ? isolated : null;
+			resolver.addFactory(factory);
+			assertNotNull(resolver.resolve("line"));
+			// resolved by class from a classloader the factory provided
+			Object type = resolver.resolve(isolated);
+			Object shared = resolver.resolve(Line.class);
+			
+			resolver.removeFactory(factory);
+			assertEquals(2, resolver.getInvalidations());
+			assertNotSame(type, resolver.resolve(isolated));
+			assertSame(shared, resolver.resolve(Line.class));
+		}
+	}
+	
+	public void testScopedLoader() throws Exception {
+		URL location = Line.class.getProtectionDomain().getCodeSource().getLocation();
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { location }, null)) {
+			BeanResolver resolver = BeanResolver.getScoped(loader);
+			assertSame(resolver, BeanResolver.getScoped(loader));
+			assertNotSame(BeanResolver.getInstance(), resolver);
+			
+			Class<?> isolated = loader.loadClass(Line.class.getName());
+			assertSame(resolver, BeanResolver.getFor(isolated));
+			assertSame(BeanResolver.getInstance(), BeanResolver.getFor(Line.class));
+			
+			// code that starts from an instance uses the resolver of its classloader
+			Object bean = isolated.newInstance();
+			assertSame(resolver, BeanInstance.resolveType(bean).getResolver());
+			assertSame(resolver, ((BeanType<?>) new BeanContentWrapper().wrap(bean).getType()).getResolver());
+			assertSame(resolver, new BeanInstance<Object>(bean).getType().getResolver());
+			
+			assertSame(resolver, BeanResolver.removeScoped(loader));
+			assertSame(BeanResolver.getInstance(), BeanResolver.getFor(isolated));
+		}
+	}
+	
+	public void testScopedId() {
+		BeanResolver resolver = BeanResolver.getScoped("tenant");
+		try {
+			assertSame(resolver, BeanResolver.getScoped("tenant"));
+			BeanType<?> type = (BeanType<?>) new BeanResolverService(resolver).resolve(Line.class.getName());
+			assertSame(resolver, type.getResolver());
+			assertNotSame(type, BeanResolver.getInstance().resolve(Line.class.getName()));
+			// explicit resolvers are used as they are
+			assertSame(resolver, ((BeanType<?>) new BeanContentWrapper(resolver).wrap(new Line()).getType()).getResolver());
+		}
+		finally {
+			BeanResolver.removeScoped("tenant");
+		}
+	}
+	
+	public void testWarmUp() throws Exception {
+		BeanResolver resolver = new BeanResolver();
+		resolver.setRecording(true);
+		BeanResolutionProfile profile = new BeanResolutionProfile();
+		profile.add(new BeanResolutionProfile.Entry(Line.class.getName(), true, 10, true));
+		profile.add(new BeanResolutionProfile.Entry(FreezerTest.Address.class.getName(), false, 5, false));
+		profile.add(new BeanResolutionProfile.Entry("be.nabu.libs.types.java.Removed", false, 1, false));
+		// the outdated entry is skipped
+		assertEquals(Integer.valueOf(1), resolver.warmUp(profile, true).get());
+		
+		assertTrue(((BeanType<?>) resolver.resolve(Line.class)).isHot());
+		assertFalse(((BeanType<?>) resolver.resolve(FreezerTest.Address.class.getName())).isHot());
+		// warming up is not recorded, only the two resolutions above
+		for (BeanResolutionProfile.Entry entry : resolver.getProfile().getEntries()) {
+			assertEquals(1, entry.getCount());
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+
+package be.nabu.libs.types.java;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import be.nabu.libs.types.api.Element;
+import junit.framework.TestCase;
+
+public class StreamingTest extends TestCase {
+	
+	public void testStreamingProperties() {
+		BeanType<?> type = (BeanType<?>) BeanResolver.getInstance().resolve(Export.class);
+		assertTrue(isList(type.get("names")));
+		assertTrue(isList(type.get("codes")));
+		assertTrue(isList(type.get("numbers")));
+		// a path is an iterable of paths but it is not declared as a streaming type
+		assertFalse(isList(type.get("path")));
+		assertFalse(StreamingCollectionHandlerProvider.isStreaming(Path.class));
+	}
+	
+	public void testStream() {
+		Export export = new Export();
+		export.setNames(Stream.of("a", "b", "c"));
+		export.setNumbers(Arrays.asList(1, 2, 3));
+		BeanInstance<Export> instance = new BeanInstance<Export>(export);
+		assertEquals(Arrays.asList("a", "b", "c"), instance.stream("names").collect(Collectors.toList()));
+		assertEquals(Arrays.asList(1, 2, 3), instance.stream("numbers").collect(Collectors.toList()));
+	}
+	
+	public void testIndexedAccess() {
+		Export export = new Export();
+		export.setCodes(Arrays.asList("a", "b", "c").iterator());
+		export.setNumbers(Arrays.asList(1, 2, 3));
+		BeanInstance<Export> instance = new BeanInstance<Export>(export);
+		// the iterator is buffered on first access so it can be accessed by index more than once
+		assertEquals("b", instance.get("codes[1]"));
+		assertEquals("a", instance.get("codes[0]"));
+		assertEquals("c", instance.get("codes[2]"));
+		assertNull(instance.get("codes[3]"));
+		assertEquals(3, instance.get("numbers[2]"));
+	}
+	
+	public void testIndexes() {
+		StreamingCollectionHandlerProvider provider = StreamingCollectionHandlerProvider.getInstance();
+		Iterator<String> iterator = Arrays.asList("a", "b", "c").iterator();
+		assertEquals(Arrays.asList(0, 1, 2), provider.getIndexes(iterator));
+		assertEquals(3, provider.getAsCollection(iterator).size());
+		assertEquals("c", provider.get(iterator, 2));
+		
+		Stream<String> stream = Stream.of("a", "b");
+		assertEquals("b", provider.get(stream, 1));
+		assertEquals(Arrays.asList(0, 1), provider.getIndexes(stream));
+	}
+	
+	public void testConsumedOnce() {
+		StreamingCollectionHandlerProvider provider = StreamingCollectionHandlerProvider.getInstance();
+		Iterator<String> iterator = Arrays.asList("a", "b").iterator();
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<Object>(provider.getAsCollection(iterator)));
+		// every view on the same iterator knows it has been consumed
+		try {
+			provider.getAsCollection(iterator).iterator();
+			fail("A consumed iterator can not be iterated again");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			provider.getAsCollection(iterator).size();
+			fail("A consumed iterator can not be sized");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		
+		// once buffered, all views read from the buffer
+		Stream<String> stream = Stream.of("a", "b");
+		assertEquals(2, provider.getAsCollection(stream).size());
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<Object>(provider.getAsCollection(stream)));
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<Object>(provider.getAsCollection(stream)));
+	}
+	
+	public void testConcurrentBuffering() throws InterruptedException {
+		final StreamingCollectionHandlerProvider provider = StreamingCollectionHandlerProvider.getInstance();
+		final CountDownLatch reading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Iterator<String> slow = new Iterator<String>() {
+			private boolean done;
+			@Override
+			public boolean hasNext() {
+				return !done;
+			}
+			@Override
+			public String next() {
+				reading.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				done = true;
+				return "slow";
+			}
+		};
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				provider.get(slow, 0);
+			}
+		});
+		thread.start();
+		assertTrue(reading.await(10, TimeUnit.SECONDS));
+		// while the slow source is being read, other sources are not blocked
+		assertEquals("b", provider.get(Arrays.asList("a", "b").iterator(), 1));
+		release.countDown();
+		thread.join();
+		assertEquals("slow", provider.get(slow, 0));
+	}
+	
+	private static boolean isList(Element<?> element) {
+		return element.getType().isList(element.getProperties());
+	}
+	
+	public static class Export {
+		private Stream<String> names;
+		private Iterator<String> codes;
+		private Iterable<Integer> numbers;
+		private Path path = Paths.get("exports", "today");
+		
+		public Stream<String> getNames() {
+			return names;
+		}
+		public void setNames(Stream<String> names) {
+			this.names = names;
+		}
+		public Iterator<String> getCodes() {
+			return codes;
+		}
+		public void setCodes(Iterator<String> codes) {
+			this.codes = codes;
+		}
+		public Iterable<Integer> getNumbers() {
+			return numbers;
+		}
+		public void setNumbers(Iterable<Integer> numbers) {
+			this.numbers = numbers;
+		}
+		public Path getPath() {
+			return path;
+		}
+		public void setPath(Path path) {
+			this.path = path;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+* Copyright (C) 2014 Alexander Verbruggen
+*
+* This program is free software: you can redistribute it and/or modify
+* it under the terms of the GNU Lesser General Public License as published by
+* the Free Software Foundation, either version 3 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+* GNU Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public License
+* along with this program. If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package be.nabu.libs.types.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TraverserTest extends TestCase {
+
+	public void testCycle() {
+		Node root = new Node();
+		root.setName("root");
+		Node child = new Node();
+		child.setName("child");
+		child.setParent(root);
+		root.getChildren().add(child);
+		
+		final List<String> events = new ArrayList<String>();
+		new BeanTraverser().traverse(root, new BeanVisitor() {
+			@Override
+			public boolean enter(BeanCursor cursor) {
+				events.add("enter " + cursor.getPath());
+				return true;
+			}
+			@Override
+			public void leave(BeanCursor cursor) {
+				events.add("leave " + cursor.getPath());
+			}
+			@Override
+			public void value(BeanCursor cursor) {
+				if (cursor.getValue() != null) {
+					events.add("value " + cursor.getPath() + "=" + cursor.getValue());
+				}
+			}
+			@Override
+			public void cycle(BeanCursor cursor) {
+				events.add("cycle " + cursor.getPath());
+			}
+		});
+		assertTrue(events.contains("value children[0]/name=child"));
+		assertTrue(events.contains("cycle children[0]/parent"));
+		assertEquals("enter ", events.get(0));
+		assertEquals("leave ", events.get(events.size() - 1));
+	}
+	
+	public static class Node {
+		private String name;
+		private Node parent;
+		private List<Node> children = new ArrayList<Node>();
+		
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public Node getParent() {
+			return parent;
+		}
+		public void setParent(Node parent) {
+			this.parent = parent;
+		}
+		public List<Node> getChildren() {
+			return children;
+		}
+		public void setChildren(List<Node> children) {
+			this.children = children;
+		}
+	}
+}